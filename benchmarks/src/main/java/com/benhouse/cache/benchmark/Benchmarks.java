@@ -0,0 +1,44 @@
+package com.benhouse.cache.benchmark;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.core.HeliosCacheManager;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各基准共用的构造方法
+ */
+final class Benchmarks {
+    private Benchmarks() {
+    }
+
+    static HeliosCacheProperties properties(int nodeId) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setEnableLocalCache(true);
+        properties.setCacheNameSeparator(":");
+        return properties;
+    }
+
+    static HeliosCacheManager manager(InMemoryRemoteCacheManager remote, HeliosCacheProperties properties) {
+        return new HeliosCacheManager(remote, properties);
+    }
+
+    /**
+     * 远端替身，每次操作等待固定延迟模拟网络往返
+     */
+    static InMemoryRemoteCacheManager remote(long latencyNanos) {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        remote.setLatency(latencyNanos, TimeUnit.NANOSECONDS);
+        return remote;
+    }
+
+    static String value(int bytes) {
+        StringBuilder value = new StringBuilder(bytes);
+        while (value.length() < bytes) {
+            value.append("{\"tenant\":\"TENANT_A\",\"id\":").append(value.length()).append('}');
+        }
+        return value.substring(0, bytes);
+    }
+}
@@ -0,0 +1,81 @@
+package com.benhouse.cache.benchmark;
+
+import com.benhouse.cache.core.HeliosCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HeliosCacheManager.getCache：已存在cache name的查找，以及动态尾缀不断产生新cache name时的创建
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheManagerBenchmark {
+    private static final int TENANTS = 1024;
+
+    private HeliosCacheManager manager;
+    private String[] tenantNames;
+    private final AtomicLong newTenants = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = Benchmarks.manager(Benchmarks.remote(0), Benchmarks.properties(1));
+        tenantNames = new String[TENANTS];
+        for (int i = 0; i < TENANTS; i++) {
+            tenantNames[i] = "RULE:TENANT_" + i;
+            manager.getCache(tenantNames[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Benchmark
+    public Cache getExistingCache() {
+        return manager.getCache(tenantNames[ThreadLocalRandom.current().nextInt(TENANTS)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Cache getExistingCacheContended() {
+        return getExistingCache();
+    }
+
+    /**
+     * 每次使用新的尾缀创建cache，随后退役，避免注册的cache无限增长
+     */
+    @Benchmark
+    public Cache createSuffixedCache() {
+        String name = "RULE:NEW_" + newTenants.incrementAndGet();
+        Cache cache = manager.getCache(name);
+        manager.retireCache(name);
+        return cache;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Cache createSuffixedCacheContended() {
+        return createSuffixedCache();
+    }
+}
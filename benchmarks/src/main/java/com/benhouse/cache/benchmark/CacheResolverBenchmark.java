@@ -0,0 +1,133 @@
+package com.benhouse.cache.benchmark;
+
+import com.benhouse.cache.annotation.CacheNameSuffix;
+import com.benhouse.cache.core.HeliosCacheManager;
+import com.benhouse.cache.core.HeliosCacheResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.CacheOperation;
+import org.springframework.cache.interceptor.CacheOperationInvocationContext;
+import org.springframework.cache.interceptor.CacheableOperation;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HeliosCacheResolver.resolveCaches：参数值尾缀与SpEL尾缀
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheResolverBenchmark {
+    private static final int TENANTS = 256;
+
+    private HeliosCacheManager manager;
+    private HeliosCacheResolver resolver;
+    private CacheOperation operation;
+    private Method byArg;
+    private Method bySpel;
+    private String[] tenants;
+    private Map<?, ?>[] queries;
+
+    @SuppressWarnings("unused")
+    public void byArg(String key, @CacheNameSuffix String tenant) {
+    }
+
+    @SuppressWarnings("unused")
+    public void bySpel(@CacheNameSuffix("['tenant']") Map<String, String> query, String key) {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        manager = Benchmarks.manager(Benchmarks.remote(0), Benchmarks.properties(1));
+        resolver = new HeliosCacheResolver(manager, ":");
+        CacheableOperation.Builder builder = new CacheableOperation.Builder();
+        builder.setName("benchmark");
+        builder.setCacheName("RULE");
+        operation = builder.build();
+        byArg = getClass().getMethod("byArg", String.class, String.class);
+        bySpel = getClass().getMethod("bySpel", Map.class, String.class);
+        tenants = new String[TENANTS];
+        queries = new Map<?, ?>[TENANTS];
+        for (int i = 0; i < TENANTS; i++) {
+            tenants[i] = "TENANT_" + i;
+            queries[i] = Collections.singletonMap("tenant", tenants[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Benchmark
+    public Collection<? extends Cache> resolveByArgument() {
+        int tenant = ThreadLocalRandom.current().nextInt(TENANTS);
+        return resolver.resolveCaches(new InvocationContext(operation, this, byArg, new Object[]{"k", tenants[tenant]}));
+    }
+
+    @Benchmark
+    public Collection<? extends Cache> resolveBySpel() {
+        int tenant = ThreadLocalRandom.current().nextInt(TENANTS);
+        return resolver.resolveCaches(new InvocationContext(operation, this, bySpel, new Object[]{queries[tenant], "k"}));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Collection<? extends Cache> resolveBySpelContended() {
+        return resolveBySpel();
+    }
+
+    private static final class InvocationContext implements CacheOperationInvocationContext<CacheOperation> {
+        private final CacheOperation operation;
+        private final Object target;
+        private final Method method;
+        private final Object[] args;
+
+        private InvocationContext(CacheOperation operation, Object target, Method method, Object[] args) {
+            this.operation = operation;
+            this.target = target;
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public CacheOperation getOperation() {
+            return operation;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Object[] getArgs() {
+            return args;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.benhouse.cache.benchmark;
+
+import com.benhouse.cache.core.HeliosCacheManager;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MultiStepCacheDecorator读路径：本地副本有效时的命中，以及其他节点不断写入导致本地副本失效时的读取
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecoratorReadBenchmark {
+    private static final int KEYS = 1024;
+
+    /**
+     * 远端每次读写的模拟延迟
+     */
+    @Param({"0", "100000"})
+    public long remoteLatencyNanos;
+
+    @Param({"1024"})
+    public int valueBytes;
+
+    private HeliosCacheManager node;
+    private HeliosCacheManager otherNode;
+    private Cache cache;
+    private Cache otherCache;
+    private String value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryRemoteCacheManager remote = Benchmarks.remote(remoteLatencyNanos);
+        node = Benchmarks.manager(remote, Benchmarks.properties(1));
+        otherNode = Benchmarks.manager(remote, Benchmarks.properties(2));
+        cache = node.getCache("RULE");
+        otherCache = otherNode.getCache("RULE");
+        value = Benchmarks.value(valueBytes);
+        for (int i = 0; i < KEYS; i++) {
+            cache.put(i, value);
+            // 其他节点追上后，它的每次写入都是全量刷新
+            otherCache.put(i, value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        node.shutdown();
+        otherNode.shutdown();
+    }
+
+    /**
+     * 指示器对本节点有效，读取本地副本
+     */
+    @Benchmark
+    public Object localValidHit() {
+        return cache.get(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object localValidHitContended() {
+        return cache.get(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    /**
+     * 每次读取前其他节点先写入同一个key，本节点的副本失效后重新加载
+     */
+    @Benchmark
+    public Object crossNodeInvalidationChurn() {
+        int key = ThreadLocalRandom.current().nextInt(KEYS);
+        otherCache.put(key, value);
+        return cache.get(key, () -> value);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object crossNodeInvalidationChurnContended() {
+        return crossNodeInvalidationChurn();
+    }
+}
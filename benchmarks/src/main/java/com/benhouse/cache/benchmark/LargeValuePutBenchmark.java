@@ -0,0 +1,79 @@
+package com.benhouse.cache.benchmark;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.core.HeliosCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大对象写入：包括准入时的大小估算（json为原先的JSON序列化估算），以及是否进入本地缓存两种路径
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LargeValuePutBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"fast", "json"})
+    public String sizeEstimator;
+
+    @Param({"16384", "262144"})
+    public int valueBytes;
+
+    /**
+     * 0时所有值进入本地缓存，大于valueBytes时所有值直接写入远端
+     */
+    @Param({"0", "1048576"})
+    public int minimumLocalKeySize;
+
+    @Param({"0"})
+    public long remoteLatencyNanos;
+
+    private HeliosCacheManager manager;
+    private Cache cache;
+    private List<String> value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeliosCacheProperties properties = Benchmarks.properties(1);
+        properties.setSizeEstimator(sizeEstimator);
+        properties.setMinimumLocalKeySize(minimumLocalKeySize);
+        manager = Benchmarks.manager(Benchmarks.remote(remoteLatencyNanos), properties);
+        cache = manager.getCache("REPORT");
+        // 按1KB一个元素组成列表，与业务中的大对象结构接近
+        value = new ArrayList<>();
+        for (int i = 0; i < valueBytes / 1024; i++) {
+            value.add(Benchmarks.value(1024));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(ThreadLocalRandom.current().nextInt(KEYS), value);
+    }
+}
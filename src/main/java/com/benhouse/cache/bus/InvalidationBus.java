@@ -0,0 +1,252 @@
+package com.benhouse.cache.bus;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 节点级失效总线
+ * 总线健康时本地副本在收到失效事件前一直可信，读取无需访问远端指示器；
+ * 断线或事件延迟超过 maxLagMillis 时标记为不健康，读取退回指示器校验，
+ * 恢复后清空所有订阅者的本地缓存，避免使用期间漏掉事件的副本
+ * 每个节点发送的事件带连续的序号，并每 maxLagMillis/3 发送一次心跳：
+ * 某个来源的序号缺失超过一个心跳间隔未补齐（其他节点发送失败或传输丢失），或超过 maxLagMillis 没有收到它的任何事件
+ * （传输停滞或节点异常退出）时，订阅者自行标记为不健康，不依赖发送方的通知
+ */
+@Slf4j
+public class InvalidationBus implements InvalidationTransport.Listener {
+    private final InvalidationTransport transport;
+    private volatile int nodeId;
+    private final long maxLagMillis;
+    private final long heartbeatMillis;
+    private final ConcurrentMap<String, InvalidationSubscriber> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean healthy;
+    private volatile Consumer<String> treeSubscriber;
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * 收到过事件的其他节点，key为来源节点id
+     */
+    private final ConcurrentMap<Integer, Origin> origins = new ConcurrentHashMap<>();
+    /**
+     * 单个来源允许同时缺失的序号数，超过时直接视为丢失
+     */
+    private static final int MAX_MISSING = 1024;
+
+    public InvalidationBus(InvalidationTransport transport, int nodeId, long maxLagMillis) {
+        this.transport = transport;
+        this.nodeId = nodeId;
+        this.maxLagMillis = maxLagMillis;
+        this.heartbeatMillis = Math.max(1, maxLagMillis / 3);
+        this.healthy = transport.isConnected();
+        transport.subscribe(this);
+    }
+
+    /**
+     * 本节点重新分配节点id后切换事件的来源id
+     */
+    public void setNodeId(int nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 开始定期发送心跳并检查其他节点的序号，未调用时只按事件延迟判断
+     */
+    public void start(ScheduledExecutorService scheduler) {
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 通知其他节点本节点关闭，不再等待本节点的心跳
+     */
+    public void close() {
+        if (transport.isConnected()) {
+            publish(InvalidationEvent.Type.LEAVE, null, null);
+        }
+    }
+
+    public boolean isHealthy() {
+        return healthy && transport.isConnected();
+    }
+
+    public void subscribe(String cacheName, InvalidationSubscriber subscriber) {
+        subscribers.put(cacheName, subscriber);
+    }
+
+    public void unsubscribe(String cacheName, InvalidationSubscriber subscriber) {
+        subscribers.remove(cacheName, subscriber);
+    }
+
+    /**
+     * @param treeSubscriber 接收CLEAR_TREE事件，参数为子树的根
+     */
+    public void subscribeTree(Consumer<String> treeSubscriber) {
+        this.treeSubscriber = treeSubscriber;
+    }
+
+    public void publish(InvalidationEvent.Type type, String cacheName, Object key) {
+        // 发送失败的事件同样占用序号，其他节点据此发现丢失
+        long next = sequence.incrementAndGet();
+        try {
+            transport.publish(new InvalidationEvent(type, cacheName, key, nodeId, System.currentTimeMillis(), epoch, next));
+        } catch (RuntimeException e) {
+            // 其他节点收不到事件，由它们发现序号缺失后退回指示器校验
+            log.error("failed to publish {} {}:{}", type, cacheName, key, e);
+            healthy = false;
+        }
+    }
+
+    @Override
+    public void onEvent(InvalidationEvent event) {
+        if (event.getOriginNodeId() == nodeId) {
+            return;
+        }
+        if (event.getType() == InvalidationEvent.Type.LEAVE) {
+            origins.remove(event.getOriginNodeId());
+            return;
+        }
+        if (event.getSequence() > 0 && !track(event)) {
+            fallBack("missed too many invalidation events from node " + event.getOriginNodeId());
+        }
+        if (event.getType() == InvalidationEvent.Type.CLEAR_TREE) {
+            Consumer<String> tree = treeSubscriber;
+            if (tree != null) {
+                tree.accept(event.getCacheName());
+            }
+        } else if (event.getType() != InvalidationEvent.Type.HEARTBEAT) {
+            InvalidationSubscriber subscriber = subscribers.get(event.getCacheName());
+            if (subscriber != null) {
+                subscriber.onInvalidation(event);
+            }
+        }
+        long lag = System.currentTimeMillis() - event.getPublishedAt();
+        if (lag > maxLagMillis) {
+            if (healthy) {
+                log.warn("invalidation bus lagging {} ms, fall back to indicator check", lag);
+                healthy = false;
+            }
+        } else if (!healthy && transport.isConnected()) {
+            recover();
+        }
+    }
+
+    @Override
+    public void onConnectionStateChanged(boolean connected) {
+        if (connected) {
+            recover();
+        } else {
+            log.warn("invalidation bus disconnected, fall back to indicator check");
+            healthy = false;
+        }
+    }
+
+    /**
+     * @return 缺失的序号未超过MAX_MISSING
+     */
+    private boolean track(InvalidationEvent event) {
+        long now = System.currentTimeMillis();
+        Origin origin = origins.compute(event.getOriginNodeId(), (id, current) ->
+                current == null || current.epoch != event.getOriginEpoch() ? new Origin(event.getOriginEpoch(), event.getSequence() - 1) : current);
+        synchronized (origin) {
+            origin.lastSeenAt = now;
+            long received = event.getSequence();
+            if (received <= origin.highest) {
+                // 乱序到达，补齐之前记录的缺失
+                origin.missing.remove(received);
+                return true;
+            }
+            if (received - origin.highest - 1 > MAX_MISSING) {
+                origin.highest = received;
+                origin.missing.clear();
+                return false;
+            }
+            for (long missed = origin.highest + 1; missed < received; missed++) {
+                origin.missing.put(missed, now);
+            }
+            origin.highest = received;
+            return true;
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            if (transport.isConnected()) {
+                publish(InvalidationEvent.Type.HEARTBEAT, null, null);
+            }
+            checkOrigins(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("invalidation bus heartbeat failed", e);
+        }
+    }
+
+    /**
+     * 序号缺失超过一个心跳间隔未补齐，或来源超过maxLagMillis没有任何事件时退回指示器校验；
+     * 停止发送的来源不再跟踪，下一个按时到达的事件会清空本地缓存并恢复
+     */
+    void checkOrigins(long now) {
+        Iterator<Map.Entry<Integer, Origin>> iterator = origins.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Origin> entry = iterator.next();
+            Origin origin = entry.getValue();
+            synchronized (origin) {
+                if (now - origin.lastSeenAt > maxLagMillis) {
+                    iterator.remove();
+                    fallBack("no invalidation events from node " + entry.getKey() + " for " + (now - origin.lastSeenAt) + " ms");
+                    continue;
+                }
+                for (long noticedAt : origin.missing.values()) {
+                    if (now - noticedAt > heartbeatMillis) {
+                        origin.missing.clear();
+                        fallBack("missed invalidation events from node " + entry.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void fallBack(String reason) {
+        if (healthy) {
+            log.warn("{}, fall back to indicator check", reason);
+            healthy = false;
+        }
+    }
+
+    private synchronized void recover() {
+        if (healthy) {
+            return;
+        }
+        for (InvalidationSubscriber subscriber : subscribers.values()) {
+            subscriber.onBusRecovered();
+        }
+        healthy = true;
+        log.info("invalidation bus recovered");
+    }
+
+    /**
+     * 某个来源节点的事件序号
+     */
+    private static final class Origin {
+        private final long epoch;
+        private long highest;
+        private long lastSeenAt;
+        /**
+         * 尚未收到的序号及发现缺失的时间
+         */
+        private final Map<Long, Long> missing = new HashMap<>();
+
+        private Origin(long epoch, long highest) {
+            this.epoch = epoch;
+            this.highest = highest;
+        }
+    }
+}
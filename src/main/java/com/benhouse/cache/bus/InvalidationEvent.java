@@ -0,0 +1,99 @@
+package com.benhouse.cache.bus;
+
+import java.io.Serializable;
+
+/**
+ * 节点间广播的本地缓存失效事件
+ */
+public class InvalidationEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        /**
+         * 某节点写入了新值，其余节点的本地副本失效
+         */
+        PUT,
+        EVICT,
+        CLEAR,
+        /**
+         * 清空以cacheName为根的整棵cache name子树
+         */
+        CLEAR_TREE,
+        /**
+         * 定期发送的心跳，只用于发现丢失的事件及停滞的传输
+         */
+        HEARTBEAT,
+        /**
+         * 节点关闭，其他节点不再等待它的心跳
+         */
+        LEAVE
+    }
+
+    private final Type type;
+    private final String cacheName;
+    private final Object key;
+    private final int originNodeId;
+    private final long publishedAt;
+    /**
+     * 来源节点本次启动的标识，重启后序号重新开始
+     */
+    private final long originEpoch;
+    /**
+     * 来源节点发送的序号，从1开始连续递增，发送失败的事件同样占用序号；0表示来源节点不支持序号
+     */
+    private final long sequence;
+
+    public InvalidationEvent(Type type, String cacheName, Object key, int originNodeId) {
+        this(type, cacheName, key, originNodeId, System.currentTimeMillis());
+    }
+
+    public InvalidationEvent(Type type, String cacheName, Object key, int originNodeId, long publishedAt) {
+        this(type, cacheName, key, originNodeId, publishedAt, 0, 0);
+    }
+
+    public InvalidationEvent(Type type, String cacheName, Object key, int originNodeId, long publishedAt, long originEpoch, long sequence) {
+        this.type = type;
+        this.cacheName = cacheName;
+        this.key = key;
+        this.originNodeId = originNodeId;
+        this.publishedAt = publishedAt;
+        this.originEpoch = originEpoch;
+        this.sequence = sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * @return 失效的key，CLEAR事件在代际模式下为新的代际，否则为null
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    public int getOriginNodeId() {
+        return originNodeId;
+    }
+
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+    public long getOriginEpoch() {
+        return originEpoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationEvent{" + type + " " + cacheName + ":" + key + " from node " + originNodeId + " #" + sequence + "}";
+    }
+}
@@ -0,0 +1,14 @@
+package com.benhouse.cache.bus;
+
+/**
+ * 按cache name订阅失效事件
+ */
+public interface InvalidationSubscriber {
+
+    void onInvalidation(InvalidationEvent event);
+
+    /**
+     * 总线从断开或延迟中恢复，期间可能漏掉了事件，本地副本不再可信
+     */
+    void onBusRecovered();
+}
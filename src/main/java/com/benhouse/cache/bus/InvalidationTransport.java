@@ -0,0 +1,26 @@
+package com.benhouse.cache.bus;
+
+/**
+ * 失效事件传输层SPI，例如基于Redis Pub/Sub或消息队列实现
+ * 实现需要自行负责事件（包括key）的序列化
+ */
+public interface InvalidationTransport {
+
+    void publish(InvalidationEvent event);
+
+    void subscribe(Listener listener);
+
+    /**
+     * @return 当前是否能收到其他节点的事件
+     */
+    boolean isConnected();
+
+    interface Listener {
+        void onEvent(InvalidationEvent event);
+
+        /**
+         * 连接断开或恢复时回调，断开期间的事件可能已丢失
+         */
+        void onConnectionStateChanged(boolean connected);
+    }
+}
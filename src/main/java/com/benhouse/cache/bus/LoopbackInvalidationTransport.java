@@ -0,0 +1,43 @@
+package com.benhouse.cache.bus;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内传输实现，同一个实例可以被多个模拟节点共享，事件同步投递给所有订阅者
+ * 主要用于测试，可以通过 setConnected 模拟断线
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean connected = true;
+
+    @Override
+    public void publish(InvalidationEvent event) {
+        if (!connected) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public void setConnected(boolean connected) {
+        if (this.connected == connected) {
+            return;
+        }
+        this.connected = connected;
+        for (Listener listener : listeners) {
+            listener.onConnectionStateChanged(connected);
+        }
+    }
+}
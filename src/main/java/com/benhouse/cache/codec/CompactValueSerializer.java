@@ -0,0 +1,88 @@
+package com.benhouse.cache.codec;
+
+import com.benhouse.cache.local.ValueSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 紧凑的二进制序列化: 类型标记(1) | 数据
+ * 字符串、数字、布尔、byte[]直接编码，不带Java序列化的类描述；其他类型交给fallback序列化
+ */
+public class CompactValueSerializer implements ValueSerializer {
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte BYTES = 6;
+    private static final byte OBJECT = 7;
+
+    private final ValueSerializer fallback;
+
+    public CompactValueSerializer(ValueSerializer fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) {
+        if (value == null) {
+            return new byte[]{NULL};
+        }
+        if (value instanceof String) {
+            return tagged(STRING, ((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof Integer) {
+            return ByteBuffer.allocate(5).put(INTEGER).putInt((Integer) value).array();
+        }
+        if (value instanceof Long) {
+            return ByteBuffer.allocate(9).put(LONG).putLong((Long) value).array();
+        }
+        if (value instanceof Double) {
+            return ByteBuffer.allocate(9).put(DOUBLE).putDouble((Double) value).array();
+        }
+        if (value instanceof Boolean) {
+            return new byte[]{BOOLEAN, (byte) ((Boolean) value ? 1 : 0)};
+        }
+        if (value instanceof byte[]) {
+            return tagged(BYTES, (byte[]) value);
+        }
+        return tagged(OBJECT, fallback.serialize(value));
+    }
+
+    @Override
+    public Object deserialize(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return StandardCharsets.UTF_8.decode(buffer).toString();
+            case INTEGER:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case BYTES:
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            case OBJECT:
+                return fallback.deserialize(buffer.slice());
+            default:
+                throw new IllegalStateException("unknown compact value type " + type);
+        }
+    }
+
+    private static byte[] tagged(byte type, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 1);
+        out.write(type);
+        out.write(data, 0, data.length);
+        return out.toByteArray();
+    }
+}
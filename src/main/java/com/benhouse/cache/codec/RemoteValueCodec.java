@@ -0,0 +1,155 @@
+package com.benhouse.cache.codec;
+
+import com.benhouse.cache.local.ValueSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 直接写入远端的完整值的编码
+ * 远端保存为 REMOTE_PREFIX + Base64(二进制格式) 的字符串，JSON等远端序列化方式读回后不会从byte[]变为其他类型；
+ * 二进制格式: magic(4) | format(1) | flags(1) | [压缩前长度(4)] | 数据
+ * flags带COMPRESSED时数据为Deflate压缩后的序列化结果；没有该前缀的远端值按原样返回，新旧格式可以共存，
+ * 之前直接保存的二进制格式仍可以解码
+ */
+public final class RemoteValueCodec {
+    private static final byte[] MAGIC = {'&', 'V', 'A', 'L'};
+    private static final byte FORMAT_V1 = 1;
+    private static final int HEADER_LENGTH = 6;
+    private static final byte FLAG_COMPRESSED = 1;
+    private static final String REMOTE_PREFIX = "&VAL2&";
+
+    private final ValueSerializer serializer;
+    private final int compressThresholdBytes;
+
+    /**
+     * @param compressThresholdBytes 序列化结果超过该大小时压缩，0为不压缩
+     */
+    public RemoteValueCodec(ValueSerializer serializer, int compressThresholdBytes) {
+        this.serializer = serializer;
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    public String encode(Object value) {
+        return REMOTE_PREFIX + Base64.getEncoder().encodeToString(encodeBytes(value));
+    }
+
+    /**
+     * @return 二进制格式，嵌入其他结构保存时可以直接传给decode
+     */
+    public byte[] encodeBytes(Object value) {
+        byte[] data = serializer.serialize(value);
+        if (compressThresholdBytes > 0 && data.length > compressThresholdBytes) {
+            byte[] compressed = deflate(data);
+            // 压缩收益不足时保存原始数据，省去读取时的解压
+            if (compressed.length + 4 < data.length) {
+                return ByteBuffer.allocate(HEADER_LENGTH + 4 + compressed.length)
+                        .put(MAGIC).put(FORMAT_V1).put(FLAG_COMPRESSED).putInt(data.length).put(compressed).array();
+            }
+        }
+        return ByteBuffer.allocate(HEADER_LENGTH + data.length).put(MAGIC).put(FORMAT_V1).put((byte) 0).put(data).array();
+    }
+
+    /**
+     * @param remoteValue 远端读出的值
+     * @return 解码后的值，不是本编码写入的值时原样返回
+     */
+    public Object decode(Object remoteValue) {
+        byte[] bytes = bytes(remoteValue);
+        if (bytes == null) {
+            return remoteValue;
+        }
+        if ((bytes[MAGIC.length + 1] & FLAG_COMPRESSED) == 0) {
+            return serializer.deserialize(ByteBuffer.wrap(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH).slice());
+        }
+        int length = ByteBuffer.wrap(bytes, HEADER_LENGTH, 4).getInt();
+        return serializer.deserialize(ByteBuffer.wrap(inflate(bytes, HEADER_LENGTH + 4, length)));
+    }
+
+    public static boolean isEncoded(Object remoteValue) {
+        return bytes(remoteValue) != null;
+    }
+
+    /**
+     * @return 远端值的二进制格式，不是本编码写入的值时为null
+     */
+    public static byte[] binaryOf(Object remoteValue) {
+        return bytes(remoteValue);
+    }
+
+    /**
+     * @return 编码后的二进制格式，不是本编码写入的值时为null
+     */
+    private static byte[] bytes(Object remoteValue) {
+        if (remoteValue instanceof String) {
+            String text = (String) remoteValue;
+            if (!text.startsWith(REMOTE_PREFIX)) {
+                return null;
+            }
+            try {
+                byte[] bytes = Base64.getDecoder().decode(text.substring(REMOTE_PREFIX.length()));
+                return hasHeader(bytes) ? bytes : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return remoteValue instanceof byte[] && hasHeader((byte[]) remoteValue) ? (byte[]) remoteValue : null;
+    }
+
+    private static boolean hasHeader(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH || bytes[MAGIC.length] != FORMAT_V1) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] chunk = new byte[Math.min(data.length, 8192)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] data = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(data, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalStateException("truncated compressed cache value");
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("corrupted compressed cache value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
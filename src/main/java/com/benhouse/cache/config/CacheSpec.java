@@ -0,0 +1,184 @@
+package com.benhouse.cache.config;
+
+/**
+ * 单个cache name（或cache name前缀）的配置，未配置的项使用全局配置
+ */
+public class CacheSpec {
+    /**
+     * 是否启用本地缓存，为空时使用全局的enableLocalCache
+     */
+    private Boolean enableLocalCache;
+    /**
+     * 最后一次读后本地缓存失效的时间，秒为单位，为空时使用全局的expireSecondsAfterAccess，0为不失效
+     */
+    private Long expireSecondsAfterAccess;
+    /**
+     * 本地缓存准入方式 static / adaptive，为空时使用全局的localAdmission
+     */
+    private String localAdmission;
+    /**
+     * 写入后本地缓存失效的时间，秒为单位，0为不失效
+     */
+    private long expireSecondsAfterWrite;
+    /**
+     * 写入后经过该时间，在后台重新校验本地缓存的远端指示器，已失效的副本直接移除，秒为单位，0为不启用
+     */
+    private long refreshSecondsAfterWrite;
+    /**
+     * 本地缓存最大条目数，0为不限制
+     */
+    private long maximumSize;
+    /**
+     * 本地缓存最大总大小（按SizeEstimator估算），与maximumSize同时配置时maximumSize优先，0为不限制
+     */
+    private long maximumWeight;
+    /**
+     * 大于0时本地缓存使用堆外存储，值序列化后存放在直接内存中，超过容量时按写入顺序淘汰，字节为单位
+     * 堆外存储不支持expireSecondsAfterAccess、maximumSize等Caffeine配置，也不计入localMemoryBudgetBytes
+     */
+    private long offHeapCapacityBytes;
+    /**
+     * 本地缓存校验通过后的信任租约，租约内的读取不再访问远端指示器，毫秒为单位，0为不启用
+     * 租约长度即为该cache可容忍的最大不一致时间
+     */
+    private long leaseMillis;
+    /**
+     * get(key, loader)命中写入超过该时间的本地副本时，在后台重新加载，毫秒为单位，0为不启用
+     * 一般配合expireSecondsAfterWrite使用，取略小于其的值
+     */
+    private long refreshAheadMillis;
+    /**
+     * get(key, loader)发现本地副本已被其他节点的写入置为失效时，在该时间内继续返回旧副本并在后台重新加载，毫秒为单位，0为不启用
+     */
+    private long staleWhileRevalidateMillis;
+    /**
+     * 写入null（包括get(key, loader)加载结果为null）时在远端记录值不存在，有效期内所有节点直接返回null不再加载，毫秒为单位，0为不启用
+     */
+    private long negativeCacheMillis;
+    /**
+     * 大于0时该cache的远端指示器按key哈希合并存放到该数量的远端桶中，大幅减少远端key数量，0为每个key单独存放
+     * 远端需要实现HashCache，否则忽略该配置；写入完整值时多一次删除桶字段，适合大部分值都存放在本地的cache
+     */
+    private int indicatorBuckets;
+    /**
+     * 指示器分桶时，桶字段在最后一次全量刷新后保留的时间，超过后在写入同一个桶时清理，秒为单位，0为不清理
+     * 桶字段没有单独的过期时间，一般与远端key的TTL一致
+     */
+    private long indicatorBucketTtlSeconds;
+
+    public CacheSpec() {
+        indicatorBucketTtlSeconds = 86400;
+    }
+
+    public Boolean getEnableLocalCache() {
+        return enableLocalCache;
+    }
+
+    public void setEnableLocalCache(Boolean enableLocalCache) {
+        this.enableLocalCache = enableLocalCache;
+    }
+
+    public String getLocalAdmission() {
+        return localAdmission;
+    }
+
+    public void setLocalAdmission(String localAdmission) {
+        this.localAdmission = localAdmission;
+    }
+
+    public Long getExpireSecondsAfterAccess() {
+        return expireSecondsAfterAccess;
+    }
+
+    public void setExpireSecondsAfterAccess(Long expireSecondsAfterAccess) {
+        this.expireSecondsAfterAccess = expireSecondsAfterAccess;
+    }
+
+    public long getExpireSecondsAfterWrite() {
+        return expireSecondsAfterWrite;
+    }
+
+    public void setExpireSecondsAfterWrite(long expireSecondsAfterWrite) {
+        this.expireSecondsAfterWrite = expireSecondsAfterWrite;
+    }
+
+    public long getRefreshSecondsAfterWrite() {
+        return refreshSecondsAfterWrite;
+    }
+
+    public void setRefreshSecondsAfterWrite(long refreshSecondsAfterWrite) {
+        this.refreshSecondsAfterWrite = refreshSecondsAfterWrite;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public long getRefreshAheadMillis() {
+        return refreshAheadMillis;
+    }
+
+    public void setRefreshAheadMillis(long refreshAheadMillis) {
+        this.refreshAheadMillis = refreshAheadMillis;
+    }
+
+    public long getStaleWhileRevalidateMillis() {
+        return staleWhileRevalidateMillis;
+    }
+
+    public void setStaleWhileRevalidateMillis(long staleWhileRevalidateMillis) {
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+    }
+
+    public long getNegativeCacheMillis() {
+        return negativeCacheMillis;
+    }
+
+    public void setNegativeCacheMillis(long negativeCacheMillis) {
+        this.negativeCacheMillis = negativeCacheMillis;
+    }
+
+    public long getOffHeapCapacityBytes() {
+        return offHeapCapacityBytes;
+    }
+
+    public void setOffHeapCapacityBytes(long offHeapCapacityBytes) {
+        this.offHeapCapacityBytes = offHeapCapacityBytes;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    public void setLeaseMillis(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    public int getIndicatorBuckets() {
+        return indicatorBuckets;
+    }
+
+    public void setIndicatorBuckets(int indicatorBuckets) {
+        this.indicatorBuckets = indicatorBuckets;
+    }
+
+    public long getIndicatorBucketTtlSeconds() {
+        return indicatorBucketTtlSeconds;
+    }
+
+    public void setIndicatorBucketTtlSeconds(long indicatorBucketTtlSeconds) {
+        this.indicatorBucketTtlSeconds = indicatorBucketTtlSeconds;
+    }
+}
@@ -1,30 +1,80 @@
 package com.benhouse.cache.config;
 
+import com.benhouse.cache.bus.InvalidationTransport;
+import com.benhouse.cache.core.CacheLifecycleListener;
 import com.benhouse.cache.core.HeliosCacheManager;
 import com.benhouse.cache.core.HeliosCacheResolver;
+import com.benhouse.cache.local.ValueSerializer;
+import com.benhouse.cache.size.SizeEstimator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.interceptor.CacheAspectSupport;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableConfigurationProperties(HeliosCacheProperties.class)
 public class HeliosCacheConfiguration {
+    /**
+     * 定义该名称的Executor Bean可替换异步API使用的线程池
+     */
+    public static final String ASYNC_EXECUTOR_BEAN_NAME = "superCacheAsyncExecutor";
     @Autowired
     private CacheManager cacheManager;
     @Autowired
     private CacheAspectSupport cacheAspectSupport;
     @Autowired
     private HeliosCacheProperties heliosCacheProperties;
+    @Autowired(required = false)
+    private InvalidationTransport invalidationTransport;
+    @Autowired(required = false)
+    private SizeEstimator sizeEstimator;
+    @Autowired(required = false)
+    private ValueSerializer valueSerializer;
+    @Autowired(required = false)
+    private List<CacheLifecycleListener> lifecycleListeners;
+    @Autowired(required = false)
+    @Qualifier(ASYNC_EXECUTOR_BEAN_NAME)
+    private Executor asyncExecutor;
+    private HeliosCacheManager heliosCacheManager;
 
     @PostConstruct
     public void initCacheManager() {
-        HeliosCacheManager heliosCacheManager = new HeliosCacheManager(cacheManager, heliosCacheProperties);
+        InvalidationTransport transport = null;
+        if (heliosCacheProperties.isInvalidationBusEnabled()) {
+            if (invalidationTransport == null) {
+                throw new IllegalStateException("invalidationBusEnabled requires an InvalidationTransport bean");
+            }
+            transport = invalidationTransport;
+        }
+        heliosCacheManager = new HeliosCacheManager(cacheManager, heliosCacheProperties, transport);
+        if (sizeEstimator != null) {
+            heliosCacheManager.setSizeEstimator(sizeEstimator);
+        }
+        if (valueSerializer != null) {
+            heliosCacheManager.setValueSerializer(valueSerializer);
+        }
+        if (asyncExecutor != null) {
+            heliosCacheManager.setAsyncExecutor(asyncExecutor);
+        }
+        if (lifecycleListeners != null) {
+            lifecycleListeners.forEach(heliosCacheManager::addLifecycleListener);
+        }
         cacheAspectSupport.setCacheManager(heliosCacheManager);
-        cacheAspectSupport.setCacheResolver(new HeliosCacheResolver(heliosCacheManager));
+        cacheAspectSupport.setCacheResolver(new HeliosCacheResolver(heliosCacheManager, heliosCacheProperties.getCacheNameSeparator()));
 
     }
+
+    @PreDestroy
+    public void shutdownCacheManager() {
+        if (heliosCacheManager != null) {
+            heliosCacheManager.shutdown();
+        }
+    }
 }
@@ -2,6 +2,9 @@ package com.benhouse.cache.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @ConfigurationProperties( prefix = "cache.super")
 public class HeliosCacheProperties {
     private boolean enableLocalCache;
@@ -13,16 +16,149 @@ public class HeliosCacheProperties {
      * 开头为 localCachePrefix 才会启用本地缓存
      */
     private String localCachePrefix;
+    /**
+     * 多个@CacheNameSuffix拼接cache name时使用的分隔符，默认为空与单个@CacheNameSuffix时的拼接方式保持一致
+     */
+    private String cacheNameSeparator;
     /**
      * 决定缓存在本地的对象最小大小
      */
     private int minimumLocalKeySize;
+    /**
+     * 计算minimumLocalKeySize所用的大小估算方式: fast / reflective / json
+     */
+    private String sizeEstimator;
+    /**
+     * 本地缓存准入方式: static 按localCachePrefix与minimumLocalKeySize判断 / adaptive 按访问频率与大小判断
+     */
+    private String localAdmission;
+    /**
+     * adaptive准入时，key的 读取次数 * 大小 达到该值才进入本地缓存，字节为单位
+     */
+    private long admissionTrafficBytes;
+    /**
+     * 节点所有本地缓存共享的内存预算，按SizeEstimator估算，字节为单位，0为不限制
+     * 超出预算时最久未访问的cache name会被整个淘汰
+     */
+    private long localMemoryBudgetBytes;
+    /**
+     * cache name超过该时间未被访问时从管理器中移除并清空本地缓存，秒为单位，0为不移除
+     */
+    private long idleCacheRetireSeconds;
+    /**
+     * 代际模式：远端key按cache name的代际隔离，clear()只递增远端计数器，旧代际的数据由远端TTL回收
+     */
+    private boolean generationClearEnabled;
+    /**
+     * 代际在本地缓存的时间，其他节点的clear()最多延迟该时间可见（启用失效总线时立即可见），毫秒为单位，0为每次访问都读取
+     */
+    private long generationRefreshMillis;
+    /**
+     * 本地写入后合并写入远端指示器的窗口，毫秒为单位，0为每次写入同步更新指示器
+     * 窗口内其他节点仍可能读到本节点写入前的旧副本
+     */
+    private long indicatorFlushMillis;
+    /**
+     * 是否把每个基础cache name的统计注册为JMX MXBean（com.benhouse.cache:type=CacheStats）
+     */
+    private boolean statsJmxEnabled;
+    /**
+     * 直接写入远端的完整值（未进入本地缓存的值）的编码方式 none / compact
+     * compact: 常见类型紧凑二进制编码，其余类型使用ValueSerializer，超过remoteCompressThresholdBytes时Deflate压缩
+     * 读取时兼容未编码的旧值，none时仍能读取已编码的值，切换前后写入的值可以共存
+     */
+    private String remoteValueCodec;
+    /**
+     * compact编码时序列化结果超过该大小才压缩，字节为单位，0为不压缩
+     */
+    private int remoteCompressThresholdBytes;
+    /**
+     * 本地缓存快照目录，关闭时（及按snapshotIntervalSeconds定期）把本地缓存写入快照，重启后按需恢复，为空时不启用
+     * 需要固定nodeId或nodeName，重启后节点id不变时快照才有效
+     */
+    private String snapshotDir;
+    /**
+     * 定期写入本地缓存快照的间隔，秒为单位，0为只在关闭时写入
+     */
+    private long snapshotIntervalSeconds;
+    /**
+     * 节点id，小于0时根据节点标识自动在远端注册分配
+     */
+    private int nodeId;
+    /**
+     * 节点名，同一主机部署多个实例时用于区分节点标识
+     */
+    private String nodeName;
+    /**
+     * 自动分配的节点id的租约时长，秒为单位，每1/3租约时长续约一次，节点异常退出后槽位在租约到期后才能被其他节点使用
+     */
+    private long nodeIdLeaseSeconds;
+    /**
+     * 集群最大节点数，决定远端指示器位图的固定大小
+     */
+    private int maxNodes;
+    /**
+     * 集群拓扑模式 cluster / single / auto
+     * single: 确定只有一个节点时配置，本地缓存命中不再读取远端指示器，写入本地缓存时只删除远端key，不再读写指示器
+     * auto: 通过远端心跳判断，只有本节点存活时按single处理，发现其他节点后清空本地缓存退回cluster
+     */
+    private String topologyMode;
+    /**
+     * auto模式下的心跳间隔，毫秒为单位，新节点加入后单节点最多延迟该时间退回集群模式，新节点启动时等待3个心跳间隔
+     */
+    private long topologyHeartbeatMillis;
+    /**
+     * auto模式下确认集群中所有节点都已升级到发送心跳的版本（1），未配置时为0；
+     * 任一节点配置后提升远端记录的集群版本，所有auto节点观察到后才可能进入单节点模式，滚动升级完成前不要配置
+     */
+    private int topologyClusterVersion;
+    /**
+     * 启用失效总线后，本地缓存命中不再读取远端指示器，需要提供InvalidationTransport
+     */
+    private boolean invalidationBusEnabled;
+    /**
+     * 失效事件延迟超过该值时退回指示器校验，毫秒为单位
+     */
+    private long invalidationBusMaxLagMillis;
+    /**
+     * 按cache name单独配置，key为cache name
+     */
+    private Map<String, CacheSpec> caches;
+    /**
+     * 按cache name前缀配置，适用于@CacheNameSuffix动态拼接的cache name，多个前缀匹配时取最长的
+     */
+    private Map<String, CacheSpec> cachePrefixes;
 
     public HeliosCacheProperties(){
         enableLocalCache  = true;
         expireSecondsAfterAccess = 600;
         localCachePrefix = "";
+        cacheNameSeparator = "";
         minimumLocalKeySize = 0;
+        sizeEstimator = "fast";
+        localMemoryBudgetBytes = 0;
+        localAdmission = "static";
+        admissionTrafficBytes = 4096;
+        idleCacheRetireSeconds = 0;
+        generationClearEnabled = false;
+        generationRefreshMillis = 1000;
+        indicatorFlushMillis = 0;
+        statsJmxEnabled = false;
+        remoteValueCodec = "none";
+        remoteCompressThresholdBytes = 1024;
+        snapshotDir = "";
+        snapshotIntervalSeconds = 0;
+        nodeId = -1;
+        nodeName = "";
+        nodeIdLeaseSeconds = 300;
+        maxNodes = 256;
+        topologyMode = "cluster";
+        topologyHeartbeatMillis = 1000;
+        topologyClusterVersion = 0;
+        invalidationBusEnabled = false;
+        invalidationBusMaxLagMillis = 1000;
+        caches = new HashMap<>();
+        cachePrefixes = new HashMap<>();
     }
     public boolean isEnableLocalCache() {
         return enableLocalCache;
@@ -40,6 +176,14 @@ public class HeliosCacheProperties {
         this.expireSecondsAfterAccess = expireSecondsAfterAccess;
     }
 
+    public String getCacheNameSeparator() {
+        return cacheNameSeparator;
+    }
+
+    public void setCacheNameSeparator(String cacheNameSeparator) {
+        this.cacheNameSeparator = cacheNameSeparator;
+    }
+
     public String getLocalCachePrefix() {
         return localCachePrefix;
     }
@@ -55,4 +199,216 @@ public class HeliosCacheProperties {
     public void setMinimumLocalKeySize(int minimumLocalKeySize) {
         this.minimumLocalKeySize = minimumLocalKeySize;
     }
+
+    public String getSizeEstimator() {
+        return sizeEstimator;
+    }
+
+    public void setSizeEstimator(String sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    public long getLocalMemoryBudgetBytes() {
+        return localMemoryBudgetBytes;
+    }
+
+    public void setLocalMemoryBudgetBytes(long localMemoryBudgetBytes) {
+        this.localMemoryBudgetBytes = localMemoryBudgetBytes;
+    }
+
+    public String getLocalAdmission() {
+        return localAdmission;
+    }
+
+    public void setLocalAdmission(String localAdmission) {
+        this.localAdmission = localAdmission;
+    }
+
+    public long getAdmissionTrafficBytes() {
+        return admissionTrafficBytes;
+    }
+
+    public void setAdmissionTrafficBytes(long admissionTrafficBytes) {
+        this.admissionTrafficBytes = admissionTrafficBytes;
+    }
+
+    public long getIdleCacheRetireSeconds() {
+        return idleCacheRetireSeconds;
+    }
+
+    public void setIdleCacheRetireSeconds(long idleCacheRetireSeconds) {
+        this.idleCacheRetireSeconds = idleCacheRetireSeconds;
+    }
+
+    public boolean isGenerationClearEnabled() {
+        return generationClearEnabled;
+    }
+
+    public void setGenerationClearEnabled(boolean generationClearEnabled) {
+        this.generationClearEnabled = generationClearEnabled;
+    }
+
+    public long getGenerationRefreshMillis() {
+        return generationRefreshMillis;
+    }
+
+    public void setGenerationRefreshMillis(long generationRefreshMillis) {
+        this.generationRefreshMillis = generationRefreshMillis;
+    }
+
+    public long getIndicatorFlushMillis() {
+        return indicatorFlushMillis;
+    }
+
+    public void setIndicatorFlushMillis(long indicatorFlushMillis) {
+        this.indicatorFlushMillis = indicatorFlushMillis;
+    }
+
+    public boolean isStatsJmxEnabled() {
+        return statsJmxEnabled;
+    }
+
+    public void setStatsJmxEnabled(boolean statsJmxEnabled) {
+        this.statsJmxEnabled = statsJmxEnabled;
+    }
+
+    public String getRemoteValueCodec() {
+        return remoteValueCodec;
+    }
+
+    public void setRemoteValueCodec(String remoteValueCodec) {
+        this.remoteValueCodec = remoteValueCodec;
+    }
+
+    public int getRemoteCompressThresholdBytes() {
+        return remoteCompressThresholdBytes;
+    }
+
+    public void setRemoteCompressThresholdBytes(int remoteCompressThresholdBytes) {
+        this.remoteCompressThresholdBytes = remoteCompressThresholdBytes;
+    }
+
+    public String getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    public void setSnapshotDir(String snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(int nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public void setNodeName(String nodeName) {
+        this.nodeName = nodeName;
+    }
+
+    public long getNodeIdLeaseSeconds() {
+        return nodeIdLeaseSeconds;
+    }
+
+    public void setNodeIdLeaseSeconds(long nodeIdLeaseSeconds) {
+        this.nodeIdLeaseSeconds = nodeIdLeaseSeconds;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    public String getTopologyMode() {
+        return topologyMode;
+    }
+
+    public void setTopologyMode(String topologyMode) {
+        this.topologyMode = topologyMode;
+    }
+
+    public long getTopologyHeartbeatMillis() {
+        return topologyHeartbeatMillis;
+    }
+
+    public void setTopologyHeartbeatMillis(long topologyHeartbeatMillis) {
+        this.topologyHeartbeatMillis = topologyHeartbeatMillis;
+    }
+
+    public int getTopologyClusterVersion() {
+        return topologyClusterVersion;
+    }
+
+    public void setTopologyClusterVersion(int topologyClusterVersion) {
+        this.topologyClusterVersion = topologyClusterVersion;
+    }
+
+    public boolean isInvalidationBusEnabled() {
+        return invalidationBusEnabled;
+    }
+
+    public void setInvalidationBusEnabled(boolean invalidationBusEnabled) {
+        this.invalidationBusEnabled = invalidationBusEnabled;
+    }
+
+    public long getInvalidationBusMaxLagMillis() {
+        return invalidationBusMaxLagMillis;
+    }
+
+    public void setInvalidationBusMaxLagMillis(long invalidationBusMaxLagMillis) {
+        this.invalidationBusMaxLagMillis = invalidationBusMaxLagMillis;
+    }
+
+    public Map<String, CacheSpec> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, CacheSpec> caches) {
+        this.caches = caches;
+    }
+
+    public Map<String, CacheSpec> getCachePrefixes() {
+        return cachePrefixes;
+    }
+
+    public void setCachePrefixes(Map<String, CacheSpec> cachePrefixes) {
+        this.cachePrefixes = cachePrefixes;
+    }
+
+    /**
+     * @return cache name对应的配置，依次匹配完整cache name、最长的前缀，都未配置时返回默认配置
+     */
+    public CacheSpec getCacheSpec(String cacheName) {
+        CacheSpec spec = caches == null ? null : caches.get(cacheName);
+        if (spec != null) {
+            return spec;
+        }
+        String matchedPrefix = null;
+        if (cachePrefixes != null) {
+            for (Map.Entry<String, CacheSpec> entry : cachePrefixes.entrySet()) {
+                if (cacheName.startsWith(entry.getKey()) && (matchedPrefix == null || entry.getKey().length() > matchedPrefix.length())) {
+                    matchedPrefix = entry.getKey();
+                    spec = entry.getValue();
+                }
+            }
+        }
+        return spec == null ? new CacheSpec() : spec;
+    }
 }
@@ -0,0 +1,153 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.remote.CacheRemoteCounter;
+import com.benhouse.cache.remote.RemoteCounter;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个cache name的代际，clear()只需递增远端计数器
+ * 计数器保存在保留的远端缓存GENERATIONS_CACHE_NAME中，key为cache name，不占用该cache name的用户key
+ * cache name所在的每一级子树另有一个子树计数器，代际为自身计数器与各级子树计数器之和：
+ * 清空子树只需递增子树计数器，子树下任意节点创建过的cache name（包括已退役的）都切换到新的代际
+ * 当前代际按 refreshMillis 缓存在本地：启用失效总线时clear()广播新的代际，其他节点收到后立即切换；
+ * 未启用时其他节点的clear()最多延迟 refreshMillis 生效，期间仍可能读到旧代际的数据
+ */
+final class CacheGeneration {
+    static final String GENERATIONS_CACHE_NAME = "&GENERATIONS&";
+    /**
+     * 旧版本保存在该cache name的远端缓存中的计数器key，只读取一次作为代际的起点，
+     * 保证迁移后代际不会回到已清空的旧值
+     */
+    static final String LEGACY_GENERATION_KEY = "&GEN&";
+    /**
+     * 子树计数器的key前缀，后接子树的根
+     */
+    static final String TREE_KEY_PREFIX = "&TREE&";
+
+    private final RemoteCounter counter;
+    private final Object counterKey;
+    private final RemoteCounter legacyCounter;
+    /**
+     * 所在各级子树的计数器key，没有子树时为空
+     */
+    private final List<Object> treeKeys;
+    private final long refreshNanos;
+    private volatile long generation;
+    private volatile long refreshedAt;
+    private volatile boolean stale = true;
+    private volatile long offset;
+    private volatile boolean offsetLoaded;
+
+    /**
+     * @param counter 保存代际的计数器
+     * @param counterKey 代际在计数器中的key
+     * @param legacyCounter 旧版本的计数器，为null时没有起点
+     * @param treeKeys 所在各级子树在counter中的key
+     */
+    CacheGeneration(RemoteCounter counter, Object counterKey, RemoteCounter legacyCounter, List<Object> treeKeys, long refreshMillis) {
+        this.counter = counter;
+        this.counterKey = counterKey;
+        this.legacyCounter = legacyCounter;
+        this.treeKeys = treeKeys;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+    }
+
+    /**
+     * 代际保存在保留的远端缓存中，远端不提供该缓存时退回旧版本的该cache name内的计数器，此时不支持子树计数器
+     * @param treeRoots cache name所在的各级子树的根（包括cache name自身）
+     */
+    static CacheGeneration of(CacheManager remoteCacheManager, String name, Cache remoteCache, List<String> treeRoots, long refreshMillis) {
+        Cache generations = remoteCacheManager.getCache(GENERATIONS_CACHE_NAME);
+        if (generations == null) {
+            return new CacheGeneration(CacheRemoteCounter.of(remoteCache), LEGACY_GENERATION_KEY, null, Collections.emptyList(), refreshMillis);
+        }
+        List<Object> treeKeys = new ArrayList<>(treeRoots.size());
+        for (String root : treeRoots) {
+            treeKeys.add(TREE_KEY_PREFIX + root);
+        }
+        return new CacheGeneration(CacheRemoteCounter.of(generations), name, CacheRemoteCounter.of(remoteCache), treeKeys, refreshMillis);
+    }
+
+    /**
+     * 递增子树计数器，子树下所有cache name在各节点下次读取代际时切换
+     * @throws IllegalStateException 远端不提供保留的代际缓存
+     */
+    static void incrementTree(CacheManager remoteCacheManager, String root) {
+        Cache generations = remoteCacheManager.getCache(GENERATIONS_CACHE_NAME);
+        if (generations == null) {
+            throw new IllegalStateException("remote cache " + GENERATIONS_CACHE_NAME + " is required to evict a cache tree");
+        }
+        CacheRemoteCounter.of(generations).incrementCounter(TREE_KEY_PREFIX + root);
+    }
+
+    long current() {
+        long now = System.nanoTime();
+        if (stale || now - refreshedAt >= refreshNanos) {
+            stale = false;
+            generation = offset() + counter.getCounter(counterKey) + treeGeneration();
+            refreshedAt = now;
+        }
+        return generation;
+    }
+
+    /**
+     * @return 当前代际无需重新读取远端
+     */
+    boolean isFresh() {
+        return !stale && System.nanoTime() - refreshedAt < refreshNanos;
+    }
+
+    /**
+     * 子树计数器同时重新读取，否则可能与其他节点在子树清空后使用的代际重复
+     */
+    long increment() {
+        generation = offset() + counter.incrementCounter(counterKey) + treeGeneration();
+        refreshedAt = System.nanoTime();
+        stale = false;
+        return generation;
+    }
+
+    /**
+     * 其他节点递增了代际，下次访问时重新读取
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * 收到其他节点广播的新代际，直接切换，不再读取远端
+     */
+    void advanceTo(long published) {
+        if (published > generation) {
+            generation = published;
+            refreshedAt = System.nanoTime();
+            stale = false;
+        }
+    }
+
+    private long treeGeneration() {
+        long sum = 0;
+        for (Object treeKey : treeKeys) {
+            sum += counter.getCounter(treeKey);
+        }
+        return sum;
+    }
+
+    private long offset() {
+        if (!offsetLoaded) {
+            offset = legacyCounter == null ? 0 : legacyCounter.getCounter(LEGACY_GENERATION_KEY);
+            offsetLoaded = true;
+        }
+        return offset;
+    }
+
+    static Object scope(CacheGeneration generation, long current, Object key) {
+        return generation == null ? key : new GenerationKey(current, key);
+    }
+}
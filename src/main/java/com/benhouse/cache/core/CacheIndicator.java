@@ -0,0 +1,298 @@
+package com.benhouse.cache.core;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 远端缓存中存储的本地缓存有效性指示器
+ * 远端保存为 REMOTE_PREFIX + Base64(二进制格式) 的字符串，任何远端序列化方式（JDK、Jackson、FastJson等）读回后都不变；
+ * 二进制格式: magic(4) | format(1) | flags(1) | version(8) | 节点位图(固定 maxNodes/8 字节)
+ * 位图大小只取决于 maxNodes，与实际节点数无关，节点有效性判断为O(1)
+ * flags带ABSENT时表示值不存在，位图替换为过期时间(8字节，epoch毫秒)，对所有节点生效
+ * flags带VALUE时同时携带远端完整值：位图前为位图长度(2字节)，位图后为RemoteValueCodec编码的值，
+ * 位图中的节点使用本地副本，其他节点直接使用携带的值
+ * 版本号为最后一次全量刷新的毫秒时间左移20位（同一毫秒内递增），key被删除或写入完整值后重新写入指示器时不会与之前的版本号重复
+ */
+public final class CacheIndicator {
+    private static final byte[] MAGIC = {'&', 'I', 'N', 'D'};
+    private static final byte FORMAT_V1 = 1;
+    private static final int FLAGS_OFFSET = 5;
+    private static final int VERSION_OFFSET = 6;
+    private static final int NODES_OFFSET = 14;
+    private static final byte FLAG_ABSENT = 1;
+    private static final byte FLAG_VALUE = 2;
+    /**
+     * 旧版本 "&IND&128;129;" 字符串格式的前缀
+     */
+    private static final String LEGACY_PREFIX = "&IND&";
+    static final String REMOTE_PREFIX = "&IND2&";
+
+    private final long version;
+    private final byte flags;
+    private final byte[] nodes;
+    /**
+     * 携带的编码后的完整值，没有时为null
+     */
+    private final byte[] value;
+
+    private CacheIndicator(long version, byte flags, byte[] nodes, byte[] value) {
+        this.version = version;
+        this.flags = flags;
+        this.nodes = nodes;
+        this.value = value;
+    }
+
+    /**
+     * 由某个节点写入新值产生的指示器，只有该节点有效
+     */
+    public static CacheIndicator refreshedBy(CacheIndicator previous, int nodeId, int maxNodes) {
+        long version = nextVersion(previous);
+        byte[] nodes = new byte[nodeBytes(maxNodes, nodeId)];
+        setBit(nodes, nodeId);
+        return new CacheIndicator(version, (byte) 0, nodes, null);
+    }
+
+    /**
+     * 本地缓存提升时保留远端完整值，只有该节点使用本地副本
+     * @param value RemoteValueCodec编码后的完整值
+     */
+    public static CacheIndicator carrying(byte[] value, int nodeId, int maxNodes) {
+        byte[] nodes = new byte[nodeBytes(maxNodes, nodeId)];
+        setBit(nodes, nodeId);
+        return new CacheIndicator(nextVersion(null), FLAG_VALUE, nodes, value);
+    }
+
+    /**
+     * 值不存在的标记，到期前所有节点都无需加载
+     */
+    public static String absent(CacheIndicator previous, long expiresAtMillis) {
+        long version = nextVersion(previous);
+        byte[] expiresAt = new byte[8];
+        writeLong(expiresAt, 0, expiresAtMillis);
+        return new CacheIndicator(version, FLAG_ABSENT, expiresAt, null).toRemote();
+    }
+
+    /**
+     * 毫秒时间左移20位，每毫秒内同一个key超过约100万次写入才可能追上之后重新开始的版本号
+     */
+    private static long nextVersion(CacheIndicator previous) {
+        long now = System.currentTimeMillis() << 20;
+        return previous == null ? now : Math.max(previous.version + 1, now);
+    }
+
+    /**
+     * 节点追上当前版本后加入有效节点集合，版本及携带的值不变
+     */
+    public CacheIndicator joinedBy(int nodeId) {
+        if (isValidFor(nodeId)) {
+            return this;
+        }
+        byte[] joined = Arrays.copyOf(nodes, Math.max(nodes.length, (nodeId >> 3) + 1));
+        setBit(joined, nodeId);
+        return new CacheIndicator(version, flags, joined, value);
+    }
+
+    public boolean isValidFor(int nodeId) {
+        if ((flags & FLAG_ABSENT) != 0) {
+            return false;
+        }
+        int index = nodeId >> 3;
+        return index < nodes.length && (nodes[index] & (1 << (nodeId & 7))) != 0;
+    }
+
+    public boolean isAbsent() {
+        return (flags & FLAG_ABSENT) != 0;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 携带的编码后的完整值，没有时为null
+     */
+    public byte[] getValue() {
+        return value;
+    }
+
+    /**
+     * @return 写入远端的字符串形式
+     */
+    public String toRemote() {
+        return REMOTE_PREFIX + Base64.getEncoder().encodeToString(toBytes());
+    }
+
+    private byte[] toBytes() {
+        int nodesOffset = value == null ? NODES_OFFSET : NODES_OFFSET + 2;
+        byte[] bytes = new byte[nodesOffset + nodes.length + (value == null ? 0 : value.length)];
+        System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+        bytes[MAGIC.length] = FORMAT_V1;
+        bytes[FLAGS_OFFSET] = flags;
+        writeLong(bytes, VERSION_OFFSET, version);
+        if (value != null) {
+            bytes[NODES_OFFSET] = (byte) (nodes.length >>> 8);
+            bytes[NODES_OFFSET + 1] = (byte) nodes.length;
+            System.arraycopy(value, 0, bytes, nodesOffset + nodes.length, value.length);
+        }
+        System.arraycopy(nodes, 0, bytes, nodesOffset, nodes.length);
+        return bytes;
+    }
+
+    /**
+     * @param remoteValue 远端缓存中读出的值
+     * @return 指示器，远端值不是指示器时返回null
+     */
+    public static CacheIndicator from(Object remoteValue) {
+        byte[] bytes = bytes(remoteValue);
+        if (bytes == null) {
+            return null;
+        }
+        int nodesOffset = nodesOffset(bytes);
+        int nodesEnd = nodesEnd(bytes);
+        byte[] value = (bytes[FLAGS_OFFSET] & FLAG_VALUE) == 0 ? null : Arrays.copyOfRange(bytes, nodesEnd, bytes.length);
+        return new CacheIndicator(version(bytes), bytes[FLAGS_OFFSET], Arrays.copyOfRange(bytes, nodesOffset, nodesEnd), value);
+    }
+
+    /**
+     * 不解码位图直接读取版本号
+     * @param remoteValue 远端读出的指示器
+     */
+    public static long version(Object remoteValue) {
+        return version(requireBytes(remoteValue));
+    }
+
+    private static long version(byte[] bytes) {
+        long version = 0;
+        for (int i = 0; i < 8; i++) {
+            version = (version << 8) | (bytes[VERSION_OFFSET + i] & 0xFF);
+        }
+        return version;
+    }
+
+    /**
+     * @return 最后一次全量刷新的大致时间，epoch毫秒
+     */
+    public static long refreshedAtMillis(Object remoteValue) {
+        return version(remoteValue) >>> 20;
+    }
+
+    /**
+     * 不解码位图直接判断节点是否有效
+     */
+    public static boolean isValidFor(Object remoteValue, int nodeId) {
+        byte[] bytes = requireBytes(remoteValue);
+        if ((bytes[FLAGS_OFFSET] & FLAG_ABSENT) != 0) {
+            return false;
+        }
+        int index = nodesOffset(bytes) + (nodeId >> 3);
+        return index < nodesEnd(bytes) && (bytes[index] & (1 << (nodeId & 7))) != 0;
+    }
+
+    /**
+     * @return 是否携带完整值
+     */
+    public static boolean carriesValue(Object remoteValue) {
+        byte[] bytes = bytes(remoteValue);
+        return bytes != null && (bytes[FLAGS_OFFSET] & FLAG_VALUE) != 0;
+    }
+
+    private static int nodesOffset(byte[] bytes) {
+        return (bytes[FLAGS_OFFSET] & FLAG_VALUE) == 0 ? NODES_OFFSET : NODES_OFFSET + 2;
+    }
+
+    private static int nodesEnd(byte[] bytes) {
+        if ((bytes[FLAGS_OFFSET] & FLAG_VALUE) == 0) {
+            return bytes.length;
+        }
+        return NODES_OFFSET + 2 + ((bytes[NODES_OFFSET] & 0xFF) << 8 | bytes[NODES_OFFSET + 1] & 0xFF);
+    }
+
+    /**
+     * @return 是否为未过期的不存在标记
+     */
+    public static boolean isAbsent(Object remoteValue, long nowMillis) {
+        byte[] bytes = requireBytes(remoteValue);
+        if ((bytes[FLAGS_OFFSET] & FLAG_ABSENT) == 0 || bytes.length < NODES_OFFSET + 8) {
+            return false;
+        }
+        long expiresAt = 0;
+        for (int i = 0; i < 8; i++) {
+            expiresAt = (expiresAt << 8) | (bytes[NODES_OFFSET + i] & 0xFF);
+        }
+        return nowMillis < expiresAt;
+    }
+
+    public static boolean isIndicator(Object remoteValue) {
+        return bytes(remoteValue) != null;
+    }
+
+    private static byte[] requireBytes(Object remoteValue) {
+        byte[] bytes = bytes(remoteValue);
+        if (bytes == null) {
+            throw new IllegalArgumentException("not a cache indicator: " + remoteValue);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 指示器的二进制格式，远端值不是指示器时为null
+     */
+    private static byte[] bytes(Object remoteValue) {
+        if (!(remoteValue instanceof String) || !((String) remoteValue).startsWith(REMOTE_PREFIX)) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(((String) remoteValue).substring(REMOTE_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return isBinaryIndicator(bytes) ? bytes : null;
+    }
+
+    private static boolean isBinaryIndicator(byte[] bytes) {
+        if (bytes.length < NODES_OFFSET || bytes[MAGIC.length] != FORMAT_V1) {
+            return false;
+        }
+        if ((bytes[FLAGS_OFFSET] & FLAG_VALUE) != 0 && (bytes.length < NODES_OFFSET + 2 || nodesEnd(bytes) > bytes.length)) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 旧格式指示器（"&IND&"字符串，或直接保存的二进制格式）一律视为失效，下次本地写入时会重写为新格式
+     * 二进制格式经JSON等序列化方式读回后不再是byte[]，无法识别，因此不再直接保存
+     */
+    public static boolean isLegacyIndicator(Object remoteValue) {
+        if (remoteValue instanceof byte[]) {
+            return isBinaryIndicator((byte[]) remoteValue);
+        }
+        return remoteValue instanceof String && ((String) remoteValue).startsWith(LEGACY_PREFIX);
+    }
+
+    private static int nodeBytes(int maxNodes, int nodeId) {
+        return Math.max((maxNodes + 7) >> 3, (nodeId >> 3) + 1);
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static void setBit(byte[] nodes, int nodeId) {
+        nodes[nodeId >> 3] |= (byte) (1 << (nodeId & 7));
+    }
+
+    @Override
+    public String toString() {
+        return "CacheIndicator{version=" + version + ", flags=" + flags + ", nodes=" + Arrays.toString(nodes)
+                + (value == null ? "" : ", value=" + value.length + " bytes") + "}";
+    }
+}
@@ -0,0 +1,30 @@
+package com.benhouse.cache.core;
+
+import org.springframework.cache.Cache;
+
+/**
+ * HeliosCacheManager中cache创建与退役事件，动态cache name较多时可用于监控registry规模
+ */
+public interface CacheLifecycleListener {
+
+    enum RetireReason {
+        /**
+         * 超过idleCacheRetireSeconds未被访问
+         */
+        IDLE,
+        /**
+         * 本地缓存内存预算不足
+         */
+        MEMORY_BUDGET,
+        /**
+         * 调用HeliosCacheManager.retireCache
+         */
+        MANUAL
+    }
+
+    default void onCacheCreated(String cacheName, Cache cache) {
+    }
+
+    default void onCacheRetired(String cacheName, Cache cache, RetireReason reason) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.benhouse.cache.core;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * 代际模式下远端实际使用的key，clear()递增代际后旧代际的key不再被访问，由远端TTL回收
+ * toString作为Redis等字符串key的表示，代际在前且不含':'，不会与其他key冲突
+ */
+public final class GenerationKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long generation;
+    private final Object key;
+
+    public GenerationKey(long generation, Object key) {
+        this.generation = generation;
+        this.key = key;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GenerationKey)) {
+            return false;
+        }
+        GenerationKey that = (GenerationKey) o;
+        return generation == that.generation && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(generation) + Objects.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        return generation + ":" + key;
+    }
+}
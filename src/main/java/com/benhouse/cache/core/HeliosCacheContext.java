@@ -0,0 +1,275 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.bus.InvalidationBus;
+import com.benhouse.cache.codec.CompactValueSerializer;
+import com.benhouse.cache.codec.RemoteValueCodec;
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.local.FrequencySketch;
+import com.benhouse.cache.local.JdkValueSerializer;
+import com.benhouse.cache.local.LocalMemoryBudget;
+import com.benhouse.cache.local.ValueSerializer;
+import com.benhouse.cache.size.SizeEstimator;
+import com.benhouse.cache.stats.CacheStatsRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 同一个HeliosCacheManager下所有MultiStepCacheDecorator共享的节点级组件
+ */
+@Slf4j
+public class HeliosCacheContext {
+    private static final int ADMISSION_SKETCH_WIDTH = 16384;
+    private final HeliosCacheProperties heliosCacheProperties;
+    private volatile int nodeId;
+    /**
+     * 节点id的租约，固定配置的节点id为null
+     */
+    private volatile NodeIdLease nodeIdLease;
+    private InvalidationBus invalidationBus;
+    private SizeEstimator sizeEstimator;
+    private LocalMemoryBudget localMemoryBudget;
+    private ValueSerializer valueSerializer = new JdkValueSerializer();
+    private ScheduledExecutorService scheduler;
+    private Executor asyncExecutor;
+    /**
+     * 由本类创建的默认异步线程池，关闭时需要释放
+     */
+    private ExecutorService defaultAsyncExecutor;
+    private LocalSnapshot localSnapshot;
+    private boolean localSnapshotOpened;
+    private RemoteValueCodec remoteValueCodec;
+    private final CacheStatsRegistry statsRegistry;
+    private NodeTopology topology;
+    /**
+     * adaptive准入的读取频率，节点内所有cache name共享，首次使用时创建
+     */
+    private FrequencySketch admissionSketch;
+    /**
+     * 配置为single时固定为单节点模式
+     */
+    private final boolean singleNodeConfigured;
+
+    public HeliosCacheContext(HeliosCacheProperties heliosCacheProperties, int nodeId) {
+        this.heliosCacheProperties = heliosCacheProperties;
+        this.nodeId = nodeId;
+        this.sizeEstimator = SizeEstimator.of(heliosCacheProperties.getSizeEstimator());
+        this.singleNodeConfigured = "single".equalsIgnoreCase(heliosCacheProperties.getTopologyMode());
+        this.statsRegistry = new CacheStatsRegistry(heliosCacheProperties.getCacheNameSeparator(), heliosCacheProperties.isStatsJmxEnabled());
+    }
+
+    public HeliosCacheProperties getHeliosCacheProperties() {
+        return heliosCacheProperties;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 租约被接管后切换到重新分配的节点id
+     */
+    void setNodeId(int nodeId, NodeIdLease nodeIdLease) {
+        this.nodeId = nodeId;
+        this.nodeIdLease = nodeIdLease;
+    }
+
+    /**
+     * @return 节点id是否仍确定属于本节点，为false时本地缓存既不读取也不写入，直到重新分配节点id
+     */
+    public boolean isLocalTierUsable() {
+        NodeIdLease lease = nodeIdLease;
+        return lease == null || lease.isValid(System.currentTimeMillis());
+    }
+
+    /**
+     * @return 失效总线，未启用时为null
+     */
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    public void setInvalidationBus(InvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    public SizeEstimator getSizeEstimator() {
+        return sizeEstimator;
+    }
+
+    public void setSizeEstimator(SizeEstimator sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * @return 节点本地缓存内存预算，未启用时为null
+     */
+    public LocalMemoryBudget getLocalMemoryBudget() {
+        return localMemoryBudget;
+    }
+
+    public void setLocalMemoryBudget(LocalMemoryBudget localMemoryBudget) {
+        this.localMemoryBudget = localMemoryBudget;
+    }
+
+    /**
+     * @return 堆外本地缓存使用的序列化方式
+     */
+    public ValueSerializer getValueSerializer() {
+        return valueSerializer;
+    }
+
+    public void setValueSerializer(ValueSerializer valueSerializer) {
+        this.valueSerializer = valueSerializer;
+    }
+
+    /**
+     * @return 当前是否只有本节点，为true时本地缓存命中无需校验远端指示器
+     */
+    public boolean isSingleNode() {
+        return singleNodeConfigured || topology != null && topology.isSingleNode();
+    }
+
+    void setTopology(NodeTopology topology) {
+        this.topology = topology;
+    }
+
+    NodeTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @return adaptive准入共享的读取频率统计，cache name数量不影响占用的内存
+     */
+    synchronized FrequencySketch getAdmissionSketch() {
+        if (admissionSketch == null) {
+            admissionSketch = new FrequencySketch(ADMISSION_SKETCH_WIDTH);
+        }
+        return admissionSketch;
+    }
+
+    public CacheStatsRegistry getStatsRegistry() {
+        return statsRegistry;
+    }
+
+    /**
+     * @return 节点级后台任务线程，首次使用时创建
+     */
+    public synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "super-cache-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * @return 异步API访问远端使用的线程池，未指定时首次使用时创建，JDK支持时使用虚拟线程
+     */
+    public synchronized Executor getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            defaultAsyncExecutor = newDefaultAsyncExecutor();
+            asyncExecutor = defaultAsyncExecutor;
+        }
+        return asyncExecutor;
+    }
+
+    public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    private static ExecutorService newDefaultAsyncExecutor() {
+        try {
+            Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreads.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("virtual threads not supported, use platform threads for async cache access");
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "super-cache-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return 上次关闭前写入的本地缓存快照，首次使用时打开，未启用或不可用时为null
+     */
+    synchronized LocalSnapshot getLocalSnapshot() {
+        if (!localSnapshotOpened) {
+            localSnapshotOpened = true;
+            Path file = localSnapshotFile();
+            localSnapshot = file == null ? null : LocalSnapshot.open(file, nodeId, valueSerializer);
+        }
+        return localSnapshot;
+    }
+
+    /**
+     * @return 直接写入远端的值的编解码，首次使用时创建；remoteValueCodec为none时不用于编码，
+     * 但仍用于解码关闭编码前或其他节点编码写入的值
+     */
+    public synchronized RemoteValueCodec getRemoteValueCodec() {
+        if (remoteValueCodec == null) {
+            remoteValueCodec = new RemoteValueCodec(new CompactValueSerializer(valueSerializer), heliosCacheProperties.getRemoteCompressThresholdBytes());
+        }
+        return remoteValueCodec;
+    }
+
+    /**
+     * @return 直接写入远端的值是否编码
+     */
+    public boolean isRemoteValueEncodingEnabled() {
+        String codec = heliosCacheProperties.getRemoteValueCodec();
+        if (StringUtils.isEmpty(codec) || "none".equalsIgnoreCase(codec)) {
+            return false;
+        }
+        if (!"compact".equalsIgnoreCase(codec)) {
+            throw new IllegalArgumentException("unknown remote value codec " + codec);
+        }
+        return true;
+    }
+
+    /**
+     * 把所有本地缓存写入快照文件，替换上一次的快照
+     */
+    void writeLocalSnapshot(Collection<MultiStepCacheDecorator> caches) {
+        Path file = localSnapshotFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            int count = LocalSnapshot.write(file, nodeId, valueSerializer, caches);
+            log.info("wrote {} local cache entries to snapshot {}", count, file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("failed to write local cache snapshot {}", file, e);
+        }
+    }
+
+    private Path localSnapshotFile() {
+        String dir = heliosCacheProperties.getSnapshotDir();
+        return StringUtils.isEmpty(dir) ? null : Paths.get(dir, "super-cache-" + nodeId + ".snapshot");
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (defaultAsyncExecutor != null) {
+            defaultAsyncExecutor.shutdown();
+        }
+        statsRegistry.unregisterAll();
+    }
+}
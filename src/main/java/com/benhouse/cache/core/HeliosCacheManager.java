@@ -1,81 +1,498 @@
 package com.benhouse.cache.core;
 
+import com.benhouse.cache.bus.InvalidationBus;
+import com.benhouse.cache.bus.InvalidationEvent;
+import com.benhouse.cache.bus.InvalidationTransport;
+import com.benhouse.cache.config.CacheSpec;
 import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.core.CacheLifecycleListener.RetireReason;
+import com.benhouse.cache.local.BudgetedLocalCache;
+import com.benhouse.cache.local.LocalMemoryBudget;
+import com.benhouse.cache.local.OffHeapCache;
+import com.benhouse.cache.local.ValueSerializer;
+import com.benhouse.cache.remote.RemoteCounter;
+import com.benhouse.cache.size.SizeEstimator;
+import com.benhouse.cache.stats.CacheStats;
+import com.benhouse.cache.stats.CacheStatsCounter;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
-import java.net.Inet4Address;
-import java.net.InetAddress;
-import java.net.NetworkInterface;
-import java.net.SocketException;
-import java.util.Arrays;
+import org.springframework.cache.caffeine.CaffeineCache;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
+@Slf4j
 public class HeliosCacheManager implements CacheManager {
 
     private final CacheManager remoteCacheManager;
-    private final CaffeineCacheManager caffeineCacheManager;
     private final ConcurrentMap<String,Cache> multiCaches;
+    /**
+     * 本节点当前注册的cache name，与multiCaches同步增删，避免动态cache name退役后一直占用内存；有序存储，子树即为一段连续区间
+     */
+    private final NavigableSet<String> cacheNameIndex = new ConcurrentSkipListSet<>();
     private final HeliosCacheProperties heliosCacheProperties;
 
-    public final static String machineKey = getMachineKey();
+    private volatile NodeIdLease nodeIdLease;
+    private final HeliosCacheContext context;
+    private final List<CacheLifecycleListener> lifecycleListeners = new CopyOnWriteArrayList<>();
 
-    private static String getMachineKey() {
-        Enumeration<NetworkInterface> allNetInterfaces;
-        String resultIP = null;
+    public HeliosCacheManager(CacheManager remoteCacheManager, HeliosCacheProperties heliosCacheProperties) {
+        this(remoteCacheManager, heliosCacheProperties, null);
+    }
+
+    /**
+     * @param invalidationTransport 失效事件传输层，为null时不启用失效总线
+     */
+    public HeliosCacheManager(CacheManager remoteCacheManager, HeliosCacheProperties heliosCacheProperties, InvalidationTransport invalidationTransport) {
+        this.heliosCacheProperties = heliosCacheProperties;
+        this.remoteCacheManager = remoteCacheManager;
+        this.nodeIdLease = NodeIdAllocator.allocate(remoteCacheManager, heliosCacheProperties);
+        this.context = new HeliosCacheContext(heliosCacheProperties, nodeIdLease.getNodeId());
+        if (nodeIdLease.isLeased()) {
+            context.setNodeId(nodeIdLease.getNodeId(), nodeIdLease);
+            long renewMillis = Math.max(1, nodeIdLease.getLeaseMillis() / 3);
+            context.getScheduler().scheduleWithFixedDelay(this::renewNodeId, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        }
+        if (invalidationTransport != null) {
+            context.setInvalidationBus(new InvalidationBus(invalidationTransport, nodeIdLease.getNodeId(), heliosCacheProperties.getInvalidationBusMaxLagMillis()));
+            context.getInvalidationBus().subscribeTree(this::invalidateCacheTree);
+            context.getInvalidationBus().start(context.getScheduler());
+        }
+        if (heliosCacheProperties.getLocalMemoryBudgetBytes() > 0) {
+            context.setLocalMemoryBudget(new LocalMemoryBudget(heliosCacheProperties.getLocalMemoryBudgetBytes(),
+                    name -> retireCache(name, null, RetireReason.MEMORY_BUDGET)));
+        }
+        this.multiCaches =new ConcurrentHashMap<>();
+        long idleMillis = TimeUnit.SECONDS.toMillis(heliosCacheProperties.getIdleCacheRetireSeconds());
+        if (idleMillis > 0) {
+            long sweepMillis = Math.max(1000, Math.min(idleMillis / 4, 60_000));
+            context.getScheduler().scheduleWithFixedDelay(() -> retireIdleCaches(idleMillis), sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        }
+        if ("auto".equalsIgnoreCase(heliosCacheProperties.getTopologyMode())) {
+            startTopology();
+        }
+        long snapshotSeconds = heliosCacheProperties.getSnapshotIntervalSeconds();
+        if (snapshotSeconds > 0) {
+            context.getScheduler().scheduleWithFixedDelay(this::writeLocalSnapshot, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void startTopology() {
+        Cache heartbeats = remoteCacheManager.getCache(NodeTopology.HEARTBEAT_CACHE_NAME);
+        if (!(heartbeats instanceof RemoteCounter)) {
+            // 读后写的计数器会合并并发的心跳，无法发现其他节点
+            log.warn("remote cache {} does not implement RemoteCounter, topology mode auto falls back to cluster", NodeTopology.HEARTBEAT_CACHE_NAME);
+            return;
+        }
+        if (heliosCacheProperties.getTopologyClusterVersion() >= NodeTopology.PROTOCOL_VERSION) {
+            NodeTopology.confirmClusterVersion((RemoteCounter) heartbeats);
+        }
+        NodeTopology topology = new NodeTopology((RemoteCounter) heartbeats, nodeIdLease.getNodeId(),
+                heliosCacheProperties.getTopologyHeartbeatMillis(), this::leaveSingleNodeMode);
+        context.setTopology(topology);
+        topology.start(context.getScheduler());
+    }
+
+    /**
+     * 续约节点id，槽位已被其他节点接管时重新分配：本地缓存在租约失效时已停止使用，
+     * 清空所有本地副本后才切换到新的节点id恢复使用；分配失败时在下次续约时重试
+     */
+    private void renewNodeId() {
+        NodeIdLease lease = nodeIdLease;
+        if (lease.renew()) {
+            return;
+        }
+        NodeIdLease reallocated;
         try {
-            allNetInterfaces = NetworkInterface.getNetworkInterfaces();
-        } catch (SocketException e) {
-            throw new RuntimeException(e);
-        }
-        InetAddress ip;
-        assert allNetInterfaces != null;
-        while (allNetInterfaces.hasMoreElements()) {
-            NetworkInterface netInterface = allNetInterfaces.nextElement();
-            Enumeration<InetAddress> addresses = netInterface.getInetAddresses();
-            while (addresses.hasMoreElements()) {
-                ip =  addresses.nextElement();
-                if (ip instanceof Inet4Address) {
-                    if (resultIP == null)
-                        resultIP = ip.getHostAddress();
-                }
-            }
+            reallocated = NodeIdAllocator.allocate(remoteCacheManager, heliosCacheProperties);
+        } catch (RuntimeException e) {
+            log.error("failed to re-allocate node id after node id {} was taken over", lease.getNodeId(), e);
+            return;
+        }
+        for (Cache cache : multiCaches.values()) {
+            ((MultiStepCacheDecorator) cache).onNodeIdChanged();
         }
-        if(resultIP!=null){
-            Integer ipSum= Arrays.stream(resultIP.split("\\.")).map(Integer::valueOf).reduce(Integer::sum).orElse(-1);
-            return ipSum.toString();
-        }else{
-            throw new RuntimeException("can not get machine key");
+        if (context.getInvalidationBus() != null) {
+            context.getInvalidationBus().setNodeId(reallocated.getNodeId());
         }
+        context.setNodeId(reallocated.getNodeId(), reallocated);
+        nodeIdLease = reallocated;
+        log.warn("node id {} was taken over, switch to node id {}", lease.getNodeId(), reallocated.getNodeId());
+    }
 
+    /**
+     * 单节点模式下的写入没有更新指示器，其他节点加入后本地副本不再可信
+     */
+    private void leaveSingleNodeMode() {
+        for (Cache cache : multiCaches.values()) {
+            ((MultiStepCacheDecorator) cache).leaveSingleNodeMode();
+        }
     }
 
-    public HeliosCacheManager(CacheManager remoteCacheManager, HeliosCacheProperties heliosCacheProperties) {
-        this.heliosCacheProperties = heliosCacheProperties;
-        this.remoteCacheManager = remoteCacheManager;
-        this.caffeineCacheManager = new CaffeineCacheManager();
-        caffeineCacheManager.setCaffeine(Caffeine.newBuilder().expireAfterAccess(heliosCacheProperties.getExpireSecondsAfterAccess(),TimeUnit.SECONDS));
+    public void addLifecycleListener(CacheLifecycleListener listener) {
+        lifecycleListeners.add(listener);
+    }
 
-        this.multiCaches =new ConcurrentHashMap<>();
+    /**
+     * 替换异步API默认使用的线程池
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        context.setAsyncExecutor(asyncExecutor);
     }
 
+    /**
+     * 替换堆外本地缓存默认的Java序列化，需要在第一次getCache之前调用
+     */
+    public void setValueSerializer(ValueSerializer valueSerializer) {
+        context.setValueSerializer(valueSerializer);
+    }
+
+    /**
+     * 替换默认的对象大小估算方式，需要在第一次getCache之前调用
+     */
+    public void setSizeEstimator(SizeEstimator sizeEstimator) {
+        context.setSizeEstimator(sizeEstimator);
+    }
+
+    /**
+     * 已创建的cache直接无锁读取；首次访问时每个cache name只会创建一次
+     */
     @Override
     public Cache getCache(String s) {
-        Cache cache= multiCaches.get(s);
-        if(cache != null){
-            return cache;
-        }else{
-            synchronized(this.multiCaches) {
-                cache = new MultiStepCacheDecorator(remoteCacheManager.getCache(s), caffeineCacheManager.getCache(s),this.heliosCacheProperties);
-                multiCaches.put(s, cache);
+        return getCache(s, null);
+    }
+
+    /**
+     * @param baseName 拼接@CacheNameSuffix前的cache name，统计按它汇总；为null时按cacheNameSeparator推断
+     */
+    public Cache getCache(String s, String baseName) {
+        MultiStepCacheDecorator cache = (MultiStepCacheDecorator) multiCaches.get(s);
+        if (cache == null) {
+            // 远端访问放在computeIfAbsent之外，不阻塞哈希到同一个桶的其他cache name
+            Cache remoteCache = remoteCacheManager.getCache(s);
+            CacheGeneration generation = heliosCacheProperties.isGenerationClearEnabled()
+                    ? CacheGeneration.of(remoteCacheManager, s, remoteCache, treeRoots(s), heliosCacheProperties.getGenerationRefreshMillis()) : null;
+            MultiStepCacheDecorator[] created = new MultiStepCacheDecorator[1];
+            cache = (MultiStepCacheDecorator) multiCaches.computeIfAbsent(s, name -> created[0] = createCache(name, baseName, remoteCache, generation));
+            if (cache == created[0]) {
+                for (CacheLifecycleListener listener : lifecycleListeners) {
+                    listener.onCacheCreated(s, cache);
+                }
+            }
+        }
+        cache.touch();
+        return cache;
+    }
+
+    /**
+     * 在computeIfAbsent中调用，只创建本地对象；创建成功后才加入cacheNameIndex
+     * @param remoteCache 已在锁外取得的远端缓存
+     */
+    private MultiStepCacheDecorator createCache(String name, String baseName, Cache remoteCache, CacheGeneration generation) {
+        CacheSpec cacheSpec = heliosCacheProperties.getCacheSpec(name);
+        CacheStatsCounter stats = context.getStatsRegistry().counter(name, baseName);
+        remoteCache = indicatorBuckets(remoteCache, cacheSpec);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remoteCache,
+                createLocalCache(name, remoteCache, cacheSpec, generation, stats), cacheSpec, context, generation, stats);
+        if (context.getInvalidationBus() != null) {
+            context.getInvalidationBus().subscribe(name, decorator);
+        }
+        cacheNameIndex.add(name);
+        return decorator;
+    }
+
+    /**
+     * 配置indicatorBuckets时指示器合并存放到远端桶中，远端未实现HashCache时保持每个key单独存放
+     */
+    private Cache indicatorBuckets(Cache remoteCache, CacheSpec cacheSpec) {
+        if (cacheSpec.getIndicatorBuckets() <= 0) {
+            return remoteCache;
+        }
+        if (!IndicatorBucketCache.supports(remoteCache)) {
+            log.warn("remote cache {} does not implement HashCache, indicatorBuckets is ignored", remoteCache.getName());
+            return remoteCache;
+        }
+        return new IndicatorBucketCache(remoteCache, cacheSpec.getIndicatorBuckets(), TimeUnit.SECONDS.toMillis(cacheSpec.getIndicatorBucketTtlSeconds()));
+    }
+
+    /**
+     * 按cache name对应的配置创建本地缓存
+     */
+    private Cache createLocalCache(String name, Cache remoteCache, CacheSpec cacheSpec, CacheGeneration generation, CacheStatsCounter stats) {
+        if (cacheSpec.getOffHeapCapacityBytes() > 0) {
+            return new OffHeapCache(name, context.getValueSerializer(), cacheSpec.getOffHeapCapacityBytes());
+        }
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder();
+        long expireSecondsAfterAccess = cacheSpec.getExpireSecondsAfterAccess() == null
+                ? heliosCacheProperties.getExpireSecondsAfterAccess() : cacheSpec.getExpireSecondsAfterAccess();
+        if (expireSecondsAfterAccess > 0) {
+            caffeine.expireAfterAccess(expireSecondsAfterAccess, TimeUnit.SECONDS);
+        }
+        if (cacheSpec.getExpireSecondsAfterWrite() > 0) {
+            caffeine.expireAfterWrite(cacheSpec.getExpireSecondsAfterWrite(), TimeUnit.SECONDS);
+        }
+        LocalMemoryBudget budget = context.getLocalMemoryBudget();
+        // 启用内存预算时单个cache也不能超过预算
+        long maximumWeight = cacheSpec.getMaximumWeight() > 0 || budget == null ? cacheSpec.getMaximumWeight() : budget.getBudgetBytes();
+        if (cacheSpec.getMaximumSize() > 0) {
+            caffeine.maximumSize(cacheSpec.getMaximumSize());
+        } else if (maximumWeight > 0) {
+            caffeine.maximumWeight(maximumWeight)
+                    .weigher((key, value) -> (int) Math.min(Integer.MAX_VALUE, BudgetedLocalCache.weightOf(value)));
+        }
+        LocalMemoryBudget.Usage usage = budget == null ? null : budget.register(name);
+        caffeine.removalListener((key, value, cause) -> {
+            if (cause.wasEvicted()) {
+                stats.recordLocalEviction();
+            }
+            if (usage != null) {
+                usage.release(BudgetedLocalCache.weightOf(value));
+            }
+        });
+        Cache localCache;
+        if (cacheSpec.getRefreshSecondsAfterWrite() > 0) {
+            caffeine.refreshAfterWrite(cacheSpec.getRefreshSecondsAfterWrite(), TimeUnit.SECONDS);
+            localCache = new CaffeineCache(name, caffeine.build(new LocalRevalidationLoader(remoteCache, context, generation)));
+        } else {
+            localCache = new CaffeineCache(name, caffeine.build());
+        }
+        return usage == null ? localCache : new BudgetedLocalCache(localCache, usage);
+    }
+
+    /**
+     * 将cache从管理器中移除并清空其本地缓存，下次访问时重新创建
+     */
+    public void retireCache(String name) {
+        retireCache(name, null, RetireReason.MANUAL);
+    }
+
+    /**
+     * @param expected 不为null时只有当前注册的仍是该实例才会退役，避免误删刚重新创建的cache
+     */
+    private void retireCache(String name, MultiStepCacheDecorator expected, RetireReason reason) {
+        MultiStepCacheDecorator[] removed = new MultiStepCacheDecorator[1];
+        // 与getCache的computeIfAbsent互斥，不会删掉刚重新创建的cache name的索引
+        multiCaches.computeIfPresent(name, (key, current) -> {
+            if (expected != null && current != expected) {
+                return current;
             }
-            return cache;
+            removed[0] = (MultiStepCacheDecorator) current;
+            cacheNameIndex.remove(key);
+            return null;
+        });
+        MultiStepCacheDecorator decorator = removed[0];
+        if (decorator == null) {
+            return;
         }
+        if (context.getInvalidationBus() != null) {
+            context.getInvalidationBus().unsubscribe(name, decorator);
+        }
+        decorator.retire();
+        context.getStatsRegistry().release(name);
+        for (CacheLifecycleListener listener : lifecycleListeners) {
+            listener.onCacheRetired(name, decorator, reason);
+        }
+    }
+
+    private void retireIdleCaches(long idleMillis) {
+        long deadline = System.currentTimeMillis() - idleMillis;
+        try {
+            for (Map.Entry<String, Cache> entry : multiCaches.entrySet()) {
+                MultiStepCacheDecorator decorator = (MultiStepCacheDecorator) entry.getValue();
+                if (decorator.getLastAccessTime() < deadline) {
+                    retireCache(entry.getKey(), decorator, RetireReason.IDLE);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("failed to retire idle caches", e);
+        }
+    }
+
+    /**
+     * 清空一棵cache name子树，例如 evictCacheTree("RULE", "TENANT_A") 会清空 RULE{sep}TENANT_A 及 RULE{sep}TENANT_A{sep}... 的所有缓存，
+     * 不包括 RULE{sep}TENANT_AB
+     * 只递增远端的子树计数器，子树下任意节点创建过的cache name（包括已退役的）都切换到新的代际，旧代际的远端key由TTL回收；
+     * 启用失效总线时其他节点收到广播后立即切换，否则最多延迟 generationRefreshMillis
+     * @param path cache name及逐级的@CacheNameSuffix，按cacheNameSeparator拼接
+     * @throws IllegalStateException 未开启代际模式或未配置cacheNameSeparator
+     */
+    public void evictCacheTree(String... path) {
+        requireCacheTree();
+        if (!heliosCacheProperties.isGenerationClearEnabled()) {
+            // 没有代际时无法覆盖其他节点创建或已退役的cache name的远端数据
+            throw new IllegalStateException("generationClearEnabled is required to evict a cache tree");
+        }
+        String root = String.join(heliosCacheProperties.getCacheNameSeparator(), path);
+        CacheGeneration.incrementTree(remoteCacheManager, root);
+        invalidateCacheTree(root);
+        if (context.getInvalidationBus() != null) {
+            context.getInvalidationBus().publish(InvalidationEvent.Type.CLEAR_TREE, root, null);
+        }
+    }
+
+    /**
+     * 子树按完整的层级匹配，返回root自身及 root{sep}... 中本节点当前注册的cache name
+     * @throws IllegalStateException 未配置cacheNameSeparator
+     */
+    public Collection<String> getCacheTree(String root) {
+        requireCacheTree();
+        String separator = heliosCacheProperties.getCacheNameSeparator();
+        NavigableSet<String> tree = new TreeSet<>(cacheNameIndex.subSet(root + separator, true, root + separator + Character.MAX_VALUE, false));
+        if (cacheNameIndex.contains(root)) {
+            tree.add(root);
+        }
+        return tree;
+    }
+
+    /**
+     * 分隔符为空时无法区分层级，按字符串前缀匹配会把 RULE{sep}TENANT_A1 当作 RULE{sep}TENANT_A 的子树
+     */
+    private void requireCacheTree() {
+        if (heliosCacheProperties.getCacheNameSeparator().isEmpty()) {
+            throw new IllegalStateException("cacheNameSeparator is required for cache tree operations");
+        }
+    }
+
+    /**
+     * @return cache name所在的各级子树的根，包括cache name自身；未配置分隔符时为空
+     */
+    private List<String> treeRoots(String name) {
+        String separator = heliosCacheProperties.getCacheNameSeparator();
+        if (separator.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> roots = new ArrayList<>();
+        for (int i = name.indexOf(separator); i >= 0; i = name.indexOf(separator, i + separator.length())) {
+            roots.add(name.substring(0, i));
+        }
+        roots.add(name);
+        return roots;
+    }
+
+    /**
+     * 子树计数器已递增，本节点注册的cache name重新读取代际
+     */
+    private void invalidateCacheTree(String root) {
+        for (String name : getCacheTree(root)) {
+            MultiStepCacheDecorator decorator = (MultiStepCacheDecorator) multiCaches.get(name);
+            if (decorator != null) {
+                decorator.invalidateTree();
+            }
+        }
+    }
+
+    /**
+     * @return 当前注册的cache数量
+     */
+    public int getCacheCount() {
+        return multiCaches.size();
+    }
+
+    /**
+     * 停止后台任务，启用快照时写入本地缓存快照并释放节点id，应用关闭时调用
+     */
+    public void shutdown() {
+        for (Cache cache : multiCaches.values()) {
+            ((MultiStepCacheDecorator) cache).flushIndicators();
+        }
+        if (context.getTopology() != null) {
+            context.getTopology().leave();
+        }
+        if (context.getInvalidationBus() != null) {
+            context.getInvalidationBus().close();
+        }
+        context.shutdown();
+        writeLocalSnapshot();
+        nodeIdLease.release();
+    }
+
+    private void writeLocalSnapshot() {
+        List<MultiStepCacheDecorator> caches = new ArrayList<>(multiCaches.size());
+        for (Cache cache : multiCaches.values()) {
+            caches.add((MultiStepCacheDecorator) cache);
+        }
+        context.writeLocalSnapshot(caches);
+    }
+
+    /**
+     * @return 当前是否处于单节点模式（配置为single，或auto模式下只有本节点存活）
+     */
+    public boolean isSingleNode() {
+        return context.isSingleNode();
+    }
+
+    /**
+     * @return 所有基础cache name的统计快照，带后缀的cache name汇总到基础cache name
+     */
+    public Map<String, CacheStats> getStats() {
+        return context.getStatsRegistry().snapshot();
+    }
+
+    /**
+     * @return cache name所属基础cache name的统计快照，没有访问过时为null
+     */
+    public CacheStats getStats(String cacheName) {
+        return context.getStatsRegistry().snapshot(cacheName);
+    }
+
+    /**
+     * @return 节点本地缓存内存预算及占用情况，未启用时为null
+     */
+    public LocalMemoryBudget getLocalMemoryBudget() {
+        return context.getLocalMemoryBudget();
+    }
+
+    /**
+     * 批量读取指定cache的多个key，远端指示器一次批量取回
+     * @param batchLoader 一次性加载未命中的key，为null时只返回命中的key
+     */
+    public <K, V> Map<K, V> getAll(String cacheName, Collection<K> keys, Function<Collection<K>, Map<K, V>> batchLoader) {
+        return ((MultiStepCacheDecorator) getCache(cacheName)).getAll(keys, batchLoader);
+    }
+
+    public void putAll(String cacheName, Map<?, ?> entries) {
+        ((MultiStepCacheDecorator) getCache(cacheName)).putAll(entries);
+    }
+
+    /**
+     * 异步读取，本地可信副本在调用线程直接完成
+     */
+    public CompletableFuture<Cache.ValueWrapper> getAsync(String cacheName, Object key) {
+        return ((MultiStepCacheDecorator) getCache(cacheName)).getAsync(key);
+    }
+
+    public <T> CompletableFuture<T> getAsync(String cacheName, Object key, Callable<T> loader) {
+        return ((MultiStepCacheDecorator) getCache(cacheName)).getAsync(key, loader);
+    }
+
+    public CompletableFuture<Void> putAsync(String cacheName, Object key, Object value) {
+        return ((MultiStepCacheDecorator) getCache(cacheName)).putAsync(key, value);
+    }
+
+    public CompletableFuture<Void> evictAsync(String cacheName, Object key) {
+        return ((MultiStepCacheDecorator) getCache(cacheName)).evictAsync(key);
+    }
+
+    /**
+     * @return 当前节点在指示器中的id
+     */
+    public int getNodeId() {
+        return context.getNodeId();
     }
 
     @Override
@@ -6,45 +6,78 @@ import org.springframework.cache.CacheManager;
 import org.springframework.cache.interceptor.AbstractCacheResolver;
 import org.springframework.cache.interceptor.CacheOperationInvocationContext;
 import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.StringUtils;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 通过对@CacheName的解析
  * 支持动态指定@Cacheable 和@CacheEvict的Cache Name，实现批量失效指定范围的缓存
- * Cache Name会尝试自动拼接@CacheName注解解析出的内容
+ * Cache Name会尝试自动拼接@CacheName注解解析出的内容，多个@CacheNameSuffix参数按参数顺序逐级拼接
+ * 每个方法的注解扫描与SpEL解析只做一次，结果缓存为ResolutionPlan
  */
 public class HeliosCacheResolver extends AbstractCacheResolver {
+    /**
+     * 每个方法缓存的拼接后cache name的尾缀数量上限，超过后清空重建
+     */
+    private static final int MAX_CACHED_SUFFIXES = 4096;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, HeliosCacheResolver.class.getClassLoader()));
+    private final ConcurrentMap<Method, ResolutionPlan> plans = new ConcurrentHashMap<>();
+    private final String separator;
+
     public HeliosCacheResolver(CacheManager cacheManager){
+        this(cacheManager, "");
+    }
+
+    /**
+     * @param separator cache name与各级尾缀之间的分隔符
+     */
+    public HeliosCacheResolver(CacheManager cacheManager, String separator){
         super(cacheManager);
+        this.separator = separator;
     }
     @Override
     public Collection<? extends Cache> resolveCaches(CacheOperationInvocationContext<?> cacheOperationInvocationContext) {
         Collection<String> cacheNames = this.getCacheNames(cacheOperationInvocationContext);
         if (cacheNames == null) {
             return Collections.emptyList();
-        } else {
-            String suffix= getCacheNameSuffix(cacheOperationInvocationContext);
-            Collection<Cache> result = new ArrayList(cacheNames.size());
-            //显示指定了cacheName
-            Iterator var4 = cacheNames.iterator();
-            while(var4.hasNext()) {
-                String cacheName = var4.next()+suffix;
-                    Cache cache = this.getCacheManager().getCache(cacheName);
-                    if (cache == null) {
-                        throw new IllegalArgumentException("Cannot find cache named '" + cacheName + "' for " + cacheOperationInvocationContext.getOperation());
-                    }
-                    result.add(cache);
+        }
+        ResolutionPlan plan = getPlan(cacheOperationInvocationContext.getMethod());
+        String suffix = plan.suffix(cacheOperationInvocationContext.getArgs());
+        Collection<Cache> result = new ArrayList<>(cacheNames.size());
+        //显示指定了cacheName
+        for (String name : cacheNames) {
+            String cacheName = plan.cacheName(name, suffix);
+            Cache cache = getCache(cacheName, name);
+            if (cache == null) {
+                throw new IllegalArgumentException("Cannot find cache named '" + cacheName + "' for " + cacheOperationInvocationContext.getOperation());
             }
-            return result;
+            result.add(cache);
+        }
+        return result;
+    }
+
+    /**
+     * HeliosCacheManager按注解中的cache name汇总带尾缀的cache name的统计
+     */
+    private Cache getCache(String cacheName, String baseName) {
+        CacheManager cacheManager = getCacheManager();
+        if (cacheManager instanceof HeliosCacheManager) {
+            return ((HeliosCacheManager) cacheManager).getCache(cacheName, baseName);
         }
+        return cacheManager.getCache(cacheName);
     }
 
     @Override
@@ -52,42 +85,97 @@ public class HeliosCacheResolver extends AbstractCacheResolver {
         return cacheOperationInvocationContext.getOperation().getCacheNames();
     }
 
+    ResolutionPlan getPlan(Method method) {
+        ResolutionPlan plan = plans.get(method);
+        return plan != null ? plan : plans.computeIfAbsent(method, this::createPlan);
+    }
+
     /**
-     * 根据注解获取cache name尾缀
-     * @param cacheOperationInvocationContext
-     * @return
+     * 根据注解生成cache name尾缀的解析计划
      */
-    private String getCacheNameSuffix(CacheOperationInvocationContext<?> cacheOperationInvocationContext){
+    private ResolutionPlan createPlan(Method method) {
         //尝试获取自定义cache name
-        Annotation[][]  annotations= cacheOperationInvocationContext.getMethod().getParameterAnnotations();
-        Integer argIndex=null;
-        String spel="";
-        for (int i=0;i<annotations.length;i++){
-            for(int j=0;j<annotations[i].length;j++){
-                if(annotations[i][j].annotationType().isAssignableFrom(CacheNameSuffix.class)){
-                    argIndex=i;
-                    spel =((CacheNameSuffix) annotations[i][j]).value();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        List<Integer> argIndexes = new ArrayList<>();
+        List<Expression> expressions = new ArrayList<>();
+        for (int i = 0; i < annotations.length; i++) {
+            for (int j = 0; j < annotations[i].length; j++) {
+                if (annotations[i][j].annotationType().isAssignableFrom(CacheNameSuffix.class)) {
+                    String spel = ((CacheNameSuffix) annotations[i][j]).value();
+                    argIndexes.add(i);
+                    expressions.add(StringUtils.isEmpty(spel) ? null : parser.parseExpression(spel));
                     break;
                 }
             }
         }
-        if(argIndex==null){
-            return "";
+        int[] indexes = new int[argIndexes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = argIndexes.get(i);
+        }
+        return new ResolutionPlan(indexes, expressions.toArray(new Expression[0]), separator);
+    }
+
+    static final class ResolutionPlan {
+        private final int[] argIndexes;
+        /**
+         * 与argIndexes一一对应，为null时直接用参数值作为尾缀
+         */
+        private final Expression[] expressions;
+        private final String separator;
+        /**
+         * 尾缀 -> (cache name -> 拼接后的cache name)
+         */
+        private final ConcurrentMap<String, ConcurrentMap<String, String>> suffixedNames = new ConcurrentHashMap<>();
+
+        ResolutionPlan(int[] argIndexes, Expression[] expressions, String separator) {
+            this.argIndexes = argIndexes;
+            this.expressions = expressions;
+            this.separator = separator;
         }
 
-        if(StringUtils.isEmpty(spel)){
-            //spel为空，直接用参数值作为cache name
-            if(cacheOperationInvocationContext.getArgs()[argIndex] == null){
-                throw new RuntimeException("cache name param should not be null");
+        /**
+         * @return 所有层级的尾缀，每级前面带分隔符
+         */
+        String suffix(Object[] args) {
+            if (argIndexes.length == 0) {
+                return "";
+            }
+            if (argIndexes.length == 1) {
+                String part = part(args, 0);
+                return separator.isEmpty() ? part : separator + part;
+            }
+            StringBuilder suffix = new StringBuilder();
+            for (int i = 0; i < argIndexes.length; i++) {
+                suffix.append(separator).append(part(args, i));
+            }
+            return suffix.toString();
+        }
+
+        private String part(Object[] args, int i) {
+            Object arg = args[argIndexes[i]];
+            if (expressions[i] == null) {
+                if (arg == null) {
+                    throw new RuntimeException("cache name param should not be null");
+                }
+                return arg.toString();
+            }
+            //解析spel表达式，MIXED模式下多次解释执行后会编译为字节码
+            return expressions[i].getValue(arg).toString();
+        }
+
+        String cacheName(String name, String suffix) {
+            if (suffix.isEmpty()) {
+                return name;
+            }
+            ConcurrentMap<String, String> names = suffixedNames.get(suffix);
+            if (names == null) {
+                if (suffixedNames.size() >= MAX_CACHED_SUFFIXES) {
+                    suffixedNames.clear();
+                }
+                names = suffixedNames.computeIfAbsent(suffix, s -> new ConcurrentHashMap<>(4));
             }
-            String calcName= cacheOperationInvocationContext.getArgs()[argIndex].toString();
-            return calcName;
-        }else {
-            //解析spel表达式
-            ExpressionParser parser = new SpelExpressionParser();
-            Expression exp = parser.parseExpression(spel);
-            String calcName = exp.getValue(cacheOperationInvocationContext.getArgs()[argIndex]).toString();
-            return calcName;
+            String cacheName = names.get(name);
+            return cacheName != null ? cacheName : names.computeIfAbsent(name, n -> n + suffix);
         }
     }
 }
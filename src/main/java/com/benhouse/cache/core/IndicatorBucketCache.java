@@ -0,0 +1,270 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.remote.BatchCache;
+import com.benhouse.cache.remote.CompareAndSetCache;
+import com.benhouse.cache.remote.HashCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 把同一个cache的指示器按key哈希合并存放到固定数量的远端桶中，减少远端key数量及每个key的固定开销
+ * 每个桶为一个远端哈希结构，指示器写入桶的字段，完整值仍按原key写入，同一个key的桶字段与原key最多只存在一个：
+ * 写入指示器时在同一个原子操作中删除原key，写入完整值时在同一个原子操作中删除桶字段，比较写入同时校验两者
+ * 单个key读取时在一次往返中先查桶字段再查原key，均不读取整个桶
+ * 桶字段没有单独的过期时间，写入指示器时按1/buckets的概率清理所在桶中超过ttl未全量刷新的字段
+ * 桶的下标由key的toString计算，多个节点间需保证key的toString稳定
+ */
+@Slf4j
+class IndicatorBucketCache implements Cache, BatchCache, CompareAndSetCache {
+    private static final String BUCKET_PREFIX = "&INDB&";
+
+    private final Cache delegate;
+    private final HashCache hashCache;
+    private final int buckets;
+    private final long ttlMillis;
+
+    /**
+     * @param delegate 实现HashCache的远端缓存
+     * @param ttlMillis 桶字段在最后一次全量刷新后保留的时间，0为不清理
+     */
+    IndicatorBucketCache(Cache delegate, int buckets, long ttlMillis) {
+        if (!supports(delegate)) {
+            throw new IllegalArgumentException("indicator buckets require remote cache to implement HashCache");
+        }
+        this.delegate = delegate;
+        this.hashCache = (HashCache) delegate;
+        this.buckets = buckets;
+        this.ttlMillis = ttlMillis;
+    }
+
+    static boolean supports(Cache remoteCache) {
+        return remoteCache instanceof HashCache;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return hashCache.hashGetOrGet(bucketKey(key), field(key), key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        Object result = value == null ? null : value.get();
+        if (result != null && type != null && !type.isInstance(result)) {
+            throw new IllegalStateException("cached value is not of required type [" + type.getName() + "]: " + result);
+        }
+        return (T) result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+        return delegate.get(key, valueLoader);
+    }
+
+    /**
+     * 指示器写入桶并删除原key上的旧值，完整值写入原key并删除桶中的旧指示器，均为一次原子操作
+     */
+    @Override
+    public void put(Object key, Object value) {
+        Object bucketKey = bucketKey(key);
+        if (isBucketField(value)) {
+            hashCache.hashPut(bucketKey, Collections.singletonMap(field(key), value), Collections.singletonList(key));
+            maybeSweep(bucketKey);
+        } else {
+            hashCache.hashDeleteAndPut(bucketKey, Collections.singletonList(field(key)), Collections.singletonMap(key, value));
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        if (compareAndSet(key, null, value)) {
+            return null;
+        }
+        return get(key);
+    }
+
+    /**
+     * 先删除桶字段再删除原key，两次删除之间的并发写入要么被删除要么保留，都不会产生同时存在的桶字段与原key
+     */
+    @Override
+    public void evict(Object key) {
+        deleteField(key);
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    /**
+     * 按桶合并读取指示器，桶中没有的key再批量读取原key
+     */
+    @Override
+    public List<ValueWrapper> getAll(List<?> keys) {
+        List<ValueWrapper> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        Map<Object, List<Integer>> indexesByBucket = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            indexesByBucket.computeIfAbsent(bucketKey(keys.get(i)), b -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Object, List<Integer>> entry : indexesByBucket.entrySet()) {
+            List<Object> fields = new ArrayList<>(entry.getValue().size());
+            for (int index : entry.getValue()) {
+                fields.add(field(keys.get(index)));
+            }
+            List<Object> indicators = hashCache.hashGet(entry.getKey(), fields);
+            for (int i = 0; i < fields.size(); i++) {
+                if (indicators.get(i) != null) {
+                    values.set(entry.getValue().get(i), new SimpleValueWrapper(indicators.get(i)));
+                }
+            }
+        }
+        List<Integer> missing = new ArrayList<>();
+        List<Object> missingKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (values.get(i) == null) {
+                missing.add(i);
+                missingKeys.add(keys.get(i));
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return values;
+        }
+        List<ValueWrapper> remoteValues;
+        if (delegate instanceof BatchCache) {
+            remoteValues = ((BatchCache) delegate).getAll(missingKeys);
+        } else {
+            remoteValues = new ArrayList<>(missingKeys.size());
+            for (Object key : missingKeys) {
+                remoteValues.add(delegate.get(key));
+            }
+        }
+        for (int i = 0; i < missing.size(); i++) {
+            values.set(missing.get(i), remoteValues.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * 按桶合并写入，每个桶的指示器与完整值各一次原子操作
+     */
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        Map<Object, Map<Object, Object>> indicatorsByBucket = new LinkedHashMap<>();
+        Map<Object, Map<Object, Object>> valuesByBucket = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            Map<Object, Map<Object, Object>> byBucket = isBucketField(entry.getValue()) ? indicatorsByBucket : valuesByBucket;
+            byBucket.computeIfAbsent(bucketKey(entry.getKey()), b -> new LinkedHashMap<>()).put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Object, Map<Object, Object>> entry : indicatorsByBucket.entrySet()) {
+            Map<Object, Object> fields = new LinkedHashMap<>();
+            for (Map.Entry<Object, Object> indicator : entry.getValue().entrySet()) {
+                fields.put(field(indicator.getKey()), indicator.getValue());
+            }
+            hashCache.hashPut(entry.getKey(), fields, entry.getValue().keySet());
+            maybeSweep(entry.getKey());
+        }
+        for (Map.Entry<Object, Map<Object, Object>> entry : valuesByBucket.entrySet()) {
+            List<Object> fields = new ArrayList<>(entry.getValue().size());
+            for (Object key : entry.getValue().keySet()) {
+                fields.add(field(key));
+            }
+            hashCache.hashDeleteAndPut(entry.getKey(), fields, entry.getValue());
+        }
+    }
+
+    /**
+     * 桶字段存在时比较桶字段，否则比较原key上的值；指示器写入桶字段，完整值写入原key，均在同一个原子操作中删除另一处
+     */
+    @Override
+    public boolean compareAndSet(Object key, Object expected, Object update) {
+        Object bucketKey = bucketKey(key);
+        boolean indicator = isBucketField(update);
+        if (!hashCache.hashCompareAndSet(bucketKey, field(key), key, expected, update, indicator)) {
+            return false;
+        }
+        if (indicator) {
+            maybeSweep(bucketKey);
+        }
+        return true;
+    }
+
+    /**
+     * 携带完整值的指示器与完整值一样写入原key，避免桶中保存大的值
+     */
+    private static boolean isBucketField(Object value) {
+        return CacheIndicator.isIndicator(value) && !CacheIndicator.carriesValue(value);
+    }
+
+    /**
+     * 每个桶平均每写入buckets次指示器清理一次，清理只删除超过ttl未全量刷新的字段；
+     * 删除指示器只会让节点重新加载，与并发写入交错时也不会让旧副本变为有效
+     */
+    private void maybeSweep(Object bucketKey) {
+        if (ttlMillis <= 0 || ThreadLocalRandom.current().nextInt(buckets) != 0) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - ttlMillis;
+        List<Object> expired = new ArrayList<>();
+        try {
+            for (Map.Entry<Object, Object> entry : hashCache.hashEntries(bucketKey).entrySet()) {
+                if (CacheIndicator.isIndicator(entry.getValue()) && CacheIndicator.refreshedAtMillis(entry.getValue()) < deadline) {
+                    expired.add(entry.getKey());
+                }
+            }
+            if (!expired.isEmpty()) {
+                hashCache.hashDelete(bucketKey, expired);
+            }
+        } catch (RuntimeException e) {
+            log.warn("failed to sweep indicator bucket {} of {}", bucketKey, getName(), e);
+        }
+    }
+
+    private void deleteField(Object key) {
+        hashCache.hashDelete(bucketKey(key), Collections.singletonList(field(key)));
+    }
+
+    /**
+     * 代际模式下桶同样按代际区分，clear()递增代际后旧代际的桶整体不再被访问
+     */
+    private Object bucketKey(Object key) {
+        if (key instanceof GenerationKey) {
+            GenerationKey scoped = (GenerationKey) key;
+            return new GenerationKey(scoped.getGeneration(), bucketName(scoped.getKey()));
+        }
+        return bucketName(key);
+    }
+
+    private String bucketName(Object key) {
+        return BUCKET_PREFIX + Math.floorMod(String.valueOf(key).hashCode(), buckets);
+    }
+
+    private static Object field(Object key) {
+        return key instanceof GenerationKey ? ((GenerationKey) key).getKey() : key;
+    }
+}
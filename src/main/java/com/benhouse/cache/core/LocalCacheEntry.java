@@ -0,0 +1,115 @@
+package com.benhouse.cache.core;
+
+import org.springframework.cache.Cache;
+
+/**
+ * 本地缓存中实际存储的条目，在缓存值之外记录本地校验相关的元数据
+ * 直接作为ValueWrapper返回给调用方，命中时不产生额外对象
+ * 堆外存储每次命中时反序列化出新的条目，通过withValue共享同一份可变元数据，租约等状态不会丢失
+ */
+public final class LocalCacheEntry implements Cache.ValueWrapper {
+    private final Object value;
+    /**
+     * 写入时估算的大小，用于本地缓存按总大小淘汰
+     */
+    private final long weight;
+    /**
+     * 写入时cache name的代际，代际模式下旧代际的条目读取时被拒绝
+     */
+    private final long generation;
+    private final Metadata metadata;
+
+    public LocalCacheEntry(Object value) {
+        this(value, 0);
+    }
+
+    public LocalCacheEntry(Object value, long weight) {
+        this(value, weight, 0);
+    }
+
+    public LocalCacheEntry(Object value, long weight, long generation) {
+        this(value, weight, generation, new Metadata());
+    }
+
+    private LocalCacheEntry(Object value, long weight, long generation, Metadata metadata) {
+        this.value = value;
+        this.weight = weight;
+        this.generation = generation;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @return 值替换为value、其余元数据共享的条目
+     */
+    public LocalCacheEntry withValue(Object value) {
+        return new LocalCacheEntry(value, weight, generation, metadata);
+    }
+
+    @Override
+    public Object get() {
+        return value;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean isOlderThan(long ageNanos, long now) {
+        return now - metadata.createdAt > ageNanos;
+    }
+
+    /**
+     * @return 副本被判定失效后是否仍在 windowNanos 内
+     */
+    public boolean isWithinStaleWindow(long windowNanos, long now) {
+        long since = metadata.staleSince;
+        if (since == 0) {
+            metadata.staleSince = since = now == 0 ? 1 : now;
+        }
+        return now - since < windowNanos;
+    }
+
+    public boolean isLeaseValid(long now) {
+        return now - metadata.leaseExpiresAt < 0;
+    }
+
+    public void renewLease(long leaseNanos) {
+        metadata.leaseExpiresAt = System.nanoTime() + leaseNanos;
+    }
+
+    /**
+     * @return 最近确认对本节点有效的远端指示器版本，0为未知
+     */
+    public long getIndicatorVersion() {
+        return metadata.indicatorVersion;
+    }
+
+    public void setIndicatorVersion(long indicatorVersion) {
+        if (metadata.indicatorVersion != indicatorVersion) {
+            metadata.indicatorVersion = indicatorVersion;
+        }
+    }
+
+    private static final class Metadata {
+        /**
+         * 写入时间(System.nanoTime)，用于提前刷新
+         */
+        private final long createdAt = System.nanoTime();
+        /**
+         * 第一次被远端指示器判定失效的时间(System.nanoTime)，0为未失效，用于限制过期副本的使用时长
+         */
+        private volatile long staleSince;
+        /**
+         * 租约到期时间(System.nanoTime)，到期前无需重新校验远端指示器
+         */
+        private volatile long leaseExpiresAt;
+        /**
+         * 写入或校验时远端指示器的版本，写入快照后只有版本完全一致才能恢复
+         */
+        private volatile long indicatorVersion;
+    }
+}
@@ -3,5 +3,9 @@ package com.benhouse.cache.core;
 public enum LocalCacheStatusEnum {
     VALID,
     INVALID,
-    USE_REMOTE;
+    USE_REMOTE,
+    /**
+     * 远端记录了值不存在且未过期，无需加载
+     */
+    ABSENT;
 }
@@ -0,0 +1,42 @@
+package com.benhouse.cache.core;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import org.springframework.cache.Cache;
+
+/**
+ * 配合refreshAfterWrite使用，本地缓存不直接加载值，只在后台重新校验远端指示器：
+ * 本节点仍有效时保留原条目，否则返回null移除条目
+ */
+class LocalRevalidationLoader implements CacheLoader<Object, Object> {
+    private final Cache remoteCache;
+    private final HeliosCacheContext context;
+    private final CacheGeneration generation;
+
+    LocalRevalidationLoader(Cache remoteCache, HeliosCacheContext context, CacheGeneration generation) {
+        this.remoteCache = remoteCache;
+        this.context = context;
+        this.generation = generation;
+    }
+
+    @Override
+    public Object load(Object key) {
+        return null;
+    }
+
+    @Override
+    public Object reload(Object key, Object oldValue) {
+        if (!context.isLocalTierUsable()) {
+            return null;
+        }
+        long current = generation == null ? 0 : generation.current();
+        if (oldValue instanceof LocalCacheEntry && ((LocalCacheEntry) oldValue).getGeneration() != current) {
+            return null;
+        }
+        Cache.ValueWrapper remoteValue = remoteCache.get(CacheGeneration.scope(generation, current, key));
+        Object indicator = remoteValue == null ? null : remoteValue.get();
+        if (CacheIndicator.isIndicator(indicator) && CacheIndicator.isValidFor(indicator, context.getNodeId())) {
+            return oldValue;
+        }
+        return null;
+    }
+}
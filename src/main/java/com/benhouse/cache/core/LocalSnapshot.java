@@ -0,0 +1,226 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.local.ValueSerializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 本地缓存快照，用于重启后预热
+ * 文件格式: magic(4) | format(4) | nodeId(4) | 记录... | -1
+ * 记录: cacheName长度(4) | cacheName | key长度(4) | key | generation(8) | 指示器版本(8) | value长度(4) | value
+ * 启动时以内存映射方式打开，只扫描记录位置；某个cache name第一次恢复时才反序列化它的key，值在命中时才反序列化。
+ * 只有远端指示器仍包含本节点（与正常读取相同的校验）、版本与写入快照时完全一致且代际一致的条目才会被恢复，
+ * 快照之后本节点又写入过的key指示器版本已变化，不会恢复旧值；恢复或失效后从快照中移除
+ */
+@Slf4j
+final class LocalSnapshot {
+    private static final int MAGIC = 0x53435350;
+    private static final int FORMAT_V2 = 2;
+    private static final int END = -1;
+
+    private final ByteBuffer buffer;
+    private final ValueSerializer serializer;
+    /**
+     * cache name -> 记录起始位置，尚未展开key
+     */
+    private final Map<String, List<Integer>> recordsByCache;
+    /**
+     * cache name -> (key -> 记录)，第一次恢复时展开
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Object, Record>> expanded = new ConcurrentHashMap<>();
+
+    private LocalSnapshot(ByteBuffer buffer, ValueSerializer serializer, Map<String, List<Integer>> recordsByCache) {
+        this.buffer = buffer;
+        this.serializer = serializer;
+        this.recordsByCache = recordsByCache;
+    }
+
+    /**
+     * @return 快照不存在、已损坏或属于其他节点id时返回null
+     */
+    static LocalSnapshot open(Path file, int nodeId, ValueSerializer serializer) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_V2) {
+                log.warn("ignore unrecognized local cache snapshot {}", file);
+                return null;
+            }
+            if (buffer.getInt() != nodeId) {
+                log.info("ignore local cache snapshot {} written by another node id", file);
+                return null;
+            }
+            Map<String, List<Integer>> recordsByCache = new HashMap<>();
+            int count = 0;
+            while (true) {
+                int position = buffer.position();
+                int nameLength = buffer.getInt();
+                if (nameLength == END) {
+                    break;
+                }
+                byte[] name = new byte[nameLength];
+                buffer.get(name);
+                int keyLength = buffer.getInt();
+                skip(buffer, keyLength + 16);
+                skip(buffer, buffer.getInt());
+                recordsByCache.computeIfAbsent(new String(name, StandardCharsets.UTF_8), n -> new ArrayList<>()).add(position);
+                count++;
+            }
+            log.info("opened local cache snapshot {} with {} entries of {} caches", file, count, recordsByCache.size());
+            return new LocalSnapshot(buffer, serializer, recordsByCache);
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignore unreadable local cache snapshot {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 取出可以恢复的值，调用方需已确认远端指示器对本节点有效
+     * @param indicatorVersion 当前远端指示器的版本
+     * @return 快照中没有、代际或指示器版本不一致时返回null
+     */
+    Object restore(String cacheName, Object key, long generation, long indicatorVersion) {
+        Map<Object, Record> records = records(cacheName);
+        Record record = records == null ? null : records.remove(key);
+        if (record == null || record.generation != generation || record.indicatorVersion != indicatorVersion) {
+            return null;
+        }
+        ByteBuffer value = buffer.duplicate();
+        value.position(record.valueOffset);
+        value.limit(record.valueOffset + record.valueLength);
+        return serializer.deserialize(value.slice());
+    }
+
+    /**
+     * 本节点重新写入或删除的key不再恢复
+     */
+    void forget(String cacheName, Object key) {
+        Map<Object, Record> records = records(cacheName);
+        if (records != null) {
+            records.remove(key);
+        }
+    }
+
+    void forgetAll(String cacheName) {
+        if (recordsByCache.containsKey(cacheName)) {
+            expanded.put(cacheName, new ConcurrentHashMap<>());
+        }
+    }
+
+    private Map<Object, Record> records(String cacheName) {
+        ConcurrentMap<Object, Record> records = expanded.get(cacheName);
+        if (records != null || !recordsByCache.containsKey(cacheName)) {
+            return records;
+        }
+        return expanded.computeIfAbsent(cacheName, this::expand);
+    }
+
+    private ConcurrentMap<Object, Record> expand(String cacheName) {
+        ConcurrentMap<Object, Record> records = new ConcurrentHashMap<>();
+        for (int position : recordsByCache.get(cacheName)) {
+            ByteBuffer record = buffer.duplicate();
+            record.position(position);
+            skip(record, record.getInt());
+            int keyLength = record.getInt();
+            ByteBuffer key = record.slice();
+            key.limit(keyLength);
+            skip(record, keyLength);
+            long generation = record.getLong();
+            long indicatorVersion = record.getLong();
+            int valueLength = record.getInt();
+            try {
+                records.put(serializer.deserialize(key), new Record(generation, indicatorVersion, record.position(), valueLength));
+            } catch (RuntimeException e) {
+                log.debug("skip unreadable snapshot key of {}", cacheName, e);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 先写临时文件再替换，写入过程中崩溃不会损坏已有快照
+     * @return 写入的条目数
+     */
+    static int write(Path file, int nodeId, ValueSerializer serializer, Collection<MultiStepCacheDecorator> caches) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_V2);
+            out.writeInt(nodeId);
+            for (MultiStepCacheDecorator cache : caches) {
+                byte[] name = cache.getName().getBytes(StandardCharsets.UTF_8);
+                for (Map.Entry<Object, LocalCacheEntry> entry : cache.localEntries().entrySet()) {
+                    long indicatorVersion = entry.getValue().getIndicatorVersion();
+                    if (indicatorVersion == 0) {
+                        // 没有确认过远端指示器（如单节点模式下写入）的条目无法校验，不写入快照
+                        continue;
+                    }
+                    byte[] key;
+                    byte[] value;
+                    try {
+                        key = serializer.serialize(entry.getKey());
+                        value = serializer.serialize(entry.getValue().get());
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+                    out.writeInt(name.length);
+                    out.write(name);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeLong(entry.getValue().getGeneration());
+                    out.writeLong(indicatorVersion);
+                    out.writeInt(value.length);
+                    out.write(value);
+                    count++;
+                }
+            }
+            out.writeInt(END);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    private static final class Record {
+        private final long generation;
+        private final long indicatorVersion;
+        private final int valueOffset;
+        private final int valueLength;
+
+        private Record(long generation, long indicatorVersion, int valueOffset, int valueLength) {
+            this.generation = generation;
+            this.indicatorVersion = indicatorVersion;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+        }
+    }
+}
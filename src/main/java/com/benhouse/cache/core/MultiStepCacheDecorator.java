@@ -1,29 +1,134 @@
 package com.benhouse.cache.core;
 
-import com.alibaba.fastjson.JSON;
+import com.benhouse.cache.bus.InvalidationBus;
+import com.benhouse.cache.bus.InvalidationEvent;
+import com.benhouse.cache.bus.InvalidationSubscriber;
+import com.benhouse.cache.codec.RemoteValueCodec;
+import com.benhouse.cache.config.CacheSpec;
 import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.local.BudgetedLocalCache;
+import com.benhouse.cache.local.FrequencySketch;
+import com.benhouse.cache.remote.BatchCache;
+import com.benhouse.cache.remote.CompareAndSetCache;
+import com.benhouse.cache.size.SizeEstimator;
+import com.benhouse.cache.stats.CacheStats;
+import com.benhouse.cache.stats.CacheStatsCounter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 @Slf4j
-public class MultiStepCacheDecorator implements Cache {
+public class MultiStepCacheDecorator implements Cache, InvalidationSubscriber {
 
     private final Cache remoteCache;
     private final Cache localCache;
     private final HeliosCacheProperties heliosCacheProperties;
-    private static final String CACHE_INDICATOR_PREFIX = "&IND&";
+    private final InvalidationBus invalidationBus;
+    private final SizeEstimator sizeEstimator;
+    private final CacheSpec cacheSpec;
+    private final boolean budgeted;
+    /**
+     * 代际模式下远端key按代际隔离，未启用时为null
+     */
+    private final CacheGeneration generation;
+    private volatile boolean retired;
+    private volatile long lastAccessTime = System.currentTimeMillis();
+    private final long leaseNanos;
+    private final long refreshAheadNanos;
+    private final long staleWhileRevalidateNanos;
+    /**
+     * 是否可能不经远端指示器直接信任本地副本
+     */
+    private final boolean localFastPath;
+    /**
+     * 统计计数，由同一基础cache name的所有cache共享
+     */
+    private final CacheStatsCounter stats;
+    private final ConcurrentMap<Object, LoadingFuture> loadingFutures = new ConcurrentHashMap<>();
+    /**
+     * 等待合并写入远端的指示器更新，key为本地缓存的key，value为写入时的代际
+     */
+    private final ConcurrentMap<Object, Long> pendingIndicators = new ConcurrentHashMap<>();
+    private final AtomicBoolean indicatorFlushScheduled = new AtomicBoolean();
+    private final long indicatorFlushMillis;
+    /**
+     * adaptive准入时记录key的读取频率，节点内所有cache共享，static准入时为null
+     */
+    private final FrequencySketch admissionSketch;
+    /**
+     * 混入共享频率统计的key哈希值，区分不同cache name的相同key
+     */
+    private final int admissionSalt;
+    private final HeliosCacheContext context;
+    /**
+     * 启动时加载的本地缓存快照，未启用或已无可恢复条目时为null
+     */
+    private final LocalSnapshot snapshot;
+    /**
+     * 直接写入远端的完整值的编解码，未启用编码时仍用于解码已编码的值
+     */
+    private final RemoteValueCodec remoteCodec;
+    private final boolean encodeRemoteValues;
     private static final String UNKNOWN_STATUS = "unrecognized cache status";
+    private static final int MAX_CAS_ATTEMPTS = 8;
+    private static final String ADAPTIVE_ADMISSION = "adaptive";
+    /**
+     * adaptive准入要求的最小读取次数，只读一次的key不进入本地缓存
+     */
+    private static final int MIN_ADMISSION_FREQUENCY = 2;
+    private static final ValueWrapper ABSENT_VALUE = new SimpleValueWrapper(null);
+
+    /**
+     * 直接构造时统计只记录在本实例上，不汇总到HeliosCacheManager
+     */
+    public MultiStepCacheDecorator(Cache remoteCache, Cache localCache, CacheSpec cacheSpec, HeliosCacheContext context) {
+        this(remoteCache, localCache, cacheSpec, context, null, new CacheStatsCounter(""));
+    }
 
-    public MultiStepCacheDecorator(Cache remoteCache, Cache localCache, HeliosCacheProperties heliosCacheProperties) {
+    MultiStepCacheDecorator(Cache remoteCache, Cache localCache, CacheSpec cacheSpec, HeliosCacheContext context,
+                            CacheGeneration generation, CacheStatsCounter stats) {
         Assert.notNull(remoteCache, "Target Cache must not be null");
+        this.generation = generation;
+        this.stats = stats;
         this.remoteCache = remoteCache;
         this.localCache = localCache;
-        this.heliosCacheProperties = heliosCacheProperties;
+        this.heliosCacheProperties = context.getHeliosCacheProperties();
+        this.invalidationBus = context.getInvalidationBus();
+        this.sizeEstimator = context.getSizeEstimator();
+        this.cacheSpec = cacheSpec;
+        this.budgeted = context.getLocalMemoryBudget() != null;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(cacheSpec.getLeaseMillis());
+        this.refreshAheadNanos = TimeUnit.MILLISECONDS.toNanos(cacheSpec.getRefreshAheadMillis());
+        this.staleWhileRevalidateNanos = TimeUnit.MILLISECONDS.toNanos(cacheSpec.getStaleWhileRevalidateMillis());
+        this.localFastPath = invalidationBus != null || leaseNanos > 0;
+        this.indicatorFlushMillis = heliosCacheProperties.getIndicatorFlushMillis();
+        String localAdmission = cacheSpec.getLocalAdmission() == null ? heliosCacheProperties.getLocalAdmission() : cacheSpec.getLocalAdmission();
+        this.admissionSketch = ADAPTIVE_ADMISSION.equals(localAdmission) ? context.getAdmissionSketch() : null;
+        this.admissionSalt = admissionSketch == null ? 0 : Objects.hashCode(remoteCache.getName()) * 31;
+        this.context = context;
+        this.snapshot = context.getLocalSnapshot();
+        this.remoteCodec = context.getRemoteValueCodec();
+        this.encodeRemoteValues = context.isRemoteValueEncodingEnabled();
     }
 
     @Override
@@ -37,163 +142,1246 @@ public class MultiStepCacheDecorator implements Cache {
     }
 
     @Override
-    public ValueWrapper
-    get(Object o) {
-        ValueWrapper remoteCache = this.remoteCache.get(o);
-        LocalCacheStatusEnum localCacheStatusEnum = localCacheStatus(o, remoteCache);
-        if (LocalCacheStatusEnum.USE_REMOTE.equals(localCacheStatusEnum)) {
-            return remoteCache;
-
-        } else if (LocalCacheStatusEnum.VALID.equals(localCacheStatusEnum)) {
-            return localCache.get(o);
-        } else if (LocalCacheStatusEnum.INVALID.equals(localCacheStatusEnum)) {
-            return null;
-        }
-        throw new RuntimeException(UNKNOWN_STATUS);
+    public ValueWrapper get(Object o) {
+        return lookup(o);
     }
 
     @Override
     public <T> T get(Object o, Class<T> aClass) {
-        T remoteCache = this.remoteCache.get(o, aClass);
-        LocalCacheStatusEnum localCacheStatusEnum = localCacheStatus(o, remoteCache);
-        if (LocalCacheStatusEnum.USE_REMOTE.equals(localCacheStatusEnum)) {
-            return remoteCache;
-        } else if (LocalCacheStatusEnum.VALID.equals(localCacheStatusEnum)) {
-            return localCache.get(o, aClass);
-        } else if (LocalCacheStatusEnum.INVALID.equals(localCacheStatusEnum)) {
-            return null;
-        }
-        throw new RuntimeException(UNKNOWN_STATUS);
+        ValueWrapper valueWrapper = lookup(o);
+        return valueWrapper == null ? null : castValue(valueWrapper.get(), aClass);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T get(Object o, Callable<T> callable) {
-        T remoteCache = this.remoteCache.get(o, callable);
-        LocalCacheStatusEnum localCacheStatusEnum = localCacheStatus(o, remoteCache);
+        // 读取远端之前的本地副本，读取远端期间本节点完成的加载会替换它
+        LocalCacheEntry stale = staleWhileRevalidateNanos > 0 ? localEntry(o, generation()) : null;
+        ValueWrapper valueWrapper = lookup(o);
+        if (valueWrapper != null) {
+            refreshAhead(o, valueWrapper, callable);
+            return (T) valueWrapper.get();
+        }
+        if (stale != null) {
+            LocalCacheEntry current = localEntry(o, generation());
+            if (current != null && current != stale) {
+                // 判定失效后本节点已重新加载，不再重复加载
+                return (T) current.get();
+            }
+            if (current != null && stale.isWithinStaleWindow(staleWhileRevalidateNanos, System.nanoTime())) {
+                refreshInBackground(o, callable);
+                return (T) stale.get();
+            }
+        }
+        return load(o, callable);
+    }
+
+    /**
+     * get(key, loader)与getAsync(key, loader)命中后共用：命中的本地副本写入超过refreshAheadMillis时在后台重新加载
+     */
+    private void refreshAhead(Object key, ValueWrapper value, Callable<?> loader) {
+        if (refreshAheadNanos > 0 && value instanceof LocalCacheEntry
+                && ((LocalCacheEntry) value).isOlderThan(refreshAheadNanos, System.nanoTime())) {
+            refreshInBackground(key, loader);
+        }
+    }
+
+    /**
+     * 在异步线程池中重新加载，提交前在调用线程占用加载位置，同一个key正在加载时不重复提交
+     */
+    private void refreshInBackground(Object key, Callable<?> loader) {
+        LoadingFuture loadingFuture = new LoadingFuture();
+        if (loadingFutures.putIfAbsent(key, loadingFuture) != null) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> load(key, loader, loadingFuture), context.getAsyncExecutor())
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        log.warn("failed to refresh {}:{} in background", getName(), key, ex);
+                    }
+                });
+    }
+
+    /**
+     * 异步读取，本地可信副本直接在调用线程完成，需要访问远端时在异步线程池中执行
+     */
+    public CompletableFuture<ValueWrapper> getAsync(Object key) {
+        ValueWrapper local = trustedLocalEntry(key);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        return CompletableFuture.supplyAsync(() -> lookup(key), context.getAsyncExecutor());
+    }
+
+    /**
+     * 异步读取，未命中时按get(key, loader)的规则加载，加载失败时以ValueRetrievalException结束
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getAsync(Object key, Callable<T> loader) {
+        ValueWrapper local = trustedLocalEntry(key);
+        if (local != null) {
+            refreshAhead(key, local, loader);
+            return CompletableFuture.completedFuture((T) local.get());
+        }
+        return CompletableFuture.supplyAsync(() -> get(key, loader), context.getAsyncExecutor());
+    }
+
+    public CompletableFuture<Void> putAsync(Object key, Object value) {
+        return CompletableFuture.runAsync(() -> put(key, value), context.getAsyncExecutor());
+    }
+
+    public CompletableFuture<Void> evictAsync(Object key) {
+        return CompletableFuture.runAsync(() -> evict(key), context.getAsyncExecutor());
+    }
+
+    /**
+     * 不访问远端即可确认有效的本地副本：总线/租约信任的副本，或本节点刚写入、指示器尚未写入远端的副本；
+     * 命中时与lookup一样记录读取次数及本地命中
+     */
+    private LocalCacheEntry trustedLocalEntry(Object key) {
+        if (!canTrustLocal() && pendingIndicators.isEmpty()) {
+            return null;
+        }
+        if (generation != null && !generation.isFresh()) {
+            return null;
+        }
+        long gen = generation();
+        LocalCacheEntry localEntry = localEntry(key, gen);
+        if (localEntry == null) {
+            return null;
+        }
+        if ((canTrustLocal() && trustLocalEntry(localEntry)) || isPendingIndicator(key, gen)) {
+            recordRead(key);
+            stats.recordLocalHit();
+            return localEntry;
+        }
+        return null;
+    }
+
+    /**
+     * lookup与getAll共用的本地命中判断
+     * @param localEntry 已读取的本地条目，不信任本地副本时为null
+     * @return 无需访问远端即可使用的本地条目
+     */
+    private LocalCacheEntry localHit(Object key, long gen, LocalCacheEntry localEntry) {
+        if (localEntry != null && trustLocalEntry(localEntry)) {
+            return localEntry;
+        }
+        if (isPendingIndicator(key, gen)) {
+            // 本节点刚写入的副本，指示器尚未写入远端
+            return localEntry != null ? localEntry : localEntry(key, gen);
+        }
+        return null;
+    }
+
+    private boolean isPendingIndicator(Object key, long gen) {
+        return !pendingIndicators.isEmpty() && Long.valueOf(gen).equals(pendingIndicators.get(key));
+    }
+
+    /**
+     * 批量读取，一次批量请求取回所有key的远端指示器，只返回命中的key
+     */
+    public <K, V> Map<K, V> getAll(Collection<K> keys) {
+        return getAll(keys, null);
+    }
+
+    /**
+     * 批量读取，未命中的key通过batchLoader一次性加载并写入缓存
+     * @param batchLoader 参数为未命中的key，返回值中不存在的key视为没有值
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> batchLoader) {
+        Map<K, V> result = new LinkedHashMap<>(keys.size() * 2);
+        long gen = generation();
+        List<K> remoteKeys = new ArrayList<>(keys.size());
+        List<LocalCacheEntry> localEntries = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            recordRead(key);
+            LocalCacheEntry localEntry = canTrustLocal() ? localEntry(key, gen) : null;
+            LocalCacheEntry localHit = localHit(key, gen, localEntry);
+            if (localHit != null) {
+                stats.recordLocalHit();
+                result.put(key, (V) localHit.get());
+            } else {
+                remoteKeys.add(key);
+                localEntries.add(localEntry);
+            }
+        }
+
+        List<K> misses = new ArrayList<>();
+        long start = System.nanoTime();
+        List<ValueWrapper> remoteValues = remoteGetAll(scope(remoteKeys, gen));
+        if (!remoteKeys.isEmpty()) {
+            stats.recordRemoteRead(System.nanoTime() - start);
+        }
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            K key = remoteKeys.get(i);
+            ValueWrapper remoteValue = remoteValues.get(i);
+            LocalCacheStatusEnum localCacheStatusEnum = localCacheStatus(key, remoteValue);
+            ValueWrapper hit = null;
+            if (LocalCacheStatusEnum.USE_REMOTE.equals(localCacheStatusEnum)) {
+                stats.recordRemoteHit();
+                hit = decodeRemote(remoteValue);
+                promote(key, gen, remoteValue.get(), hit);
+            } else if (LocalCacheStatusEnum.ABSENT.equals(localCacheStatusEnum)) {
+                stats.recordAbsentHit();
+                hit = ABSENT_VALUE;
+            } else if (LocalCacheStatusEnum.VALID.equals(localCacheStatusEnum)) {
+                LocalCacheEntry localEntry = localEntries.get(i);
+                long version = CacheIndicator.version(remoteValue.get());
+                if (localEntry == null) {
+                    localEntry = localEntryOrSnapshot(key, gen, version);
+                } else {
+                    renewLease(localEntry);
+                    localEntry.setIndicatorVersion(version);
+                }
+                recordLocalResult(localEntry);
+                hit = localEntry;
+            } else {
+                recordInvalid(remoteValue);
+            }
+            if (hit != null) {
+                result.put(key, (V) hit.get());
+            } else {
+                misses.add(key);
+            }
+        }
+
+        if (batchLoader != null && !misses.isEmpty()) {
+            Map<K, V> loaded = batchLoader.apply(misses);
+            Map<K, V> written = new LinkedHashMap<>(loaded == null ? Collections.emptyMap() : loaded);
+            if (cacheSpec.getNegativeCacheMillis() > 0) {
+                // 与单个key加载为null时一样记录为不存在
+                for (K miss : misses) {
+                    written.putIfAbsent(miss, null);
+                }
+            }
+            putAll(written);
+            if (loaded != null) {
+                result.putAll(loaded);
+            }
+        }
+        return result;
+    }
 
+    /**
+     * 批量写入，需要本地缓存的key一次批量读写完成指示器更新，其余key批量写入远端；
+     * 值为null且启用了不存在缓存时与put一样逐个写入不存在标记
+     */
+    public void putAll(Map<?, ?> entries) {
+        long gen = generation();
+        Map<Object, Object> remoteEntries = new LinkedHashMap<>();
+        // 远端值写入后其他节点的本地副本都需要失效
+        List<Object> invalidatedKeys = new ArrayList<>();
+        List<Object> localKeys = new ArrayList<>();
+        List<Long> localSizes = new ArrayList<>();
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            if (entry.getValue() == null && cacheSpec.getNegativeCacheMillis() > 0) {
+                putAbsent(entry.getKey(), gen);
+                continue;
+            }
+            forgetSnapshot(entry.getKey());
+            long size = estimateSize(entry.getValue());
+            if (enablePutLocalCache(entry.getKey(), size)) {
+                if (context.isSingleNode()) {
+                    putLocalOnly(entry.getKey(), newLocalEntry(entry.getValue(), size, gen), gen);
+                    continue;
+                }
+                if (indicatorFlushMillis > 0) {
+                    if (putLocal(entry.getKey(), newLocalEntry(entry.getValue(), size, gen), gen)) {
+                        enqueueIndicator(entry.getKey(), gen);
+                    }
+                    continue;
+                }
+                localKeys.add(entry.getKey());
+                localSizes.add(size);
+            } else {
+                remoteEntries.put(CacheGeneration.scope(generation, gen, entry.getKey()), encodeRemote(entry.getValue()));
+                invalidatedKeys.add(entry.getKey());
+            }
+        }
+
+        List<IndicatorWrite> writes = writeIndicators(localKeys, gen, remoteEntries);
+        remotePutAll(remoteEntries);
+
+        for (int i = 0; i < localKeys.size(); i++) {
+            Object key = localKeys.get(i);
+            if (writes.get(i) == null) {
+                abandonLocalCopy(key, gen);
+                continue;
+            }
+            if (!putLocal(key, newLocalEntry(entries.get(key), localSizes.get(i), gen, writes.get(i)), gen)) {
+                continue;
+            }
+            if (writes.get(i).fullRefresh) {
+                invalidatedKeys.add(key);
+            }
+        }
+        for (Object key : invalidatedKeys) {
+            publish(InvalidationEvent.Type.PUT, key);
+        }
+    }
+
+    /**
+     * 同一节点上同一个key的并发加载只执行一次loader，其余线程等待并共享结果
+     * 加载结果按put的规则写入：进入本地缓存时只更新一次远端指示器，不会把完整值写入远端
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T load(Object key, Callable<T> loader) {
+        LoadingFuture loadingFuture = new LoadingFuture();
+        LoadingFuture existing = loadingFutures.putIfAbsent(key, loadingFuture);
+        if (existing != null) {
+            return (T) awaitLoading(key, loader, existing);
+        }
+        return load(key, loader, loadingFuture);
+    }
+
+    /**
+     * @param loadingFuture 已放入loadingFutures的加载结果，完成后移除
+     */
+    private <T> T load(Object key, Callable<T> loader, LoadingFuture loadingFuture) {
+        loadingFuture.owner = Thread.currentThread();
+        long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            T value = loader.call();
+            loaded = true;
+            stats.recordLoad(System.nanoTime() - start, true);
+            put(key, value);
+            loadingFuture.complete(value);
+            return value;
+        } catch (Throwable ex) {
+            if (!loaded) {
+                stats.recordLoad(System.nanoTime() - start, false);
+            }
+            loadingFuture.completeExceptionally(ex);
+            throw new ValueRetrievalException(key, loader, ex);
+        } finally {
+            loadingFutures.remove(key, loadingFuture);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException loader在同一线程中重入加载同一个key，等待自己的结果会永远阻塞
+     */
+    private Object awaitLoading(Object key, Callable<?> loader, LoadingFuture loadingFuture) {
+        if (loadingFuture.owner == Thread.currentThread()) {
+            throw new IllegalStateException("recursive load of " + getName() + ":" + key);
+        }
+        try {
+            return loadingFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, loader, e);
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, loader, e.getCause());
+        }
+    }
+
+    /**
+     * 先尝试本地可信副本，否则根据远端指示器决定读本地还是直接使用远端值
+     */
+    private ValueWrapper lookup(Object o) {
+        recordRead(o);
+        long gen = generation();
+        LocalCacheEntry localEntry = canTrustLocal() ? localEntry(o, gen) : null;
+        LocalCacheEntry localHit = localHit(o, gen, localEntry);
+        if (localHit != null) {
+            stats.recordLocalHit();
+            return localHit;
+        }
+        long start = System.nanoTime();
+        ValueWrapper remoteCache = this.remoteCache.get(CacheGeneration.scope(generation, gen, o));
+        stats.recordRemoteRead(System.nanoTime() - start);
+        LocalCacheStatusEnum localCacheStatusEnum = localCacheStatus(o, remoteCache);
         if (LocalCacheStatusEnum.USE_REMOTE.equals(localCacheStatusEnum)) {
-            return remoteCache;
+            stats.recordRemoteHit();
+            ValueWrapper value = decodeRemote(remoteCache);
+            promote(o, gen, remoteCache.get(), value);
+            return value;
         } else if (LocalCacheStatusEnum.VALID.equals(localCacheStatusEnum)) {
-            return localCache.get(o, callable);
+            long version = CacheIndicator.version(remoteCache.get());
+            if (localEntry == null) {
+                localEntry = localEntryOrSnapshot(o, gen, version);
+            } else {
+                renewLease(localEntry);
+                localEntry.setIndicatorVersion(version);
+            }
+            recordLocalResult(localEntry);
+            return localEntry;
         } else if (LocalCacheStatusEnum.INVALID.equals(localCacheStatusEnum)) {
+            recordInvalid(remoteCache);
             return null;
+        } else if (LocalCacheStatusEnum.ABSENT.equals(localCacheStatusEnum)) {
+            stats.recordAbsentHit();
+            return ABSENT_VALUE;
         }
         throw new RuntimeException(UNKNOWN_STATUS);
     }
 
+    /**
+     * @return 所属基础cache name的统计快照
+     */
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * @return 租约到期后需要重新校验远端指示器的次数，按基础cache name汇总
+     */
+    public long getLeaseExpirations() {
+        return stats.getLeaseExpirations();
+    }
+
+    /**
+     * @return 租约到期后远端指示器校验通过、续约的次数，按基础cache name汇总
+     */
+    public long getLeaseRevalidations() {
+        return stats.getLeaseRevalidations();
+    }
+
     @Override
     public void put(Object o, Object o1) {
 
-        if (enablePutLocalCache(o1)) {
-            updateCacheIndicator(o);
-            localCache.put(o, o1);
+        long gen = generation();
+        if (o1 == null && cacheSpec.getNegativeCacheMillis() > 0) {
+            putAbsent(o, gen);
+            return;
+        }
+        forgetSnapshot(o);
+        long size = estimateSize(o1);
+        if (enablePutLocalCache(o, size)) {
+            if (context.isSingleNode()) {
+                putLocalOnly(o, newLocalEntry(o1, size, gen), gen);
+                return;
+            }
+            if (indicatorFlushMillis > 0) {
+                if (putLocal(o, newLocalEntry(o1, size, gen), gen)) {
+                    enqueueIndicator(o, gen);
+                }
+                return;
+            }
+            IndicatorWrite write = updateCacheIndicator(o, gen);
+            if (write == null) {
+                abandonLocalCopy(o, gen);
+                return;
+            }
+            if (putLocal(o, newLocalEntry(o1, size, gen, write), gen) && write.fullRefresh) {
+                publish(InvalidationEvent.Type.PUT, o);
+            }
         } else {
-            remoteCache.put(o, o1);
+            remoteCache.put(CacheGeneration.scope(generation, gen, o), encodeRemote(o1));
+            publish(InvalidationEvent.Type.PUT, o);
         }
 
     }
 
     @Override
     public ValueWrapper putIfAbsent(Object o, Object o1) {
-        if (enablePutLocalCache(o1)) {
-            updateCacheIndicator(o);
-            return localCache.putIfAbsent(o, o1);
+        long gen = generation();
+        if (o1 == null && cacheSpec.getNegativeCacheMillis() > 0) {
+            putAbsent(o, gen);
+            return null;
+        }
+        forgetSnapshot(o);
+        long size = estimateSize(o1);
+        if (enablePutLocalCache(o, size)) {
+            if (context.isSingleNode()) {
+                ValueWrapper existing;
+                try {
+                    existing = localCache.putIfAbsent(o, newLocalEntry(o1, size, gen));
+                } catch (RuntimeException e) {
+                    rejectLocal(o, o1, gen, e);
+                    return null;
+                }
+                if (existing == null) {
+                    remoteCache.evict(CacheGeneration.scope(generation, gen, o));
+                }
+                return existing == null ? null : (ValueWrapper) existing.get();
+            }
+            if (indicatorFlushMillis > 0) {
+                LocalCacheEntry existing = localEntry(o, gen);
+                if (existing != null && (isPendingIndicator(o, gen) || trustLocalEntry(existing))) {
+                    return existing;
+                }
+                if (existing == null) {
+                    ValueWrapper raced;
+                    try {
+                        raced = localCache.putIfAbsent(o, newLocalEntry(o1, size, gen));
+                    } catch (RuntimeException e) {
+                        rejectLocal(o, o1, gen, e);
+                        return null;
+                    }
+                    if (raced == null) {
+                        enqueueIndicator(o, gen);
+                        return null;
+                    }
+                }
+                // 本地副本无法确认仍然有效，按远端指示器判断
+            }
+            return putIfAbsentWithIndicator(o, o1, size, gen);
         } else {
-            return remoteCache.putIfAbsent(o, o1);
+            ValueWrapper existing = remoteCache.putIfAbsent(CacheGeneration.scope(generation, gen, o), encodeRemote(o1));
+            if (existing == null) {
+                publish(InvalidationEvent.Type.PUT, o);
+            }
+            return decodeRemote(existing);
+        }
+    }
+
+    /**
+     * 远端指示器对本节点有效且本地有副本、或远端保存了完整值时视为已存在；
+     * 否则本地可能残留的旧副本先被新值覆盖，再为本节点置位，旧副本不会被当作有效
+     */
+    private ValueWrapper putIfAbsentWithIndicator(Object key, Object value, long size, long gen) {
+        Object remoteKey = CacheGeneration.scope(generation, gen, key);
+        ValueWrapper remoteValue = remoteCache.get(remoteKey);
+        LocalCacheStatusEnum status = localCacheStatus(key, remoteValue);
+        if (LocalCacheStatusEnum.USE_REMOTE.equals(status)) {
+            return decodeRemote(remoteValue);
+        }
+        if (LocalCacheStatusEnum.VALID.equals(status)) {
+            LocalCacheEntry existing = localEntry(key, gen);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        LocalCacheEntry entry = newLocalEntry(value, size, gen);
+        if (!putLocal(key, entry, gen)) {
+            return null;
+        }
+        IndicatorWrite write = writeIndicator(remoteKey, remoteValue == null ? null : remoteValue.get());
+        if (write == null) {
+            abandonLocalCopy(key, gen);
+            return null;
         }
+        entry.setIndicatorVersion(write.version);
+        if (write.fullRefresh) {
+            publish(InvalidationEvent.Type.PUT, key);
+        }
+        return null;
     }
 
     @Override
     public void evict(Object o) {
-        remoteCache.evict(o);
+        pendingIndicators.remove(o);
+        forgetSnapshot(o);
+        remoteCache.evict(CacheGeneration.scope(generation, generation(), o));
         localCache.evict(o);
+        publish(InvalidationEvent.Type.EVICT, o);
     }
 
+    /**
+     * 代际模式下只递增代际，旧代际的本地条目读取时被拒绝，远端key由TTL回收；
+     * 并广播新的代际，其他节点收到后立即切换，不必等待generationRefreshMillis
+     */
     @Override
     public void clear() {
+        pendingIndicators.clear();
+        if (snapshot != null) {
+            snapshot.forgetAll(getName());
+        }
+        if (generation != null) {
+            publish(InvalidationEvent.Type.CLEAR, generation.increment());
+            return;
+        }
         localCache.clear();
         remoteCache.clear();
+        publish(InvalidationEvent.Type.CLEAR, null);
     }
 
-    private <T> LocalCacheStatusEnum localCacheStatus(Object key, Object remoteCache) {
+    /**
+     * 所在子树已被清空（子树计数器已递增），下次访问时重新读取代际，旧代际的本地条目读取时被拒绝
+     */
+    void invalidateTree() {
+        pendingIndicators.clear();
+        if (snapshot != null) {
+            snapshot.forgetAll(getName());
+        }
+        generation.invalidate();
+    }
 
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        if (InvalidationEvent.Type.CLEAR.equals(event.getType())) {
+            if (generation != null && event.getKey() instanceof Long) {
+                generation.advanceTo((Long) event.getKey());
+            } else if (generation != null) {
+                generation.invalidate();
+            } else {
+                localCache.clear();
+            }
+        } else {
+            localCache.evict(event.getKey());
+        }
+        stats.recordRemoteInvalidation();
+    }
 
-        if (remoteCache == null) {
-            return LocalCacheStatusEnum.INVALID;
+    @Override
+    public void onBusRecovered() {
+        localCache.clear();
+    }
+
+    /**
+     * 记录最近访问时间，精度为1秒，避免热点cache每次访问都写共享变量
+     */
+    void touch() {
+        long now = System.currentTimeMillis();
+        if (now - lastAccessTime > 1000) {
+            lastAccessTime = now;
+        }
+    }
+
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * 从HeliosCacheManager中移除时调用，清空本地缓存；
+     * 退役后的本地缓存不再计入内存预算，仍持有该实例的调用方绕过本地缓存，读写都直接访问远端
+     */
+    public void retire() {
+        flushIndicators();
+        retired = true;
+        localCache.clear();
+    }
+
+    /**
+     * @return 本地缓存可以读写：未退役且节点id仍属于本节点
+     */
+    private boolean isLocalTierUsable() {
+        return !retired && context.isLocalTierUsable();
+    }
+
+    private List<ValueWrapper> remoteGetAll(List<?> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (remoteCache instanceof BatchCache) {
+            return ((BatchCache) remoteCache).getAll(keys);
+        }
+        List<ValueWrapper> remoteValues = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            remoteValues.add(remoteCache.get(key));
+        }
+        return remoteValues;
+    }
+
+    private void remotePutAll(Map<?, ?> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (remoteCache instanceof BatchCache) {
+            ((BatchCache) remoteCache).putAll(entries);
+            return;
+        }
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            remoteCache.put(entry.getKey(), entry.getValue());
         }
+    }
+
+    /**
+     * 远端记录值不存在，本地副本及其他节点的副本全部失效
+     */
+    private void putAbsent(Object key, long gen) {
+        pendingIndicators.remove(key);
+        forgetSnapshot(key);
+        Object remoteKey = CacheGeneration.scope(generation, gen, key);
+        ValueWrapper remoteValue = remoteCache.get(remoteKey);
+        CacheIndicator current = CacheIndicator.from(remoteValue == null ? null : remoteValue.get());
+        remoteCache.put(remoteKey, CacheIndicator.absent(current, System.currentTimeMillis() + cacheSpec.getNegativeCacheMillis()));
+        localCache.evict(key);
+        publish(InvalidationEvent.Type.PUT, key);
+    }
+
+    /**
+     * 编码失败（如值没有实现Serializable）时原样写入，交给远端自身的序列化方式
+     */
+    private Object encodeRemote(Object value) {
+        if (!encodeRemoteValues || value == null) {
+            return value;
+        }
+        try {
+            return remoteCodec.encode(value);
+        } catch (RuntimeException e) {
+            log.debug("failed to encode value of {}:{}, write it as is", getName(), value.getClass().getName(), e);
+            return value;
+        }
+    }
+
+    /**
+     * 解码远端完整值，包括提升后指示器携带的值
+     */
+    private ValueWrapper decodeRemote(ValueWrapper remoteValue) {
+        if (remoteValue == null) {
+            return null;
+        }
+        CacheIndicator indicator = CacheIndicator.from(remoteValue.get());
+        if (indicator != null && indicator.getValue() != null) {
+            return new SimpleValueWrapper(remoteCodec.decode(indicator.getValue()));
+        }
+        if (!RemoteValueCodec.isEncoded(remoteValue.get())) {
+            return remoteValue;
+        }
+        return new SimpleValueWrapper(remoteCodec.decode(remoteValue.get()));
+    }
+
+    private long generation() {
+        return generation == null ? 0 : generation.current();
+    }
+
+    private List<?> scope(List<?> keys, long gen) {
+        if (generation == null) {
+            return keys;
+        }
+        List<Object> scoped = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            scoped.add(new GenerationKey(gen, key));
+        }
+        return scoped;
+    }
+
+    /**
+     * @return 本地条目，不属于当前代际或节点id租约不再确定有效时视为不存在
+     */
+    private LocalCacheEntry localEntry(Object key, long gen) {
+        if (!isLocalTierUsable()) {
+            return null;
+        }
+        ValueWrapper valueWrapper = localCache.get(key);
+        if (valueWrapper == null) {
+            return null;
+        }
+        LocalCacheEntry entry = (LocalCacheEntry) valueWrapper.get();
+        return entry.getGeneration() == gen ? entry : null;
+    }
+
+    /**
+     * 远端指示器对本节点有效但本地没有副本时（一般为重启后），尝试从快照恢复
+     * @param indicatorVersion 当前远端指示器的版本
+     */
+    private LocalCacheEntry localEntryOrSnapshot(Object key, long gen, long indicatorVersion) {
+        LocalCacheEntry entry = localEntry(key, gen);
+        if (entry != null) {
+            entry.setIndicatorVersion(indicatorVersion);
+            return entry;
+        }
+        if (snapshot == null || !isLocalTierUsable()) {
+            return null;
+        }
+        Object value;
+        try {
+            value = snapshot.restore(getName(), key, gen, indicatorVersion);
+        } catch (RuntimeException e) {
+            log.warn("failed to restore {} of cache {} from snapshot", key, getName(), e);
+            return null;
+        }
+        if (value == null) {
+            return null;
+        }
+        entry = newLocalEntry(value, estimateSize(value), gen);
+        entry.setIndicatorVersion(indicatorVersion);
+        try {
+            localCache.put(key, entry);
+        } catch (RuntimeException e) {
+            // 快照中的值仍然有效，只是不再保留本地副本
+            log.debug("local cache rejected restored {}:{}", getName(), key, e);
+        }
+        return entry;
+    }
+
+    /**
+     * 本节点写入后快照中的旧值不能再恢复，否则本地副本被淘汰后会读到旧值
+     */
+    private void forgetSnapshot(Object key) {
+        if (snapshot != null) {
+            snapshot.forget(getName(), key);
+        }
+    }
+
+    Cache getLocalCache() {
+        return localCache;
+    }
+
+    /**
+     * @return 本地缓存中的条目，堆外本地缓存不支持遍历时返回空
+     */
+    @SuppressWarnings("unchecked")
+    Map<Object, LocalCacheEntry> localEntries() {
+        Object nativeCache = localCache.getNativeCache();
+        if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+            return ((com.github.benmanes.caffeine.cache.Cache<Object, LocalCacheEntry>) nativeCache).asMap();
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @param write 写入本地前更新的远端指示器
+     */
+    private LocalCacheEntry newLocalEntry(Object value, long size, long gen, IndicatorWrite write) {
+        LocalCacheEntry entry = newLocalEntry(value, size, gen);
+        entry.setIndicatorVersion(write.version);
+        return entry;
+    }
+
+    private LocalCacheEntry newLocalEntry(Object value, long size, long gen) {
+        LocalCacheEntry entry = new LocalCacheEntry(value, size, gen);
+        stats.recordLocalAdmission(size);
+        if (leaseNanos > 0) {
+            // 刚写入了指示器，本节点副本即为最新
+            entry.renewLease(leaseNanos);
+        }
+        return entry;
+    }
+
+    /**
+     * @return 是否可能不经远端指示器直接信任本地副本
+     */
+    private boolean canTrustLocal() {
+        return localFastPath || context.isSingleNode();
+    }
+
+    /**
+     * 单节点模式下的写入：只写本地缓存，删除远端key使其他节点加入后不会读到旧值或旧指示器
+     */
+    private void putLocalOnly(Object key, LocalCacheEntry entry, long gen) {
+        pendingIndicators.remove(key);
+        if (putLocal(key, entry, gen)) {
+            remoteCache.evict(CacheGeneration.scope(generation, gen, key));
+        }
+    }
+
+    /**
+     * 写入本地缓存，本地缓存拒绝该值时（如堆外缓存无法序列化或值过大）改为远端完整值
+     * @return 是否写入了本地缓存
+     */
+    private boolean putLocal(Object key, LocalCacheEntry entry, long gen) {
+        try {
+            localCache.put(key, entry);
+            return true;
+        } catch (RuntimeException e) {
+            rejectLocal(key, entry.get(), gen, e);
+            return false;
+        }
+    }
+
+    /**
+     * 本地没有副本时远端的指示器不能为本节点置位：等待中的指示器更新不再写入，
+     * 已写入或即将写入的指示器由完整值覆盖；完整值也无法写入时删除远端key
+     */
+    private void rejectLocal(Object key, Object value, long gen, RuntimeException cause) {
+        log.debug("local cache rejected {}:{}, write the value to remote", getName(), key, cause);
+        pendingIndicators.remove(key);
+        try {
+            remoteCache.put(CacheGeneration.scope(generation, gen, key), encodeRemote(value));
+        } catch (RuntimeException e) {
+            abandonLocalCopy(key, gen);
+            throw e;
+        }
+        publish(InvalidationEvent.Type.PUT, key);
+    }
+
+    /**
+     * 其他节点加入，单节点模式下写入的本地副本没有对应的指示器，全部清空
+     */
+    void leaveSingleNodeMode() {
+        pendingIndicators.clear();
+        localCache.clear();
+    }
+
+    /**
+     * 节点id被其他节点接管后重新分配，旧id下的本地副本与快照都可能已被接管者的写入覆盖，全部清空
+     */
+    void onNodeIdChanged() {
+        flushIndicators();
+        pendingIndicators.clear();
+        localCache.clear();
+        if (snapshot != null) {
+            snapshot.forgetAll(getName());
+        }
+    }
 
-        String validMachines = "";
-        if (remoteCache instanceof ValueWrapper) {
-            validMachines = ((ValueWrapper) remoteCache).get() == null ? "" : ((ValueWrapper) remoteCache).get().toString();
-        }else{
-            validMachines=remoteCache.toString();
+    /**
+     * 失效总线健康时，本地副本在收到失效事件前一直有效；
+     * 否则在租约内信任本地副本，均无需读取远端指示器
+     */
+    private boolean trustLocalEntry(LocalCacheEntry localEntry) {
+        if (context.isSingleNode()) {
+            return true;
+        }
+        if (invalidationBus != null && !retired && invalidationBus.isHealthy()) {
+            return true;
+        }
+        if (leaseNanos <= 0) {
+            return false;
         }
+        if (localEntry.isLeaseValid(System.nanoTime())) {
+            return true;
+        }
+        stats.recordLeaseExpiration();
+        return false;
+    }
+
+    private void renewLease(LocalCacheEntry localEntry) {
+        if (leaseNanos > 0 && localEntry != null) {
+            localEntry.renewLease(leaseNanos);
+            stats.recordLeaseRevalidation();
+        }
+    }
 
-        if (validMachines.contains(HeliosCacheManager.machineKey) && validMachines.contains(CACHE_INDICATOR_PREFIX)) {
-            return LocalCacheStatusEnum.VALID;
+    private void recordLocalResult(LocalCacheEntry localEntry) {
+        if (localEntry != null) {
+            stats.recordLocalHit();
+        } else {
+            stats.recordMiss();
         }
-        if (!validMachines.contains(HeliosCacheManager.machineKey) && validMachines.contains(CACHE_INDICATOR_PREFIX)) {
+    }
+
+    /**
+     * 远端有指示器但不包含本节点，说明本节点的副本已被其他节点的写入失效
+     */
+    private void recordInvalid(ValueWrapper remoteValue) {
+        stats.recordMiss();
+        if (remoteValue != null && CacheIndicator.isIndicator(remoteValue.get())) {
+            stats.recordRemoteInvalidation();
+        }
+    }
+
+    private void publish(InvalidationEvent.Type type, Object key) {
+        if (invalidationBus != null) {
+            invalidationBus.publish(type, getName(), key);
+        }
+    }
+
+    private <T> LocalCacheStatusEnum localCacheStatus(Object key, Object remoteCache) {
+        Object remoteValue = remoteCache instanceof ValueWrapper ? ((ValueWrapper) remoteCache).get() : remoteCache;
+        if (remoteValue == null) {
             return LocalCacheStatusEnum.INVALID;
         }
+        CacheIndicator indicator = CacheIndicator.from(remoteValue);
+        if (indicator != null) {
+            if (indicator.isValidFor(context.getNodeId())) {
+                return LocalCacheStatusEnum.VALID;
+            }
+            if (indicator.getValue() != null) {
+                return LocalCacheStatusEnum.USE_REMOTE;
+            }
+            // 过期的不存在标记与未知一样需要重新加载
+            return CacheIndicator.isAbsent(remoteValue, System.currentTimeMillis()) ? LocalCacheStatusEnum.ABSENT : LocalCacheStatusEnum.INVALID;
+        }
+        if (CacheIndicator.isLegacyIndicator(remoteValue)) {
+            return LocalCacheStatusEnum.INVALID;
+        }
+        return LocalCacheStatusEnum.USE_REMOTE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T castValue(Object value, Class<T> aClass) {
+        if (value != null && aClass != null && !aClass.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + aClass.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+
+    /**
+     * 只有准入判断或按大小淘汰需要时才估算大小
+     */
+    private long estimateSize(Object value) {
+        if (heliosCacheProperties.getMinimumLocalKeySize() > 0 || cacheSpec.getMaximumWeight() > 0 || budgeted || admissionSketch != null) {
+            return sizeEstimator.estimate(value);
+        }
+        return 0;
+    }
 
-        if (!validMachines.contains(CACHE_INDICATOR_PREFIX)) {
-            return LocalCacheStatusEnum.USE_REMOTE;
+    private void recordRead(Object key) {
+        if (admissionSketch != null && key != null) {
+            admissionSketch.increment(admissionSalt + key.hashCode());
         }
-        return LocalCacheStatusEnum.INVALID;
     }
 
+    private int admissionFrequency(Object key) {
+        return admissionSketch.frequency(admissionSalt + key.hashCode());
+    }
 
-    private boolean enablePutLocalCache(Object value) {
-        if (!heliosCacheProperties.isEnableLocalCache()) {
+    private boolean enablePutLocalCache(Object key, long size) {
+        if (!isLocalTierUsable()) {
+            return false;
+        }
+        boolean enableLocalCache = cacheSpec.getEnableLocalCache() == null ? heliosCacheProperties.isEnableLocalCache() : cacheSpec.getEnableLocalCache();
+        if (!enableLocalCache) {
             return false;
         }
 
         //prefix check
         boolean enablePutLocalCachePrefixCheck = StringUtils.isEmpty(heliosCacheProperties.getLocalCachePrefix()) || getName().startsWith(heliosCacheProperties.getLocalCachePrefix());
 
+        if (admissionSketch != null) {
+            return enablePutLocalCachePrefixCheck && admit(key, size);
+        }
+
         //size check
-        boolean enablePutLocalCacheSizeCheck = heliosCacheProperties.getMinimumLocalKeySize() <= 0 || getObjectSize(value) >= heliosCacheProperties.getMinimumLocalKeySize();
+        boolean enablePutLocalCacheSizeCheck = heliosCacheProperties.getMinimumLocalKeySize() <= 0 || size >= heliosCacheProperties.getMinimumLocalKeySize();
 
         return enablePutLocalCachePrefixCheck && enablePutLocalCacheSizeCheck;
     }
 
 
     /**
-     * @param o Object to calculate size
-     * @return Object Size
+     * adaptive准入：读取至少两次，且 读取次数 * 大小（即本地缓存可以省下的远端读取流量）达到admissionTrafficBytes
+     * 小而热的key与读取过多次的大value都会被准入，只读一次的key留在远端；
+     * 因此首次加载的值（无论多大）都只写入远端，第二次读取起由promote提升
+     */
+    private boolean admit(Object key, long size) {
+        int frequency = admissionFrequency(key);
+        return frequency >= MIN_ADMISSION_FREQUENCY
+                && frequency * (size + BudgetedLocalCache.ENTRY_OVERHEAD) >= heliosCacheProperties.getAdmissionTrafficBytes();
+    }
+
+    /**
+     * adaptive准入下，写入时未准入的key之后被频繁读取时，在读到远端完整值时提升为本地缓存：
+     * 以CAS把远端完整值替换为携带该值的指示器并只为本节点置位，已携带值时只加入本节点，成功后写入本地；
+     * 其他节点仍直接使用携带的值，值已被其他节点修改时放弃本次提升
+     * 远端未实现CompareAndSetCache、单节点模式下或值无法编码时不提升，由下一次写入时的准入判断处理
+     * @param remoteValue 远端读到的原始值
+     * @param value 解码后的值
+     */
+    private void promote(Object key, long gen, Object remoteValue, ValueWrapper value) {
+        if (admissionSketch == null || !(remoteCache instanceof CompareAndSetCache) || context.isSingleNode()
+                || value == null || value.get() == null || admissionFrequency(key) < MIN_ADMISSION_FREQUENCY) {
+            return;
+        }
+        long size = estimateSize(value.get());
+        if (!enablePutLocalCache(key, size)) {
+            return;
+        }
+        CacheIndicator current = CacheIndicator.from(remoteValue);
+        CacheIndicator next;
+        if (current != null) {
+            next = current.joinedBy(context.getNodeId());
+        } else {
+            byte[] encoded = RemoteValueCodec.binaryOf(remoteValue);
+            if (encoded == null) {
+                try {
+                    encoded = remoteCodec.encodeBytes(value.get());
+                } catch (RuntimeException e) {
+                    log.debug("failed to encode value of {}:{}, skip promotion", getName(), key, e);
+                    return;
+                }
+            }
+            next = CacheIndicator.carrying(encoded, context.getNodeId(), heliosCacheProperties.getMaxNodes());
+        }
+        if (!((CompareAndSetCache) remoteCache).compareAndSet(CacheGeneration.scope(generation, gen, key), remoteValue, next.toRemote())) {
+            return;
+        }
+        putLocal(key, newLocalEntry(value.get(), size, gen, new IndicatorWrite(false, next.getVersion())), gen);
+    }
+
+    /**
+     * ensure remote cache indicator after update local cache
+     * @return 写入的指示器，多次冲突放弃写入时为null
+     */
+    private IndicatorWrite updateCacheIndicator(Object key, long gen) {
+        Object remoteKey = CacheGeneration.scope(generation, gen, key);
+        ValueWrapper remoteValue = remoteCache.get(remoteKey);
+        return writeIndicator(remoteKey, remoteValue == null ? null : remoteValue.get());
+    }
+
+    /**
+     * 远端实现CompareAndSetCache时原子写入，冲突时重新读取重试；未实现时退化为读后写
+     * 连续冲突MAX_CAS_ATTEMPTS次后不再写入，由调用方放弃本地副本，避免基于旧指示器覆盖其他节点的更新
+     * @param currentValue 已读到的远端当前值
+     * @return 写入的指示器，放弃写入时为null
      */
-    private int getObjectSize(Object o) {
-        if (o == null) {
-            return 0;
+    private IndicatorWrite writeIndicator(Object remoteKey, Object currentValue) {
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            CacheIndicator indicator = CacheIndicator.from(currentValue);
+            boolean fullRefresh = isFullRefresh(indicator);
+            CacheIndicator next = nextIndicator(indicator, fullRefresh);
+            if (!(remoteCache instanceof CompareAndSetCache)) {
+                remoteCache.put(remoteKey, next.toRemote());
+                return new IndicatorWrite(fullRefresh, next.getVersion());
+            }
+            if (((CompareAndSetCache) remoteCache).compareAndSet(remoteKey, currentValue, next.toRemote())) {
+                return new IndicatorWrite(fullRefresh, next.getVersion());
+            }
+            ValueWrapper remoteValue = remoteCache.get(remoteKey);
+            currentValue = remoteValue == null ? null : remoteValue.get();
+        }
+        log.warn("gave up local copy of {}:{} after {} conflicting indicator updates", getName(), remoteKey, MAX_CAS_ATTEMPTS);
+        return null;
+    }
+
+    /**
+     * 指示器无法写入时放弃本地副本：不保留本地值，并删除远端指示器使所有节点重新加载，
+     * 删除不会为任何节点置位，不会让其他节点的旧副本重新变为有效
+     */
+    private void abandonLocalCopy(Object key, long gen) {
+        localCache.evict(key);
+        remoteCache.evict(CacheGeneration.scope(generation, gen, key));
+        publish(InvalidationEvent.Type.EVICT, key);
+    }
+
+    /**
+     * 一次批量读取后更新多个key的指示器
+     * @param remoteEntries 远端不支持CompareAndSetCache时，新的指示器放入其中由调用方批量写入
+     * @return 与keys一一对应的写入结果，放弃写入的位置为null
+     */
+    private List<IndicatorWrite> writeIndicators(List<Object> keys, long gen, Map<Object, Object> remoteEntries) {
+        List<IndicatorWrite> writes = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return writes;
+        }
+        List<?> remoteKeys = scope(keys, gen);
+        List<ValueWrapper> currentIndicators = remoteGetAll(remoteKeys);
+        for (int i = 0; i < keys.size(); i++) {
+            ValueWrapper remoteValue = currentIndicators.get(i);
+            Object currentValue = remoteValue == null ? null : remoteValue.get();
+            if (remoteCache instanceof CompareAndSetCache) {
+                writes.add(writeIndicator(remoteKeys.get(i), currentValue));
+            } else {
+                CacheIndicator current = CacheIndicator.from(currentValue);
+                boolean fullRefresh = isFullRefresh(current);
+                CacheIndicator next = nextIndicator(current, fullRefresh);
+                remoteEntries.put(remoteKeys.get(i), next.toRemote());
+                writes.add(new IndicatorWrite(fullRefresh, next.getVersion()));
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * 本地写入后延迟 indicatorFlushMillis 合并写入指示器，同一个key在窗口内的多次写入只更新一次远端
+     */
+    private void enqueueIndicator(Object key, long gen) {
+        pendingIndicators.put(key, gen);
+        if (indicatorFlushScheduled.compareAndSet(false, true)) {
+            ScheduledExecutorService scheduler = context.getScheduler();
+            scheduler.schedule(this::flushIndicators, indicatorFlushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 将等待中的指示器更新批量写入远端，应用关闭或cache退役前也会调用
+     */
+    void flushIndicators() {
+        indicatorFlushScheduled.set(false);
+        if (pendingIndicators.isEmpty()) {
+            return;
+        }
+        if (!isLocalTierUsable()) {
+            flushPendingValues();
+            return;
+        }
+        Map<Long, List<Object>> keysByGeneration = new LinkedHashMap<>();
+        Map<Object, Long> flushing = new LinkedHashMap<>(pendingIndicators);
+        for (Map.Entry<Object, Long> entry : flushing.entrySet()) {
+            keysByGeneration.computeIfAbsent(entry.getValue(), g -> new ArrayList<>()).add(entry.getKey());
         }
         try {
-            String json = JSON.toJSONString(o);
-            return json.length();
-        } catch (Exception e) {
-            log.error("error calc size for object {}",o.getClass());
-            return 0;
+            for (Map.Entry<Long, List<Object>> entry : keysByGeneration.entrySet()) {
+                Map<Object, Object> indicators = new LinkedHashMap<>();
+                List<Object> keys = entry.getValue();
+                List<IndicatorWrite> writes = writeIndicators(keys, entry.getKey(), indicators);
+                remotePutAll(indicators);
+                for (int i = 0; i < keys.size(); i++) {
+                    IndicatorWrite write = writes.get(i);
+                    if (write == null) {
+                        abandonLocalCopy(keys.get(i), entry.getKey());
+                        continue;
+                    }
+                    LocalCacheEntry localEntry = localEntry(keys.get(i), entry.getKey());
+                    if (localEntry != null) {
+                        localEntry.setIndicatorVersion(write.version);
+                    }
+                    if (write.fullRefresh) {
+                        publish(InvalidationEvent.Type.PUT, keys.get(i));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // 无法确认远端指示器，放弃这些本地副本
+            log.error("failed to flush {} cache indicators of {}", flushing.size(), getName(), e);
+            for (Object key : flushing.keySet()) {
+                localCache.evict(key);
+            }
+        } finally {
+            for (Map.Entry<Object, Long> entry : flushing.entrySet()) {
+                pendingIndicators.remove(entry.getKey(), entry.getValue());
+            }
         }
+    }
 
+    /**
+     * 节点id不再确定属于本节点时不能写入指示器，等待中的本地写入改为把完整值写入远端并放弃本地副本
+     */
+    private void flushPendingValues() {
+        Map<Object, Long> flushing = new LinkedHashMap<>(pendingIndicators);
+        Map<Object, Object> remoteEntries = new LinkedHashMap<>();
+        for (Map.Entry<Object, Long> entry : flushing.entrySet()) {
+            ValueWrapper valueWrapper = localCache.get(entry.getKey());
+            LocalCacheEntry localEntry = valueWrapper == null ? null : (LocalCacheEntry) valueWrapper.get();
+            if (localEntry != null && localEntry.getGeneration() == entry.getValue()) {
+                remoteEntries.put(CacheGeneration.scope(generation, entry.getValue(), entry.getKey()), encodeRemote(localEntry.get()));
+            }
+        }
+        try {
+            remotePutAll(remoteEntries);
+            for (Object key : flushing.keySet()) {
+                publish(InvalidationEvent.Type.PUT, key);
+            }
+        } catch (RuntimeException e) {
+            log.error("failed to write {} pending values of {} to remote", remoteEntries.size(), getName(), e);
+        } finally {
+            for (Map.Entry<Object, Long> entry : flushing.entrySet()) {
+                pendingIndicators.remove(entry.getKey(), entry.getValue());
+                localCache.evict(entry.getKey());
+            }
+        }
     }
 
     /**
-     * ensure remote cache indicator after update local cache
+     * 远端没有指示器、记录的是不存在，或本节点已经有效（说明是本节点写入新值）时为全量刷新
      */
-    private void updateCacheIndicator(Object key) {
-        String validMachines = remoteCache.get(key, String.class);
+    private boolean isFullRefresh(CacheIndicator current) {
+        return current == null || current.isAbsent() || current.isValidFor(context.getNodeId());
+    }
 
-        if (validMachines == null || validMachines.contains(HeliosCacheManager.machineKey)) {
+    private CacheIndicator nextIndicator(CacheIndicator current, boolean fullRefresh) {
+        if (fullRefresh) {
             // it's a fully refresh
-            validMachines = CACHE_INDICATOR_PREFIX + HeliosCacheManager.machineKey+";";
-        }else{
-            // it's a catch up refresh
-            validMachines = validMachines == null ? HeliosCacheManager.machineKey + ";" : validMachines + HeliosCacheManager.machineKey + ";";
+            return CacheIndicator.refreshedBy(current, context.getNodeId(), heliosCacheProperties.getMaxNodes());
         }
+        // it's a catch up refresh
+        return current.joinedBy(context.getNodeId());
+    }
+
+    /**
+     * 一次指示器写入的结果
+     */
+    /**
+     * 同一个key正在进行的加载
+     */
+    private static final class LoadingFuture extends CompletableFuture<Object> {
+        /**
+         * 执行loader的线程，后台刷新在提交后才确定
+         */
+        private volatile Thread owner;
+    }
+
+    private static final class IndicatorWrite {
+        /**
+         * 是否为全量刷新，即其他节点的本地副本已失效
+         */
+        private final boolean fullRefresh;
+        /**
+         * 写入的指示器版本
+         */
+        private final long version;
 
-        if (!validMachines.startsWith(CACHE_INDICATOR_PREFIX)) {
-            //add indicator prefix to cache value
-            validMachines = CACHE_INDICATOR_PREFIX + validMachines;
+        private IndicatorWrite(boolean fullRefresh, long version) {
+            this.fullRefresh = fullRefresh;
+            this.version = version;
         }
-        this.remoteCache.put(key, validMachines);
     }
 }
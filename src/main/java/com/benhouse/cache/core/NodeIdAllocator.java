@@ -0,0 +1,114 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.remote.CompareAndSetCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.util.StringUtils;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分配节点在指示器位图中的下标
+ * 节点标识(ip + nodeName)通过远端注册表租用 [0, maxNodes) 中的一个槽位，
+ * 相同标识重启后会拿回同一个槽位，不同标识之间不会冲突；异常退出未释放的槽位在租约到期后可以被其他节点接管
+ */
+@Slf4j
+public final class NodeIdAllocator {
+    public static final String NODE_REGISTRY_CACHE_NAME = "&NODES&";
+
+    private NodeIdAllocator() {
+    }
+
+    /**
+     * @return 分配到的节点id租约，持有者需定期续约并在关闭时释放
+     */
+    static NodeIdLease allocate(CacheManager remoteCacheManager, HeliosCacheProperties heliosCacheProperties) {
+        int maxNodes = heliosCacheProperties.getMaxNodes();
+        if (heliosCacheProperties.getNodeId() >= 0) {
+            if (heliosCacheProperties.getNodeId() >= maxNodes) {
+                throw new IllegalArgumentException("nodeId must be less than maxNodes " + maxNodes);
+            }
+            return NodeIdLease.fixed(heliosCacheProperties.getNodeId());
+        }
+        String identity = localIdentity(heliosCacheProperties.getNodeName());
+        int start = (identity.hashCode() & Integer.MAX_VALUE) % maxNodes;
+        Cache registry = remoteCacheManager.getCache(NODE_REGISTRY_CACHE_NAME);
+        if (registry == null) {
+            log.warn("remote cache manager has no cache {}, node id {} derived from {} is not guaranteed to be unique",
+                    NODE_REGISTRY_CACHE_NAME, start, identity);
+            return NodeIdLease.fixed(start);
+        }
+        long leaseMillis = TimeUnit.SECONDS.toMillis(heliosCacheProperties.getNodeIdLeaseSeconds());
+        for (int i = 0; i < maxNodes; i++) {
+            int slot = (start + i) % maxNodes;
+            long now = System.currentTimeMillis();
+            String record = NodeIdLease.record(identity, now + leaseMillis);
+            if (claim(registry, slot, identity, record, now - NodeIdLease.clockSkewMargin(leaseMillis))) {
+                log.info("super cache node {} registered with node id {}", identity, slot);
+                return new NodeIdLease(registry, slot, identity, leaseMillis, now + leaseMillis);
+            }
+        }
+        throw new IllegalStateException("no free node id left, consider increasing maxNodes " + maxNodes);
+    }
+
+    /**
+     * 槽位空闲、属于相同标识或租约已到期时占用；远端实现CompareAndSetCache时按原记录比较写入，避免多个节点同时接管
+     * @param expiredBefore 到期时间早于该时间的租约才可以接管，已减去时钟偏差余量
+     */
+    private static boolean claim(Cache registry, int slot, String identity, String record, long expiredBefore) {
+        Cache.ValueWrapper owner = registry.putIfAbsent(slot, record);
+        if (owner == null || owner.get() == null) {
+            return true;
+        }
+        if (!identity.equals(NodeIdLease.identityOf(owner.get())) && !NodeIdLease.isExpired(owner.get(), expiredBefore)) {
+            return false;
+        }
+        if (registry instanceof CompareAndSetCache) {
+            return ((CompareAndSetCache) registry).compareAndSet(slot, owner.get(), record);
+        }
+        registry.put(slot, record);
+        return true;
+    }
+
+    /**
+     * 节点标识: 第一个非回环的IPv4地址，同一主机多实例时需配置nodeName区分
+     */
+    static String localIdentity(String nodeName) {
+        String ip = firstIpv4Address();
+        return StringUtils.isEmpty(nodeName) ? ip : ip + "/" + nodeName;
+    }
+
+    private static String firstIpv4Address() {
+        Enumeration<NetworkInterface> allNetInterfaces;
+        String loopbackIP = null;
+        try {
+            allNetInterfaces = NetworkInterface.getNetworkInterfaces();
+        } catch (SocketException e) {
+            throw new RuntimeException(e);
+        }
+        while (allNetInterfaces != null && allNetInterfaces.hasMoreElements()) {
+            NetworkInterface netInterface = allNetInterfaces.nextElement();
+            Enumeration<InetAddress> addresses = netInterface.getInetAddresses();
+            while (addresses.hasMoreElements()) {
+                InetAddress ip = addresses.nextElement();
+                if (ip instanceof Inet4Address) {
+                    if (!ip.isLoopbackAddress()) {
+                        return ip.getHostAddress();
+                    }
+                    loopbackIP = ip.getHostAddress();
+                }
+            }
+        }
+        if (loopbackIP != null) {
+            return loopbackIP;
+        }
+        throw new RuntimeException("can not get machine key");
+    }
+}
@@ -0,0 +1,154 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.remote.CompareAndSetCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+/**
+ * 节点在远端注册表中占用的节点id租约
+ * 注册表中每个槽位记录 节点标识|到期时间，持有者需在到期前续约，关闭时释放；
+ * 节点异常退出未释放时，租约到期后槽位可以被其他节点接管。到期时间按各节点本地时钟比较：
+ * 持有者在到期前clockSkewMargin即不再信任本地缓存，其他节点在到期后clockSkewMargin才能接管，时钟偏差小于该余量时两者不会重叠
+ */
+@Slf4j
+final class NodeIdLease {
+    private static final char SEPARATOR = '|';
+    private static final long MAX_CLOCK_SKEW_MARGIN_MILLIS = 10_000;
+
+    private final Cache registry;
+    private final int nodeId;
+    private final String identity;
+    private final long leaseMillis;
+    /**
+     * 按本地时钟，在此之前租约一定仍属于本节点
+     */
+    private volatile long validUntil;
+    private volatile boolean lost;
+
+    /**
+     * @param registry 节点注册表，为null时表示固定配置的节点id，不需要续约和释放
+     * @param expiresAtMillis 注册表中记录的到期时间
+     */
+    NodeIdLease(Cache registry, int nodeId, String identity, long leaseMillis, long expiresAtMillis) {
+        this.registry = registry;
+        this.nodeId = nodeId;
+        this.identity = identity;
+        this.leaseMillis = leaseMillis;
+        this.validUntil = registry == null ? Long.MAX_VALUE : expiresAtMillis - clockSkewMargin(leaseMillis);
+    }
+
+    static NodeIdLease fixed(int nodeId) {
+        return new NodeIdLease(null, nodeId, null, 0, 0);
+    }
+
+    /**
+     * @return 节点间允许的时钟偏差，不超过租约时长的1/4
+     */
+    static long clockSkewMargin(long leaseMillis) {
+        return Math.min(MAX_CLOCK_SKEW_MARGIN_MILLIS, leaseMillis / 4);
+    }
+
+    /**
+     * @return 租约是否仍确定属于本节点；续约失败时到期前clockSkewMargin即返回false，已被接管时一直返回false
+     */
+    boolean isValid(long nowMillis) {
+        return !lost && nowMillis < validUntil;
+    }
+
+    int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return 是否需要定期续约
+     */
+    boolean isLeased() {
+        return registry != null;
+    }
+
+    long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * 延长租约，远端实现CompareAndSetCache时按读到的记录比较写入
+     * 远端访问失败时保留原租约，到期前由isValid停止信任本地缓存
+     * @return 槽位已被其他节点接管时为false，持有者需要重新分配节点id
+     */
+    synchronized boolean renew() {
+        if (registry == null || lost) {
+            return !lost;
+        }
+        try {
+            Cache.ValueWrapper current = registry.get(nodeId);
+            if (current != null && identity.equals(identityOf(current.get()))) {
+                long expiresAt = System.currentTimeMillis() + leaseMillis;
+                String next = record(identity, expiresAt);
+                boolean renewed = true;
+                if (registry instanceof CompareAndSetCache) {
+                    renewed = ((CompareAndSetCache) registry).compareAndSet(nodeId, current.get(), next);
+                } else {
+                    registry.put(nodeId, next);
+                }
+                if (renewed) {
+                    validUntil = expiresAt - clockSkewMargin(leaseMillis);
+                    return true;
+                }
+            }
+            lost = true;
+            log.error("node id {} of {} was taken over by another node after its lease expired", nodeId, identity);
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("failed to renew lease of node id {}", nodeId, e);
+            return true;
+        }
+    }
+
+    /**
+     * 关闭时释放槽位，只删除仍属于本节点的记录
+     */
+    synchronized void release() {
+        if (registry == null) {
+            return;
+        }
+        try {
+            Cache.ValueWrapper current = registry.get(nodeId);
+            if (current != null && identity.equals(identityOf(current.get()))) {
+                registry.evict(nodeId);
+                log.info("super cache node {} released node id {}", identity, nodeId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("failed to release node id {}", nodeId, e);
+        }
+    }
+
+    static String record(String identity, long expiresAtMillis) {
+        return identity + SEPARATOR + expiresAtMillis;
+    }
+
+    /**
+     * 旧版本没有到期时间的记录只包含节点标识
+     */
+    static String identityOf(Object record) {
+        String value = String.valueOf(record);
+        int separator = value.lastIndexOf(SEPARATOR);
+        return separator < 0 ? value : value.substring(0, separator);
+    }
+
+    /**
+     * 旧版本没有到期时间的记录视为永不过期
+     * @param now 比较用的时间，接管时需减去clockSkewMargin
+     */
+    static boolean isExpired(Object record, long now) {
+        String value = String.valueOf(record);
+        int separator = value.lastIndexOf(SEPARATOR);
+        if (separator < 0) {
+            return false;
+        }
+        try {
+            return Long.parseLong(value.substring(separator + 1)) < now;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
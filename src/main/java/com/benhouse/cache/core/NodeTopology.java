@@ -0,0 +1,147 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.remote.RemoteCounter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过远端心跳判断集群中是否只有本节点
+ * 所有节点每次心跳把同一个远端计数器加1，两次心跳之间计数器只增加了本节点的1次时，说明期间没有其他节点心跳；
+ * 每次心跳只有一次远端操作，与maxNodes无关，也不依赖节点间的时钟一致
+ * 连续多次心跳都没有发现其他存活节点时进入单节点模式；发现其他节点或心跳失败时立即退回集群模式
+ * 旧版本节点不发送心跳，滚动升级期间无法据此判断，远端记录的集群版本达到PROTOCOL_VERSION之前不进入单节点模式
+ */
+@Slf4j
+final class NodeTopology {
+    static final String HEARTBEAT_CACHE_NAME = "&HEARTBEAT&";
+    static final String HEARTBEAT_KEY = "&LIVE&";
+    /**
+     * 集群版本的计数器key，所有节点都已升级到发送心跳的版本后由配置了topologyClusterVersion的节点提升
+     */
+    static final String CLUSTER_VERSION_KEY = "&VERSION&";
+    /**
+     * 本版本的心跳协议版本
+     */
+    static final int PROTOCOL_VERSION = 1;
+    /**
+     * 进入单节点模式需要连续该次数没有发现其他节点，新节点加入时也等待该次数的心跳周期后再开始读写
+     */
+    private static final int MISSED_BEATS = 3;
+    /**
+     * 单节点模式只在最近一次心跳后的该次数心跳周期内有效，心跳线程被阻塞时不会一直沿用旧的判断
+     */
+    private static final int TRUSTED_BEATS = 2;
+
+    private final RemoteCounter heartbeats;
+    private final int nodeId;
+    private final long heartbeatNanos;
+    private final Runnable onClusterMode;
+    /**
+     * 上一次心跳后计数器的值，未知时为-1
+     */
+    private long lastSequence = -1;
+    private int quietBeats;
+    private boolean clusterVersionObserved;
+    private boolean stopped;
+    private volatile boolean singleNode;
+    private volatile long lastQuietBeatAt;
+
+    /**
+     * @param heartbeats 所有节点共享的原子计数器
+     * @param onClusterMode 从单节点模式退回集群模式时调用，在心跳线程中执行
+     */
+    NodeTopology(RemoteCounter heartbeats, int nodeId, long heartbeatMillis, Runnable onClusterMode) {
+        this.heartbeats = heartbeats;
+        this.nodeId = nodeId;
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        this.onClusterMode = onClusterMode;
+    }
+
+    /**
+     * 同步写入第一次心跳后定期执行，并等待MISSED_BEATS个心跳周期再返回：
+     * 已运行的单节点在一个心跳周期内发现本节点加入并清空本地缓存，或因心跳滞后不再按单节点处理，
+     * 本节点在此之前不会开始写入
+     */
+    void start(ScheduledExecutorService scheduler) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(heartbeatNanos);
+        beat();
+        scheduler.scheduleWithFixedDelay(this::beat, millis, millis, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(MISSED_BEATS * millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isSingleNode() {
+        return singleNode && System.nanoTime() - lastQuietBeatAt < TRUSTED_BEATS * heartbeatNanos;
+    }
+
+    synchronized void beat() {
+        if (stopped) {
+            return;
+        }
+        boolean othersAlive;
+        try {
+            long sequence = heartbeats.incrementCounter(HEARTBEAT_KEY);
+            // 第一次心跳无法判断，视为有其他节点，宁可晚一点进入单节点模式
+            othersAlive = lastSequence < 0 || sequence != lastSequence + 1;
+            lastSequence = sequence;
+        } catch (RuntimeException e) {
+            log.warn("node {} heartbeat failed, fall back to cluster mode", nodeId, e);
+            lastSequence = -1;
+            othersAlive = true;
+        }
+        if (othersAlive) {
+            quietBeats = 0;
+            if (singleNode) {
+                singleNode = false;
+                log.info("node {} detected other nodes, switch to cluster mode", nodeId);
+                onClusterMode.run();
+            }
+            return;
+        }
+        lastQuietBeatAt = System.nanoTime();
+        if (!singleNode && ++quietBeats >= MISSED_BEATS && isClusterVersionObserved()) {
+            singleNode = true;
+            log.info("node {} is the only live node, switch to single node mode", nodeId);
+        }
+    }
+
+    /**
+     * 只在即将进入单节点模式时读取，确认后不再读取
+     */
+    private boolean isClusterVersionObserved() {
+        if (!clusterVersionObserved) {
+            try {
+                clusterVersionObserved = heartbeats.getCounter(CLUSTER_VERSION_KEY) >= PROTOCOL_VERSION;
+            } catch (RuntimeException e) {
+                log.warn("node {} failed to read cluster version, stay in cluster mode", nodeId, e);
+                return false;
+            }
+            if (!clusterVersionObserved) {
+                log.debug("node {} sees no other heartbeat but cluster version is not confirmed, stay in cluster mode", nodeId);
+            }
+        }
+        return clusterVersionObserved;
+    }
+
+    /**
+     * 将远端记录的集群版本提升到PROTOCOL_VERSION，计数器只能递增，并发提升时可能超过该值
+     */
+    static void confirmClusterVersion(RemoteCounter heartbeats) {
+        while (heartbeats.getCounter(CLUSTER_VERSION_KEY) < PROTOCOL_VERSION) {
+            heartbeats.incrementCounter(CLUSTER_VERSION_KEY);
+        }
+    }
+
+    /**
+     * 关闭时停止心跳，剩余的节点连续MISSED_BEATS次心跳没有发现其他节点后进入单节点模式
+     */
+    synchronized void leave() {
+        stopped = true;
+        singleNode = false;
+    }
+}
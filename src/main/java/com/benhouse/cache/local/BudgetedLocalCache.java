@@ -0,0 +1,84 @@
+package com.benhouse.cache.local;
+
+import com.benhouse.cache.core.LocalCacheEntry;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 将写入本地缓存的条目计入节点内存预算，条目移除时由本地缓存的removal listener释放
+ */
+public class BudgetedLocalCache implements Cache {
+    /**
+     * 每个条目除缓存值外的固定开销估算（key、条目对象、缓存内部节点）
+     */
+    public static final long ENTRY_OVERHEAD = 64;
+    private final Cache delegate;
+    private final LocalMemoryBudget.Usage usage;
+
+    public BudgetedLocalCache(Cache delegate, LocalMemoryBudget.Usage usage) {
+        this.delegate = delegate;
+        this.usage = usage;
+    }
+
+    public static long weightOf(Object entry) {
+        return entry instanceof LocalCacheEntry ? ((LocalCacheEntry) entry).getWeight() + ENTRY_OVERHEAD : ENTRY_OVERHEAD;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        usage.touch();
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        usage.touch();
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        usage.touch();
+        return delegate.get(key, () -> {
+            T value = valueLoader.call();
+            usage.charge(weightOf(value));
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        usage.charge(weightOf(value));
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        if (existing == null) {
+            usage.charge(weightOf(value));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
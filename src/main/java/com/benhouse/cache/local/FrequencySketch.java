@@ -0,0 +1,85 @@
+package com.benhouse.cache.local;
+
+/**
+ * Count-Min Sketch估算key的访问频率，用于本地缓存的准入判断
+ * 每个计数器1字节（上限255），共4行；累计访问达到 10 * width 次后所有计数减半，使频率随时间衰减
+ * 并发递增不加锁，偶尔丢失的计数不影响准入判断
+ * 多个cache共享一个实例时，由调用方把cache name混入key的哈希值
+ */
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 255;
+    private static final int[] SEEDS = {0x97cb3127, 0x9e3779b9, 0x85ebca6b, 0xc2b2ae35};
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width 每行计数器数量，取不小于它的2的幂
+     */
+    public FrequencySketch(int width) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.table = new byte[size * DEPTH];
+        this.mask = size - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    public void increment(Object key) {
+        increment(key.hashCode());
+    }
+
+    /**
+     * @param keyHash key的哈希值
+     */
+    public void increment(int keyHash) {
+        int hash = spread(keyHash);
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int count = table[index] & 0xFF;
+            if (count < MAX_COUNT) {
+                table[index] = (byte) (count + 1);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @return 估算的访问次数，只会高估不会低估（不计并发丢失）
+     */
+    public int frequency(Object key) {
+        return frequency(key.hashCode());
+    }
+
+    public int frequency(int keyHash) {
+        int hash = spread(keyHash);
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)] & 0xFF);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        additions = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) ((table[i] & 0xFF) >>> 1);
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int hash) {
+        hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        return hash ^ (hash >>> 16);
+    }
+}
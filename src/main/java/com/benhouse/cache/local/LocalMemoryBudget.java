@@ -0,0 +1,137 @@
+package com.benhouse.cache.local;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 节点级本地缓存内存预算，所有cache name（包括@CacheNameSuffix动态产生的）共享
+ * 占用超过预算时按cache name的最近访问时间淘汰，最久未访问的cache整个退役，直到占用降到预算的90%
+ */
+@Slf4j
+public class LocalMemoryBudget {
+    private static final double LOW_WATERMARK = 0.9;
+    private final long budgetBytes;
+    private final LongAdder totalBytes = new LongAdder();
+    private final ConcurrentMap<String, Usage> usages = new ConcurrentHashMap<>();
+    private final AtomicBoolean retiring = new AtomicBoolean();
+    private final Consumer<String> retireAction;
+
+    /**
+     * @param retireAction 退役cache name的回调，需要清空该cache的本地缓存
+     */
+    public LocalMemoryBudget(long budgetBytes, Consumer<String> retireAction) {
+        this.budgetBytes = budgetBytes;
+        this.retireAction = retireAction;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public Usage register(String cacheName) {
+        return usages.computeIfAbsent(cacheName, Usage::new);
+    }
+
+    /**
+     * @return 当前所有本地缓存的估算总占用
+     */
+    public long getFootprint() {
+        return totalBytes.sum();
+    }
+
+    /**
+     * @return 各cache name的估算占用，按占用从大到小排列
+     */
+    public Map<String, Long> getFootprintByCache() {
+        List<Usage> sorted = new ArrayList<>(usages.values());
+        sorted.sort(Comparator.comparingLong(Usage::getBytes).reversed());
+        Map<String, Long> footprint = new LinkedHashMap<>();
+        for (Usage usage : sorted) {
+            footprint.put(usage.cacheName, usage.getBytes());
+        }
+        return footprint;
+    }
+
+    private void enforce(Usage current) {
+        if (totalBytes.sum() <= budgetBytes || !retiring.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Usage> candidates = new ArrayList<>(usages.values());
+            candidates.remove(current);
+            candidates.sort(Comparator.comparingLong(usage -> usage.lastAccess));
+            long target = (long) (budgetBytes * LOW_WATERMARK);
+            for (Usage usage : candidates) {
+                if (totalBytes.sum() <= target) {
+                    break;
+                }
+                log.info("local cache memory budget {} exceeded, retire cold cache {} ({} bytes)", budgetBytes, usage.cacheName, usage.getBytes());
+                retire(usage);
+            }
+        } finally {
+            retiring.set(false);
+        }
+    }
+
+    private void retire(Usage usage) {
+        if (!usages.remove(usage.cacheName, usage)) {
+            return;
+        }
+        usage.retired = true;
+        totalBytes.add(-usage.bytes.sum());
+        retireAction.accept(usage.cacheName);
+    }
+
+    /**
+     * 单个cache name的占用记录，退役后的记录不再计入总占用
+     */
+    public final class Usage {
+        private final String cacheName;
+        private final LongAdder bytes = new LongAdder();
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile boolean retired;
+
+        private Usage(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        public void charge(long weight) {
+            bytes.add(weight);
+            if (!retired) {
+                totalBytes.add(weight);
+                enforce(this);
+            }
+        }
+
+        public void release(long weight) {
+            bytes.add(-weight);
+            if (!retired) {
+                totalBytes.add(-weight);
+            }
+        }
+
+        /**
+         * 记录访问时间，精度为1秒，避免每次访问都写共享变量
+         */
+        public void touch() {
+            long now = System.currentTimeMillis();
+            if (now - lastAccess > 1000) {
+                lastAccess = now;
+            }
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+    }
+}
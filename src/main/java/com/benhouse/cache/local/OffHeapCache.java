@@ -0,0 +1,321 @@
+package com.benhouse.cache.local;
+
+import com.benhouse.cache.core.LocalCacheEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 堆外本地缓存：值序列化后顺序追加写入固定大小的直接内存slab，所有slab写满后复用最早写入的slab，
+ * 其中的条目一并淘汰（FIFO），总内存不超过capacityBytes，堆上只保留key到位置的索引
+ * 存入LocalCacheEntry时只有值进入堆外，租约等元数据留在堆上，命中时反序列化出共享元数据的新条目
+ * 超过单个slab大小或无法序列化的值不会被缓存：移除该key的旧值后put/putIfAbsent抛出IllegalArgumentException，
+ * 调用方据此得知本地没有副本
+ */
+@Slf4j
+public class OffHeapCache implements Cache {
+    private static final int MIN_SLAB_BYTES = 64 * 1024;
+    private static final int MAX_SLAB_BYTES = 16 * 1024 * 1024;
+    private static final Object MISS = new Object();
+    /**
+     * sun.misc.Unsafe#loadFence，Java 8没有VarHandle，通过反射获取，不可用时为null
+     */
+    private static final MethodHandle LOAD_FENCE = loadFenceHandle();
+
+    private final String name;
+    private final ValueSerializer serializer;
+    private final int slabBytes;
+    private final Slab[] slabs;
+    private final ConcurrentMap<Object, Slot> index = new ConcurrentHashMap<>();
+    /**
+     * 当前写入的slab下标，写入与复用slab时持有this锁
+     */
+    private int current;
+
+    public OffHeapCache(String name, ValueSerializer serializer, long capacityBytes) {
+        this(name, serializer, capacityBytes, (int) Math.min(MAX_SLAB_BYTES, Math.max(MIN_SLAB_BYTES, capacityBytes / 16)));
+    }
+
+    public OffHeapCache(String name, ValueSerializer serializer, long capacityBytes, int slabBytes) {
+        this.name = name;
+        this.serializer = serializer;
+        this.slabBytes = slabBytes;
+        this.slabs = new Slab[(int) Math.max(2, capacityBytes / slabBytes)];
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = new Slab();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Slot slot = index.get(key);
+        if (slot == null) {
+            return null;
+        }
+        Object value = read(slot);
+        if (value == MISS) {
+            index.remove(key, slot);
+            return null;
+        }
+        return new SimpleValueWrapper(slot.template == null ? value : slot.template.withValue(value));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        Slot slot = write(key, value);
+        if (slot == null) {
+            index.remove(key);
+        } else {
+            index.put(key, slot);
+        }
+        return value;
+    }
+
+    /**
+     * @throws IllegalArgumentException 值过大或无法序列化，该key的旧值已移除
+     */
+    @Override
+    public void put(Object key, Object value) {
+        Slot slot = write(key, value);
+        if (slot == null) {
+            index.remove(key);
+            throw rejected(key);
+        }
+        index.put(key, slot);
+    }
+
+    /**
+     * @throws IllegalArgumentException 值过大或无法序列化
+     */
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        Slot slot = write(key, value);
+        if (slot == null) {
+            index.remove(key);
+            throw rejected(key);
+        }
+        if (index.putIfAbsent(key, slot) == null) {
+            return null;
+        }
+        return get(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        index.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        index.clear();
+        for (Slab slab : slabs) {
+            slab.reset();
+            slab.takeKeys();
+        }
+        current = 0;
+    }
+
+    private IllegalArgumentException rejected(Object key) {
+        return new IllegalArgumentException("value of " + name + ":" + key + " can not be stored off heap");
+    }
+
+    public int getEntryCount() {
+        return index.size();
+    }
+
+    public long getCapacityBytes() {
+        return (long) slabBytes * slabs.length;
+    }
+
+    /**
+     * @return 写入的位置，值过大或无法序列化时为null，由调用方移除旧值，避免指示器认为本地副本是新值
+     */
+    private Slot write(Object key, Object value) {
+        LocalCacheEntry template = null;
+        Object payload = value;
+        if (value instanceof LocalCacheEntry) {
+            template = ((LocalCacheEntry) value).withValue(null);
+            payload = ((LocalCacheEntry) value).get();
+        }
+        byte[] bytes;
+        try {
+            bytes = serializer.serialize(payload);
+        } catch (RuntimeException e) {
+            log.debug("can not serialize value of {}:{}, not cached off heap", name, key, e);
+            return null;
+        }
+        if (bytes.length > slabBytes) {
+            return null;
+        }
+        synchronized (this) {
+            Slab slab = slabs[current];
+            if (slab.used + bytes.length > slabBytes) {
+                current = (current + 1) % slabs.length;
+                slab = slabs[current];
+                recycle(slab);
+            }
+            int offset = slab.used;
+            ByteBuffer target = slab.buffer().duplicate();
+            target.position(offset);
+            target.put(bytes);
+            slab.used += bytes.length;
+            slab.keys.add(key);
+            return new Slot(template, slab, slab.epoch, offset, bytes.length);
+        }
+    }
+
+    /**
+     * 复用前先递增epoch，正在读取该slab的线程读完后会发现epoch变化并放弃结果
+     */
+    private void recycle(Slab slab) {
+        slab.reset();
+        for (Object key : slab.takeKeys()) {
+            index.computeIfPresent(key, (k, slot) -> slot.slab == slab && slot.epoch != slab.epoch ? null : slot);
+        }
+    }
+
+    /**
+     * 读取堆外内存后再次检查epoch，期间slab被复用时读到的可能是任意字节，反序列化的任何异常或错误都按未命中处理
+     * 第二次读取epoch前需要loadFence，保证对堆外内存的读取不会被重排到epoch读取之后
+     */
+    private Object read(Slot slot) {
+        Slab slab = slot.slab;
+        int epoch = slot.epoch;
+        if (slab.epoch != epoch) {
+            return MISS;
+        }
+        ByteBuffer view = slab.buffer.asReadOnlyBuffer();
+        view.position(slot.offset);
+        view.limit(slot.offset + slot.length);
+        Object value;
+        try {
+            value = serializer.deserialize(view.slice());
+        } catch (Throwable e) {
+            loadFence();
+            if (slab.epoch != epoch) {
+                return MISS;
+            }
+            throw e;
+        }
+        loadFence();
+        return slab.epoch == epoch ? value : MISS;
+    }
+
+    private static void loadFence() {
+        if (LOAD_FENCE == null) {
+            return;
+        }
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle loadFenceHandle() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", MethodType.methodType(void.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("sun.misc.Unsafe#loadFence is not available, off heap reads rely on the volatile epoch only", e);
+            return null;
+        }
+    }
+
+    private final class Slab {
+        /**
+         * 第一次写入时才分配直接内存，读取方通过Slot读到的一定已分配
+         */
+        private ByteBuffer buffer;
+        private volatile int epoch;
+        private int used;
+        private List<Object> keys = new ArrayList<>();
+
+        private ByteBuffer buffer() {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(slabBytes);
+            }
+            return buffer;
+        }
+
+        private void reset() {
+            epoch++;
+            used = 0;
+        }
+
+        private List<Object> takeKeys() {
+            List<Object> taken = keys;
+            keys = new ArrayList<>();
+            return taken;
+        }
+    }
+
+    private static final class Slot {
+        /**
+         * 存入的是LocalCacheEntry时为去掉值的条目，用于共享元数据
+         */
+        private final LocalCacheEntry template;
+        private final Slab slab;
+        private final int epoch;
+        private final int offset;
+        private final int length;
+
+        private Slot(LocalCacheEntry template, Slab slab, int epoch, int offset, int length) {
+            this.template = template;
+            this.slab = slab;
+            this.epoch = epoch;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
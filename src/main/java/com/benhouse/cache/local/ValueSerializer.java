@@ -0,0 +1,16 @@
+package com.benhouse.cache.local;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 堆外本地缓存的值序列化方式
+ */
+public interface ValueSerializer {
+
+    byte[] serialize(Object value);
+
+    /**
+     * @param buffer 只读视图，position到limit为serialize的结果，可直接从堆外内存读取
+     */
+    Object deserialize(ByteBuffer buffer);
+}
@@ -0,0 +1,20 @@
+package com.benhouse.cache.remote;
+
+import org.springframework.cache.Cache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 远端缓存可选实现的批量操作，例如基于Redis MGET或pipeline实现
+ * 未实现时MultiStepCacheDecorator退化为逐个访问
+ */
+public interface BatchCache {
+
+    /**
+     * @return 与keys顺序一一对应的结果，未命中的位置为null
+     */
+    List<Cache.ValueWrapper> getAll(List<?> keys);
+
+    void putAll(Map<?, ?> entries);
+}
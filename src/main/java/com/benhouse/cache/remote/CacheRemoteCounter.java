@@ -0,0 +1,35 @@
+package com.benhouse.cache.remote;
+
+import org.springframework.cache.Cache;
+
+/**
+ * 基于普通Cache读后写实现的计数器
+ * 并发递增时可能合并为一次递增，对代际而言仍然满足"递增后旧代际失效"
+ */
+public class CacheRemoteCounter implements RemoteCounter {
+    private final Cache cache;
+
+    public CacheRemoteCounter(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return 远端缓存自身实现了RemoteCounter时直接使用，否则退化为读后写
+     */
+    public static RemoteCounter of(Cache cache) {
+        return cache instanceof RemoteCounter ? (RemoteCounter) cache : new CacheRemoteCounter(cache);
+    }
+
+    @Override
+    public long getCounter(Object key) {
+        Cache.ValueWrapper value = cache.get(key);
+        return value == null || value.get() == null ? 0 : ((Number) value.get()).longValue();
+    }
+
+    @Override
+    public long incrementCounter(Object key) {
+        long next = getCounter(key) + 1;
+        cache.put(key, next);
+        return next;
+    }
+}
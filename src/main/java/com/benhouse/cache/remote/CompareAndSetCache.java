@@ -0,0 +1,16 @@
+package com.benhouse.cache.remote;
+
+/**
+ * 远端缓存可选实现的原子比较写入，用于并发更新指示器时不丢失其他节点的更新，
+ * 例如基于Redis WATCH/MULTI或Lua脚本实现
+ * 未实现时MultiStepCacheDecorator退化为读后写
+ */
+public interface CompareAndSetCache {
+
+    /**
+     * 远端当前值与expected相同时写入update，按序列化后的内容比较
+     * @param expected 为null时表示只在key不存在时写入
+     * @return 是否写入成功
+     */
+    boolean compareAndSet(Object key, Object expected, Object update);
+}
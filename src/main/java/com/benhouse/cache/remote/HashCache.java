@@ -0,0 +1,52 @@
+package com.benhouse.cache.remote;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 远端缓存可选实现的哈希结构操作，例如基于Redis HMGET/HSET/HDEL及Lua脚本实现，
+ * 用于把多个key的指示器合并存放在同一个远端key的字段中，只读写需要的字段，不整体读写哈希结构
+ */
+public interface HashCache {
+
+    /**
+     * @return 与fields顺序一一对应的字段值，不存在的位置为null
+     */
+    List<Object> hashGet(Object key, List<?> fields);
+
+    /**
+     * 读取哈希字段，字段不存在时在同一次往返中读取valueKey，例如基于Lua脚本实现
+     * @return 字段存在时为字段值，否则为valueKey的值，都不存在时为null
+     */
+    Cache.ValueWrapper hashGetOrGet(Object key, Object field, Object valueKey);
+
+    /**
+     * 写入字段，并在同一个原子操作中删除evictKeys，例如基于Lua脚本实现
+     * @param evictKeys 字段对应的原key，与哈希结构需能在同一个原子操作中访问（如Redis Cluster下使用相同的hash tag）
+     */
+    void hashPut(Object key, Map<?, ?> entries, Collection<?> evictKeys);
+
+    /**
+     * 删除字段，并在同一个原子操作中写入values
+     * @param values 字段对应的原key及完整值
+     */
+    void hashDeleteAndPut(Object key, Collection<?> fields, Map<?, ?> values);
+
+    void hashDelete(Object key, Collection<?> fields);
+
+    /**
+     * 字段存在时比较字段，否则比较valueKey的值，与expected相同时在同一个原子操作中写入update，按序列化后的内容比较
+     * @param expected 为null时表示只在字段与valueKey都不存在时写入
+     * @param updateField 为true时update写入字段并删除valueKey，否则删除字段并把update写入valueKey
+     * @return 是否写入成功
+     */
+    boolean hashCompareAndSet(Object key, Object field, Object valueKey, Object expected, Object update, boolean updateField);
+
+    /**
+     * @return 哈希结构的所有字段，不存在时为空，用于清理过期字段
+     */
+    Map<Object, Object> hashEntries(Object key);
+}
@@ -0,0 +1,401 @@
+package com.benhouse.cache.remote;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 内存中的远端CacheManager，用于不依赖Redis的测试、基准及单机嵌入
+ * 同一个实例可以作为多个HeliosCacheManager（配置不同nodeId/nodeName模拟多个节点）的远端共享使用；
+ * 每次远端操作可以模拟网络延迟与抖动、按比例注入失败，并按操作类型计数
+ * 值按引用保存，不做序列化；compareAndSet按内容比较（byte[]按字节比较）
+ * 哈希结构保存为key对应的ConcurrentHashMap，字段全部删除后移除该key；同时涉及哈希结构与原key的操作在整个远端缓存上串行执行
+ */
+public class InMemoryRemoteCacheManager implements CacheManager {
+
+    /**
+     * 远端操作类型，每种操作计为一次往返
+     */
+    public enum Operation {
+        GET, PUT, PUT_IF_ABSENT, EVICT, CLEAR, GET_ALL, PUT_ALL, COMPARE_AND_SET, GET_COUNTER, INCREMENT_COUNTER,
+        HASH_GET, HASH_PUT, HASH_DELETE, HASH_DELETE_AND_PUT, HASH_COMPARE_AND_SET, HASH_ENTRIES
+    }
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final ConcurrentMap<String, InMemoryRemoteCache> caches = new ConcurrentHashMap<>();
+    private final Map<Operation, LongAdder> operations = new EnumMap<>(Operation.class);
+    private final LongAdder failures = new LongAdder();
+    private final Random random;
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile double failureRate;
+
+    public InMemoryRemoteCacheManager() {
+        this(new Random());
+    }
+
+    /**
+     * @param seed 抖动与失败注入使用的随机种子，单线程下结果可复现
+     */
+    public InMemoryRemoteCacheManager(long seed) {
+        this(new Random(seed));
+    }
+
+    private InMemoryRemoteCacheManager(Random random) {
+        this.random = random;
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new LongAdder());
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        InMemoryRemoteCache cache = caches.get(name);
+        return cache != null ? cache : caches.computeIfAbsent(name, InMemoryRemoteCache::new);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 每次远端操作的固定延迟，通过LockSupport.parkNanos实现，精度取决于操作系统（通常为数十微秒）
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * 在固定延迟上叠加 [0, jitter) 的随机延迟
+     */
+    public void setJitter(long jitter, TimeUnit unit) {
+        this.jitterNanos = unit.toNanos(jitter);
+    }
+
+    /**
+     * @param failureRate 0到1之间，远端操作按该比例抛出SimulatedFailureException，操作不生效
+     */
+    public void setFailureRate(double failureRate) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be between 0 and 1");
+        }
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * @return 该类型操作的次数，包括注入失败的操作
+     */
+    public long getOperationCount(Operation operation) {
+        return operations.get(operation).sum();
+    }
+
+    /**
+     * @return 所有类型操作的总次数，即远端往返次数
+     */
+    public long getRoundTrips() {
+        long total = 0;
+        for (LongAdder count : operations.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public void resetCounters() {
+        for (LongAdder count : operations.values()) {
+            count.reset();
+        }
+        failures.reset();
+    }
+
+    private void roundTrip(Operation operation) {
+        operations.get(operation).increment();
+        long delay = latencyNanos;
+        long jitter = jitterNanos;
+        double failure = failureRate;
+        if (jitter > 0 || failure > 0) {
+            synchronized (random) {
+                delay += jitter > 0 ? (long) (random.nextDouble() * jitter) : 0;
+                if (failure > 0 && random.nextDouble() < failure) {
+                    failures.increment();
+                    throw new SimulatedFailureException(operation);
+                }
+            }
+        }
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    private static Object toStore(Object value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private static Object fromStore(Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private static Cache.ValueWrapper wrap(Object stored) {
+        return stored == null ? null : new SimpleValueWrapper(fromStore(stored));
+    }
+
+    /**
+     * 注入的远端失败
+     */
+    public static class SimulatedFailureException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public SimulatedFailureException(Operation operation) {
+            super("simulated remote cache failure on " + operation);
+        }
+    }
+
+    private final class InMemoryRemoteCache implements Cache, BatchCache, RemoteCounter, CompareAndSetCache, HashCache {
+        private final String name;
+        private final ConcurrentMap<Object, Object> store = new ConcurrentHashMap<>();
+
+        private InMemoryRemoteCache(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return store;
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            roundTrip(Operation.GET);
+            return wrap(store.get(key));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Class<T> type) {
+            ValueWrapper value = get(key);
+            Object result = value == null ? null : value.get();
+            if (result != null && type != null && !type.isInstance(result)) {
+                throw new IllegalStateException("cached value is not of required type [" + type.getName() + "]: " + result);
+            }
+            return (T) result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            roundTrip(Operation.GET);
+            return (T) fromStore(store.computeIfAbsent(key, k -> {
+                try {
+                    return toStore(valueLoader.call());
+                } catch (Exception e) {
+                    throw new ValueRetrievalException(key, valueLoader, e);
+                }
+            }));
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            roundTrip(Operation.PUT);
+            store.put(key, toStore(value));
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            roundTrip(Operation.PUT_IF_ABSENT);
+            return wrap(store.putIfAbsent(key, toStore(value)));
+        }
+
+        @Override
+        public void evict(Object key) {
+            roundTrip(Operation.EVICT);
+            store.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            roundTrip(Operation.CLEAR);
+            store.clear();
+        }
+
+        @Override
+        public List<ValueWrapper> getAll(List<?> keys) {
+            roundTrip(Operation.GET_ALL);
+            List<ValueWrapper> values = new ArrayList<>(keys.size());
+            for (Object key : keys) {
+                values.add(wrap(store.get(key)));
+            }
+            return values;
+        }
+
+        @Override
+        public void putAll(Map<?, ?> entries) {
+            roundTrip(Operation.PUT_ALL);
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                store.put(entry.getKey(), toStore(entry.getValue()));
+            }
+        }
+
+        @Override
+        public boolean compareAndSet(Object key, Object expected, Object update) {
+            roundTrip(Operation.COMPARE_AND_SET);
+            if (expected == null) {
+                return store.putIfAbsent(key, toStore(update)) == null;
+            }
+            boolean[] swapped = new boolean[1];
+            store.computeIfPresent(key, (k, current) -> {
+                if (Objects.deepEquals(fromStore(current), expected)) {
+                    swapped[0] = true;
+                    return toStore(update);
+                }
+                return current;
+            });
+            return swapped[0];
+        }
+
+        @Override
+        public long getCounter(Object key) {
+            roundTrip(Operation.GET_COUNTER);
+            Object value = fromStore(store.get(key));
+            return value == null ? 0 : ((Number) value).longValue();
+        }
+
+        @Override
+        public long incrementCounter(Object key) {
+            roundTrip(Operation.INCREMENT_COUNTER);
+            return ((Number) store.merge(key, 1L, (current, one) -> {
+                Number value = (Number) fromStore(current);
+                return (value == null ? 0 : value.longValue()) + 1;
+            })).longValue();
+        }
+
+        @Override
+        public List<Object> hashGet(Object key, List<?> fields) {
+            roundTrip(Operation.HASH_GET);
+            Map<Object, Object> hash = hash(key);
+            List<Object> values = new ArrayList<>(fields.size());
+            for (Object field : fields) {
+                values.add(hash == null ? null : hash.get(field));
+            }
+            return values;
+        }
+
+        @Override
+        public ValueWrapper hashGetOrGet(Object key, Object field, Object valueKey) {
+            roundTrip(Operation.HASH_GET);
+            Map<Object, Object> hash = hash(key);
+            Object value = hash == null ? null : hash.get(field);
+            return value != null ? new SimpleValueWrapper(value) : wrap(store.get(valueKey));
+        }
+
+        @Override
+        public void hashPut(Object key, Map<?, ?> entries, Collection<?> evictKeys) {
+            roundTrip(Operation.HASH_PUT);
+            synchronized (this) {
+                store.compute(key, (k, current) -> {
+                    ConcurrentMap<Object, Object> hash = current instanceof ConcurrentHashMap ? castHash(current) : new ConcurrentHashMap<>();
+                    hash.putAll(entries);
+                    return hash;
+                });
+                store.keySet().removeAll(evictKeys);
+            }
+        }
+
+        @Override
+        public void hashDeleteAndPut(Object key, Collection<?> fields, Map<?, ?> values) {
+            roundTrip(Operation.HASH_DELETE_AND_PUT);
+            synchronized (this) {
+                deleteFields(key, fields);
+                for (Map.Entry<?, ?> entry : values.entrySet()) {
+                    store.put(entry.getKey(), toStore(entry.getValue()));
+                }
+            }
+        }
+
+        @Override
+        public void hashDelete(Object key, Collection<?> fields) {
+            roundTrip(Operation.HASH_DELETE);
+            deleteFields(key, fields);
+        }
+
+        private void deleteFields(Object key, Collection<?> fields) {
+            store.computeIfPresent(key, (k, current) -> {
+                if (!(current instanceof ConcurrentHashMap)) {
+                    return current;
+                }
+                ConcurrentMap<Object, Object> hash = castHash(current);
+                hash.keySet().removeAll(fields);
+                return hash.isEmpty() ? null : hash;
+            });
+        }
+
+        @Override
+        public boolean hashCompareAndSet(Object key, Object field, Object valueKey, Object expected, Object update, boolean updateField) {
+            roundTrip(Operation.HASH_COMPARE_AND_SET);
+            synchronized (this) {
+                Map<Object, Object> hash = hash(key);
+                Object value = hash == null ? null : hash.get(field);
+                if (value == null) {
+                    value = fromStore(store.get(valueKey));
+                }
+                if (expected == null ? value != null : !Objects.deepEquals(value, expected)) {
+                    return false;
+                }
+                if (updateField) {
+                    store.compute(key, (k, current) -> {
+                        ConcurrentMap<Object, Object> updated = current instanceof ConcurrentHashMap ? castHash(current) : new ConcurrentHashMap<>();
+                        updated.put(field, update);
+                        return updated;
+                    });
+                    store.remove(valueKey);
+                } else {
+                    deleteFields(key, Collections.singletonList(field));
+                    store.put(valueKey, toStore(update));
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public Map<Object, Object> hashEntries(Object key) {
+            roundTrip(Operation.HASH_ENTRIES);
+            Map<Object, Object> hash = hash(key);
+            return hash == null ? Collections.emptyMap() : new HashMap<>(hash);
+        }
+
+        private Map<Object, Object> hash(Object key) {
+            Object stored = store.get(key);
+            return stored instanceof ConcurrentHashMap ? castHash(stored) : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ConcurrentMap<Object, Object> castHash(Object stored) {
+            return (ConcurrentMap<Object, Object>) stored;
+        }
+    }
+}
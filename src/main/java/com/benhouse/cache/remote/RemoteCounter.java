@@ -0,0 +1,18 @@
+package com.benhouse.cache.remote;
+
+/**
+ * 远端缓存可选实现的原子计数器，例如基于Redis INCR实现，用于cache name的代际(generation)
+ * 计数器不应设置过期时间；未实现时使用CacheRemoteCounter退化为读后写
+ */
+public interface RemoteCounter {
+
+    /**
+     * @return 当前值，不存在时为0
+     */
+    long getCounter(Object key);
+
+    /**
+     * @return 加1后的值
+     */
+    long incrementCounter(Object key);
+}
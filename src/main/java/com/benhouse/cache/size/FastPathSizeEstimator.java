@@ -0,0 +1,74 @@
+package com.benhouse.cache.size;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 常见类型(String、byte[]、基本类型包装类、集合、数组)直接计算，其余类型交给delegate
+ * 集合和数组只抽样前若干个元素按比例推算，大集合的开销也是常数级
+ */
+public class FastPathSizeEstimator implements SizeEstimator {
+    private static final int SAMPLE_ELEMENTS = 8;
+    private final SizeEstimator delegate;
+
+    public FastPathSizeEstimator(SizeEstimator delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Number || value instanceof Character || value instanceof Boolean || value instanceof Enum) {
+            return 8;
+        }
+        if (value instanceof Collection) {
+            return estimateElements(((Collection<?>) value).iterator(), ((Collection<?>) value).size());
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long sampled = 0;
+            int count = 0;
+            Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+            while (count < SAMPLE_ELEMENTS && iterator.hasNext()) {
+                Map.Entry<?, ?> entry = iterator.next();
+                sampled += estimate(entry.getKey()) + estimate(entry.getValue());
+                count++;
+            }
+            return count == 0 ? 0 : sampled * map.size() / count;
+        }
+        if (value.getClass().isArray()) {
+            Class<?> componentType = value.getClass().getComponentType();
+            int length = Array.getLength(value);
+            if (componentType.isPrimitive()) {
+                return (long) length * ReflectiveSizeEstimator.primitiveSize(componentType);
+            }
+            long sampled = 0;
+            int count = Math.min(length, SAMPLE_ELEMENTS);
+            for (int i = 0; i < count; i++) {
+                sampled += estimate(Array.get(value, i));
+            }
+            return count == 0 ? 0 : sampled * length / count;
+        }
+        return delegate.estimate(value);
+    }
+
+    private long estimateElements(Iterator<?> iterator, int size) {
+        long sampled = 0;
+        int count = 0;
+        while (count < SAMPLE_ELEMENTS && iterator.hasNext()) {
+            sampled += estimate(iterator.next());
+            count++;
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+}
@@ -0,0 +1,24 @@
+package com.benhouse.cache.size;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按JSON序列化后的长度估算，结果最精确但每次都需要完整序列化，仅用于兼容旧配置
+ */
+@Slf4j
+public class JsonSizeEstimator implements SizeEstimator {
+
+    @Override
+    public long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return JSON.toJSONString(value).length();
+        } catch (Exception e) {
+            log.error("error calc size for object {}", value.getClass());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.benhouse.cache.size;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过反射遍历对象图估算大小，每个类的字段布局只解析一次并缓存
+ * shallow模式只统计对象自身的基本类型字段，deep模式沿引用遍历整个对象图（最多 maxObjects 个对象）
+ */
+public class ReflectiveSizeEstimator implements SizeEstimator {
+    private static final int REFERENCE_SIZE = 4;
+    private static final int DEFAULT_MAX_OBJECTS = 10_000;
+    private final boolean deep;
+    private final int maxObjects;
+    private final ClassValue<ClassLayout> layouts = new ClassValue<ClassLayout>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return ClassLayout.of(type);
+        }
+    };
+
+    public ReflectiveSizeEstimator(boolean deep) {
+        this(deep, DEFAULT_MAX_OBJECTS);
+    }
+
+    public ReflectiveSizeEstimator(boolean deep, int maxObjects) {
+        this.deep = deep;
+        this.maxObjects = maxObjects;
+    }
+
+    @Override
+    public long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (!deep) {
+            return shallowSize(value);
+        }
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(value);
+        long size = 0;
+        while (!pending.isEmpty() && visited.size() < maxObjects) {
+            Object current = pending.pop();
+            if (visited.put(current, Boolean.TRUE) != null) {
+                continue;
+            }
+            size += shallowSize(current);
+            pushReferences(current, pending);
+        }
+        return size;
+    }
+
+    private long shallowSize(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            int elementSize = componentType.isPrimitive() ? primitiveSize(componentType) : REFERENCE_SIZE;
+            return (long) Array.getLength(value) * elementSize;
+        }
+        return layouts.get(type).shallowSize;
+    }
+
+    private void pushReferences(Object value, Deque<Object> pending) {
+        Class<?> type = value.getClass();
+        if (value instanceof String) {
+            return;
+        }
+        if (type.isArray()) {
+            if (!type.getComponentType().isPrimitive()) {
+                for (Object element : (Object[]) value) {
+                    if (element != null) {
+                        pending.push(element);
+                    }
+                }
+            }
+            return;
+        }
+        for (Field field : layouts.get(type).referenceFields) {
+            try {
+                Object referenced = field.get(value);
+                if (referenced != null) {
+                    pending.push(referenced);
+                }
+            } catch (IllegalAccessException ignored) {
+                // 布局解析时已确认可访问
+            }
+        }
+    }
+
+    static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static class ClassLayout {
+        private final long shallowSize;
+        private final List<Field> referenceFields;
+
+        private ClassLayout(long shallowSize, List<Field> referenceFields) {
+            this.shallowSize = shallowSize;
+            this.referenceFields = referenceFields;
+        }
+
+        private static ClassLayout of(Class<?> type) {
+            long size = 0;
+            List<Field> referenceFields = new ArrayList<>();
+            boolean accessible = true;
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.getType().isPrimitive()) {
+                        size += primitiveSize(field.getType());
+                        continue;
+                    }
+                    size += REFERENCE_SIZE;
+                    if (accessible) {
+                        try {
+                            field.setAccessible(true);
+                            referenceFields.add(field);
+                        } catch (RuntimeException e) {
+                            // 高版本JDK中无法访问的模块内部类，只按自身大小计算
+                            accessible = false;
+                        }
+                    }
+                }
+            }
+            return new ClassLayout(size, accessible ? referenceFields : Collections.emptyList());
+        }
+    }
+}
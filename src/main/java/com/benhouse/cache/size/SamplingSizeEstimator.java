@@ -0,0 +1,59 @@
+package com.benhouse.cache.size;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按类记忆估算结果：每个类的前 warmupSamples 个值精确估算，之后每 sampleInterval 个值抽样一次，
+ * 其余直接返回该类的滑动平均大小，适用于同一类型的值大小相近的场景
+ */
+public class SamplingSizeEstimator implements SizeEstimator {
+    private final SizeEstimator delegate;
+    private final int warmupSamples;
+    private final int sampleInterval;
+    private final ClassValue<ClassSizeStats> stats = new ClassValue<ClassSizeStats>() {
+        @Override
+        protected ClassSizeStats computeValue(Class<?> type) {
+            return new ClassSizeStats();
+        }
+    };
+
+    public SamplingSizeEstimator(SizeEstimator delegate) {
+        this(delegate, 16, 64);
+    }
+
+    public SamplingSizeEstimator(SizeEstimator delegate, int warmupSamples, int sampleInterval) {
+        this.delegate = delegate;
+        this.warmupSamples = warmupSamples;
+        this.sampleInterval = sampleInterval;
+    }
+
+    @Override
+    public long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        ClassSizeStats classStats = stats.get(value.getClass());
+        long seen = classStats.seen.getAndIncrement();
+        if (seen < warmupSamples || seen % sampleInterval == 0) {
+            long size = delegate.estimate(value);
+            classStats.record(size);
+            return size;
+        }
+        return classStats.averageSize;
+    }
+
+    private static class ClassSizeStats {
+        private final AtomicLong seen = new AtomicLong();
+        private volatile long averageSize;
+        private volatile long samples;
+
+        /**
+         * 滑动平均，并发下的更新丢失对估算结果影响可以忽略
+         */
+        private void record(long size) {
+            long n = Math.min(samples + 1, 16);
+            averageSize = averageSize + (size - averageSize) / n;
+            samples = samples + 1;
+        }
+    }
+}
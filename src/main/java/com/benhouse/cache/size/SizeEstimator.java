@@ -0,0 +1,26 @@
+package com.benhouse.cache.size;
+
+/**
+ * 估算缓存值大小，用于本地缓存准入判断(minimumLocalKeySize)
+ * 单位为近似的数据字节数（不含对象头、引用），与原先JSON长度的量级保持一致
+ */
+public interface SizeEstimator {
+
+    long estimate(Object value);
+
+    /**
+     * @param name json / reflective / fast，为空时使用fast
+     */
+    static SizeEstimator of(String name) {
+        if (name == null || name.isEmpty() || "fast".equalsIgnoreCase(name)) {
+            return new FastPathSizeEstimator(new SamplingSizeEstimator(new ReflectiveSizeEstimator(true)));
+        }
+        if ("json".equalsIgnoreCase(name)) {
+            return new JsonSizeEstimator();
+        }
+        if ("reflective".equalsIgnoreCase(name)) {
+            return new ReflectiveSizeEstimator(true);
+        }
+        throw new IllegalArgumentException("unknown size estimator " + name);
+    }
+}
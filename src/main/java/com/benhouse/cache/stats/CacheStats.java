@@ -0,0 +1,126 @@
+package com.benhouse.cache.stats;
+
+/**
+ * 某一时刻的统计快照，各计数从启动开始累计，需要区间值时由调用方对两次快照求差
+ */
+public final class CacheStats {
+    private final String name;
+    private final long localHits;
+    private final long remoteHits;
+    private final long absentHits;
+    private final long misses;
+    private final long remoteInvalidations;
+    private final long leaseExpirations;
+    private final long leaseRevalidations;
+    private final long remoteReads;
+    private final long remoteReadP50Nanos;
+    private final long remoteReadP99Nanos;
+    private final long loads;
+    private final long loadFailures;
+    private final long totalLoadNanos;
+    private final long localAdmittedBytes;
+    private final long localEvictions;
+
+    public CacheStats(String name, long localHits, long remoteHits, long absentHits, long misses, long remoteInvalidations,
+                      long leaseExpirations, long leaseRevalidations, long remoteReads, long remoteReadP50Nanos, long remoteReadP99Nanos,
+                      long loads, long loadFailures, long totalLoadNanos, long localAdmittedBytes, long localEvictions) {
+        this.name = name;
+        this.localHits = localHits;
+        this.remoteHits = remoteHits;
+        this.absentHits = absentHits;
+        this.misses = misses;
+        this.remoteInvalidations = remoteInvalidations;
+        this.leaseExpirations = leaseExpirations;
+        this.leaseRevalidations = leaseRevalidations;
+        this.remoteReads = remoteReads;
+        this.remoteReadP50Nanos = remoteReadP50Nanos;
+        this.remoteReadP99Nanos = remoteReadP99Nanos;
+        this.loads = loads;
+        this.loadFailures = loadFailures;
+        this.totalLoadNanos = totalLoadNanos;
+        this.localAdmittedBytes = localAdmittedBytes;
+        this.localEvictions = localEvictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLocalHits() {
+        return localHits;
+    }
+
+    public long getRemoteHits() {
+        return remoteHits;
+    }
+
+    public long getAbsentHits() {
+        return absentHits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getRemoteInvalidations() {
+        return remoteInvalidations;
+    }
+
+    public long getLeaseExpirations() {
+        return leaseExpirations;
+    }
+
+    public long getLeaseRevalidations() {
+        return leaseRevalidations;
+    }
+
+    public long getRemoteReads() {
+        return remoteReads;
+    }
+
+    public long getRemoteReadP50Nanos() {
+        return remoteReadP50Nanos;
+    }
+
+    public long getRemoteReadP99Nanos() {
+        return remoteReadP99Nanos;
+    }
+
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public long getTotalLoadNanos() {
+        return totalLoadNanos;
+    }
+
+    public long getLocalAdmittedBytes() {
+        return localAdmittedBytes;
+    }
+
+    public long getLocalEvictions() {
+        return localEvictions;
+    }
+
+    /**
+     * @return 所有读取中不需要加载的比例，没有读取时为0
+     */
+    public double getHitRate() {
+        long hits = localHits + remoteHits + absentHits;
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{name=" + name + ", localHits=" + localHits + ", remoteHits=" + remoteHits + ", absentHits=" + absentHits
+                + ", misses=" + misses + ", remoteInvalidations=" + remoteInvalidations + ", leaseExpirations=" + leaseExpirations
+                + ", leaseRevalidations=" + leaseRevalidations + ", remoteReads=" + remoteReads + ", remoteReadP50Nanos=" + remoteReadP50Nanos
+                + ", remoteReadP99Nanos=" + remoteReadP99Nanos + ", loads=" + loads + ", loadFailures=" + loadFailures
+                + ", totalLoadNanos=" + totalLoadNanos + ", localAdmittedBytes=" + localAdmittedBytes + ", localEvictions=" + localEvictions + "}";
+    }
+}
@@ -0,0 +1,181 @@
+package com.benhouse.cache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个基础cache name（含所有后缀cache name）的统计计数，全部为分段计数器，记录时无锁竞争
+ */
+public final class CacheStatsCounter implements CacheStatsMXBean {
+    private final String name;
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder absentHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+    private final LongAdder leaseExpirations = new LongAdder();
+    private final LongAdder leaseRevalidations = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder localAdmittedBytes = new LongAdder();
+    private final LongAdder localEvictions = new LongAdder();
+    private final LatencyHistogram remoteReadLatency = new LatencyHistogram();
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+    public CacheStatsCounter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 本地副本命中，包括可信副本和指示器校验通过的副本
+     */
+    public void recordLocalHit() {
+        localHits.increment();
+    }
+
+    /**
+     * 未进入本地缓存的值直接从远端返回
+     */
+    public void recordRemoteHit() {
+        remoteHits.increment();
+    }
+
+    /**
+     * 远端记录值不存在，直接返回null
+     */
+    public void recordAbsentHit() {
+        absentHits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * 本地副本被其他节点的写入失效（指示器不再包含本节点，或收到失效事件）
+     */
+    public void recordRemoteInvalidation() {
+        remoteInvalidations.increment();
+    }
+
+    public void recordLeaseExpiration() {
+        leaseExpirations.increment();
+    }
+
+    public void recordLeaseRevalidation() {
+        leaseRevalidations.increment();
+    }
+
+    /**
+     * 一次远端读取（单key或批量）的往返耗时
+     */
+    public void recordRemoteRead(long nanos) {
+        remoteReadLatency.record(nanos);
+    }
+
+    public void recordLoad(long nanos, boolean success) {
+        loadLatency.record(nanos);
+        if (!success) {
+            loadFailures.increment();
+        }
+    }
+
+    public void recordLocalAdmission(long bytes) {
+        localAdmittedBytes.add(bytes);
+    }
+
+    /**
+     * 本地缓存因容量或过期被淘汰，不包括主动删除
+     */
+    public void recordLocalEviction() {
+        localEvictions.increment();
+    }
+
+    @Override
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    @Override
+    public long getRemoteHits() {
+        return remoteHits.sum();
+    }
+
+    @Override
+    public long getAbsentHits() {
+        return absentHits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getRemoteInvalidations() {
+        return remoteInvalidations.sum();
+    }
+
+    @Override
+    public long getLeaseExpirations() {
+        return leaseExpirations.sum();
+    }
+
+    @Override
+    public long getLeaseRevalidations() {
+        return leaseRevalidations.sum();
+    }
+
+    @Override
+    public long getRemoteReads() {
+        return remoteReadLatency.getCount();
+    }
+
+    @Override
+    public long getRemoteReadP50Nanos() {
+        return remoteReadLatency.percentile(0.5);
+    }
+
+    @Override
+    public long getRemoteReadP99Nanos() {
+        return remoteReadLatency.percentile(0.99);
+    }
+
+    @Override
+    public long getLoads() {
+        return loadLatency.getCount();
+    }
+
+    @Override
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public long getTotalLoadNanos() {
+        return loadLatency.getTotalNanos();
+    }
+
+    @Override
+    public long getLocalAdmittedBytes() {
+        return localAdmittedBytes.sum();
+    }
+
+    @Override
+    public long getLocalEvictions() {
+        return localEvictions.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        return snapshot().getHitRate();
+    }
+
+    public CacheStats snapshot() {
+        return new CacheStats(name, getLocalHits(), getRemoteHits(), getAbsentHits(), getMisses(), getRemoteInvalidations(),
+                getLeaseExpirations(), getLeaseRevalidations(), getRemoteReads(), getRemoteReadP50Nanos(), getRemoteReadP99Nanos(),
+                getLoads(), getLoadFailures(), getTotalLoadNanos(), getLocalAdmittedBytes(), getLocalEvictions());
+    }
+}
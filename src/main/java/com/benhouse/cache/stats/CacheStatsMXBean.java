@@ -0,0 +1,39 @@
+package com.benhouse.cache.stats;
+
+/**
+ * 通过JMX暴露的统计，每个基础cache name一个，ObjectName为 com.benhouse.cache:type=CacheStats,name=基础cache name
+ */
+public interface CacheStatsMXBean {
+
+    long getLocalHits();
+
+    long getRemoteHits();
+
+    long getAbsentHits();
+
+    long getMisses();
+
+    long getRemoteInvalidations();
+
+    long getLeaseExpirations();
+
+    long getLeaseRevalidations();
+
+    long getRemoteReads();
+
+    long getRemoteReadP50Nanos();
+
+    long getRemoteReadP99Nanos();
+
+    long getLoads();
+
+    long getLoadFailures();
+
+    long getTotalLoadNanos();
+
+    long getLocalAdmittedBytes();
+
+    long getLocalEvictions();
+
+    double getHitRate();
+}
@@ -0,0 +1,153 @@
+package com.benhouse.cache.stats;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按基础cache name汇总统计：带后缀的cache name（如 RULE:TENANT_A）计入基础名（RULE），避免每个租户产生一组统计
+ * 基础名优先使用HeliosCacheResolver解析@CacheNameSuffix时已知的注解cache name，否则取第一个分隔符之前的部分
+ * 基础名下所有cache name都退役后删除统计并注销MBean，动态cache name不会使统计无限增长
+ */
+@Slf4j
+public class CacheStatsRegistry {
+    private static final String JMX_DOMAIN = "com.benhouse.cache";
+
+    private final String separator;
+    private final boolean jmxEnabled;
+    private final ConcurrentMap<String, CacheStatsCounter> counters = new ConcurrentHashMap<>();
+    /**
+     * 当前使用统计的cache name及其基础名
+     */
+    private final Map<String, String> baseNames = new HashMap<>();
+    /**
+     * 每个基础名下当前使用统计的cache name数量
+     */
+    private final Map<String, Integer> references = new HashMap<>();
+    /**
+     * 由本实例注册到JMX的基础cache name
+     */
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param separator cache name与后缀之间的分隔符，为空时不汇总
+     */
+    public CacheStatsRegistry(String separator, boolean jmxEnabled) {
+        this.separator = separator == null ? "" : separator;
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    public CacheStatsCounter counter(String cacheName) {
+        return counter(cacheName, null);
+    }
+
+    /**
+     * cache name创建时调用，退役时需调用release
+     * @param baseName 已知的基础名，为null时按分隔符推断
+     */
+    public synchronized CacheStatsCounter counter(String cacheName, String baseName) {
+        String base = baseNames.get(cacheName);
+        if (base == null) {
+            base = baseName == null ? baseName(cacheName) : baseName;
+            baseNames.put(cacheName, base);
+            references.merge(base, 1, Integer::sum);
+        }
+        CacheStatsCounter counter = counters.get(base);
+        if (counter == null) {
+            counter = new CacheStatsCounter(base);
+            counters.put(base, counter);
+            if (jmxEnabled) {
+                register(counter);
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * cache name退役，基础名下没有其他cache name时删除统计并注销MBean
+     */
+    public synchronized void release(String cacheName) {
+        String base = baseNames.remove(cacheName);
+        if (base == null || references.merge(base, -1, Integer::sum) > 0) {
+            return;
+        }
+        references.remove(base);
+        counters.remove(base);
+        if (registered.remove(base)) {
+            unregister(base);
+        }
+    }
+
+    /**
+     * @return 基础cache name对应的统计，没有访问过时为null
+     */
+    public CacheStats snapshot(String cacheName) {
+        String base;
+        synchronized (this) {
+            base = baseNames.get(cacheName);
+        }
+        CacheStatsCounter counter = counters.get(base == null ? baseName(cacheName) : base);
+        return counter == null ? null : counter.snapshot();
+    }
+
+    /**
+     * @return 所有基础cache name的统计，按名称排序
+     */
+    public Map<String, CacheStats> snapshot() {
+        Map<String, CacheStats> snapshot = new TreeMap<>();
+        for (CacheStatsCounter counter : counters.values()) {
+            snapshot.put(counter.getName(), counter.snapshot());
+        }
+        return snapshot;
+    }
+
+    public void unregisterAll() {
+        for (String name : registered) {
+            unregister(name);
+        }
+        registered.clear();
+    }
+
+    private static void unregister(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (JMException e) {
+            log.warn("failed to unregister cache stats mbean of {}", name, e);
+        }
+    }
+
+    String baseName(String cacheName) {
+        if (separator.isEmpty()) {
+            return cacheName;
+        }
+        int index = cacheName.indexOf(separator);
+        return index < 0 ? cacheName : cacheName.substring(0, index);
+    }
+
+    private void register(CacheStatsCounter counter) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(counter.getName());
+            // 同一JVM中多个HeliosCacheManager时只注册第一个
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(counter, objectName);
+                registered.add(counter.getName());
+            }
+        } catch (JMException e) {
+            log.warn("failed to register cache stats mbean of {}", counter.getName(), e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=CacheStats,name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,63 @@
+package com.benhouse.cache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按2的幂分桶的耗时直方图，纳秒为单位，记录时只累加一个分段计数器
+ * 百分位返回所在桶的上界，误差在2倍以内，用于观察量级与长尾
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 63;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[value == 0 ? 0 : 63 - Long.numberOfLeadingZeros(value)].increment();
+        totalNanos.add(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @param quantile 0到1之间
+     * @return 该百分位所在桶的上界，没有记录时为0
+     */
+    public long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,92 @@
+package com.benhouse.cache.bus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationBusTest {
+    private static final long MAX_LAG_MILLIS = 3000;
+
+    @Test
+    void subscriberDetectsEventThePublisherFailedToSend() {
+        AtomicBoolean dropping = new AtomicBoolean();
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport() {
+            @Override
+            public void publish(InvalidationEvent event) {
+                if (dropping.get()) {
+                    throw new IllegalStateException("simulated publish failure");
+                }
+                super.publish(event);
+            }
+        };
+        InvalidationBus publisher = new InvalidationBus(transport, 1, MAX_LAG_MILLIS);
+        InvalidationBus subscriber = new InvalidationBus(transport, 2, MAX_LAG_MILLIS);
+        AtomicInteger recoveries = subscribe(subscriber);
+
+        publisher.publish(InvalidationEvent.Type.PUT, "RULE", "a");
+        dropping.set(true);
+        publisher.publish(InvalidationEvent.Type.PUT, "RULE", "b");
+        dropping.set(false);
+        publisher.publish(InvalidationEvent.Type.PUT, "RULE", "c");
+        assertTrue(subscriber.isHealthy());
+
+        // 缺失的序号超过一个心跳间隔仍未补齐
+        subscriber.checkOrigins(System.currentTimeMillis() + MAX_LAG_MILLIS / 2);
+        assertFalse(subscriber.isHealthy());
+
+        publisher.publish(InvalidationEvent.Type.HEARTBEAT, null, null);
+        assertTrue(subscriber.isHealthy());
+        assertEquals(1, recoveries.get());
+    }
+
+    @Test
+    void eventsArrivingOutOfOrderAreNotLost() {
+        InvalidationBus subscriber = new InvalidationBus(new LoopbackInvalidationTransport(), 2, MAX_LAG_MILLIS);
+        long now = System.currentTimeMillis();
+
+        subscriber.onEvent(new InvalidationEvent(InvalidationEvent.Type.PUT, "RULE", "a", 1, now, 7, 1));
+        subscriber.onEvent(new InvalidationEvent(InvalidationEvent.Type.PUT, "RULE", "c", 1, now, 7, 3));
+        subscriber.onEvent(new InvalidationEvent(InvalidationEvent.Type.PUT, "RULE", "b", 1, now, 7, 2));
+        // 重启后序号重新开始
+        subscriber.onEvent(new InvalidationEvent(InvalidationEvent.Type.PUT, "RULE", "d", 1, now, 8, 1));
+
+        subscriber.checkOrigins(now + MAX_LAG_MILLIS / 2);
+        assertTrue(subscriber.isHealthy());
+    }
+
+    @Test
+    void subscriberDetectsStalledTransport() {
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        InvalidationBus publisher = new InvalidationBus(transport, 1, MAX_LAG_MILLIS);
+        InvalidationBus subscriber = new InvalidationBus(transport, 2, MAX_LAG_MILLIS);
+        InvalidationBus leaving = new InvalidationBus(transport, 3, MAX_LAG_MILLIS);
+
+        publisher.publish(InvalidationEvent.Type.HEARTBEAT, null, null);
+        leaving.publish(InvalidationEvent.Type.HEARTBEAT, null, null);
+        leaving.close();
+        subscriber.checkOrigins(System.currentTimeMillis() + MAX_LAG_MILLIS / 2);
+        assertTrue(subscriber.isHealthy());
+
+        // 传输停滞时收不到任何心跳，已关闭的节点不再等待
+        subscriber.checkOrigins(System.currentTimeMillis() + MAX_LAG_MILLIS + 1);
+        assertFalse(subscriber.isHealthy());
+    }
+
+    private static AtomicInteger subscribe(InvalidationBus bus) {
+        AtomicInteger recoveries = new AtomicInteger();
+        bus.subscribe("RULE", new InvalidationSubscriber() {
+            @Override
+            public void onInvalidation(InvalidationEvent event) {
+            }
+
+            @Override
+            public void onBusRecovered() {
+                recoveries.incrementAndGet();
+            }
+        });
+        return recoveries;
+    }
+}
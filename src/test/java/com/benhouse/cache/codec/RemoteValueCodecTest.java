@@ -0,0 +1,49 @@
+package com.benhouse.cache.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.benhouse.cache.local.JdkValueSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteValueCodecTest {
+
+    private final RemoteValueCodec codec = new RemoteValueCodec(new CompactValueSerializer(new JdkValueSerializer()), 256);
+
+    @Test
+    void compressLargeValuesOnly() {
+        String small = "value";
+        String smallEncoded = codec.encode(small);
+        assertEquals(small, codec.decode(smallEncoded));
+        assertTrue(smallEncoded.length() < 32);
+
+        List<String> large = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            large.add("{\"tenant\":\"TENANT_A\",\"rule\":" + i + "}");
+        }
+        String largeEncoded = codec.encode(large);
+        assertEquals(large, codec.decode(largeEncoded));
+        assertTrue(largeEncoded.length() < new JdkValueSerializer().serialize(large).length / 2);
+    }
+
+    @Test
+    void passThroughValuesWrittenWithoutCodec() {
+        assertEquals("legacy", codec.decode("legacy"));
+        byte[] raw = {1, 2, 3};
+        assertSame(raw, codec.decode(raw));
+        assertFalse(RemoteValueCodec.isEncoded(raw));
+        assertArrayEquals(raw, (byte[]) codec.decode(codec.encode(raw)));
+    }
+
+    @Test
+    void encodedValuesSurviveJsonRemoteSerializers() {
+        String encoded = codec.encode("value");
+        // JSON序列化方式把byte[]读回为Base64字符串，编码后的字符串原样读回
+        Object readBack = JSON.parse(JSON.toJSONString(encoded));
+        assertTrue(RemoteValueCodec.isEncoded(readBack));
+        assertEquals("value", codec.decode(readBack));
+    }
+}
@@ -0,0 +1,59 @@
+package com.benhouse.cache.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeliosCachePropertiesTest {
+
+    @Test
+    void exactCacheNameWinsOverPrefixes() {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        CacheSpec exact = spec(10);
+        properties.setCaches(singleton("RULE:tenant", exact));
+        properties.setCachePrefixes(singleton("RULE", spec(20)));
+
+        assertSame(exact, properties.getCacheSpec("RULE:tenant"));
+    }
+
+    @Test
+    void longestMatchingPrefixWins() {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        CacheSpec shortPrefix = spec(10);
+        CacheSpec longPrefix = spec(20);
+        Map<String, CacheSpec> prefixes = new HashMap<>();
+        prefixes.put("RULE", shortPrefix);
+        prefixes.put("RULE:tenant", longPrefix);
+        prefixes.put("ORDER", spec(30));
+        properties.setCachePrefixes(prefixes);
+
+        assertSame(longPrefix, properties.getCacheSpec("RULE:tenant:1"));
+        assertSame(shortPrefix, properties.getCacheSpec("RULE:other"));
+    }
+
+    @Test
+    void unmatchedCacheNameUsesDefaultSpec() {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setCachePrefixes(singleton("RULE", spec(10)));
+
+        CacheSpec spec = properties.getCacheSpec("ORDER");
+
+        assertEquals(0, spec.getMaximumSize());
+        assertNull(spec.getEnableLocalCache());
+    }
+
+    private static CacheSpec spec(long maximumSize) {
+        CacheSpec spec = new CacheSpec();
+        spec.setMaximumSize(maximumSize);
+        return spec;
+    }
+
+    private static Map<String, CacheSpec> singleton(String name, CacheSpec spec) {
+        Map<String, CacheSpec> specs = new HashMap<>();
+        specs.put(name, spec);
+        return specs;
+    }
+}
@@ -0,0 +1,497 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.bus.LoopbackInvalidationTransport;
+import com.benhouse.cache.config.CacheSpec;
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.core.CacheLifecycleListener.RetireReason;
+import com.benhouse.cache.local.BudgetedLocalCache;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager.Operation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeliosCacheManagerTest {
+
+    @Test
+    void createEachCacheNameExactlyOnceUnderContention() throws Exception {
+        HeliosCacheManager manager = new HeliosCacheManager(new ConcurrentMapCacheManager(), new HeliosCacheProperties());
+        AtomicInteger created = new AtomicInteger();
+        manager.addLifecycleListener(new CacheLifecycleListener() {
+            @Override
+            public void onCacheCreated(String cacheName, Cache cache) {
+                created.incrementAndGet();
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Cache>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return manager.getCache("RULE_TENANT_A");
+            }));
+        }
+        start.countDown();
+        Set<Cache> caches = ConcurrentHashMap.newKeySet();
+        for (Future<Cache> future : futures) {
+            caches.add(future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, caches.size());
+        assertEquals(1, created.get());
+        assertEquals(1, manager.getCacheCount());
+    }
+
+    @Test
+    void evictWholeCacheNameSubtree() {
+        ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+        HeliosCacheManager manager = new HeliosCacheManager(remote, treeProperties(1));
+        HeliosCacheManager other = new HeliosCacheManager(remote, treeProperties(2));
+        manager.getCache("RULE:TENANT_A").put("k", "v");
+        manager.getCache("RULE:TENANT_A:COMPANY_B").put("k", "v");
+        manager.getCache("RULE:TENANT_AB").put("k", "v");
+        manager.getCache("RULE:TENANT_A:COMPANY_C").put("k", "v");
+        manager.retireCache("RULE:TENANT_A:COMPANY_C");
+        // 只在其他节点创建过的cache name
+        other.getCache("RULE:TENANT_A:COMPANY_D").put("k", "v");
+
+        manager.evictCacheTree("RULE", "TENANT_A");
+
+        assertNull(manager.getCache("RULE:TENANT_A").get("k"));
+        assertNull(manager.getCache("RULE:TENANT_A:COMPANY_B").get("k"));
+        assertEquals("v", manager.getCache("RULE:TENANT_AB").get("k").get());
+        assertNull(manager.getCache("RULE:TENANT_A:COMPANY_C").get("k"));
+        assertNull(manager.getCache("RULE:TENANT_A:COMPANY_D").get("k"));
+        assertNull(other.getCache("RULE:TENANT_A:COMPANY_D").get("k"));
+    }
+
+    @Test
+    void evictSubtreeOnOtherNodesThroughBus() {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        HeliosCacheProperties properties1 = treeProperties(1);
+        properties1.setGenerationRefreshMillis(60_000);
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, properties1, transport);
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, treeProperties(2), transport);
+        node1.getCache("RULE:TENANT_A").put("k", "v");
+        assertEquals("v", node1.getCache("RULE:TENANT_A").get("k").get());
+
+        node2.evictCacheTree("RULE");
+
+        assertNull(node1.getCache("RULE:TENANT_A").get("k"));
+        node1.shutdown();
+        node2.shutdown();
+    }
+
+    @Test
+    void rejectCacheTreeWithoutSeparatorOrGeneration() {
+        HeliosCacheManager noSeparator = new HeliosCacheManager(new ConcurrentMapCacheManager(), generationProperties(1));
+        assertThrows(IllegalStateException.class, () -> noSeparator.evictCacheTree("RULE", "TENANT_A"));
+        assertThrows(IllegalStateException.class, () -> noSeparator.getCacheTree("RULE"));
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setCacheNameSeparator(":");
+        HeliosCacheManager noGeneration = new HeliosCacheManager(new ConcurrentMapCacheManager(), properties);
+        assertThrows(IllegalStateException.class, () -> noGeneration.evictCacheTree("RULE", "TENANT_A"));
+    }
+
+    private static HeliosCacheProperties treeProperties(int nodeId) {
+        HeliosCacheProperties properties = generationProperties(nodeId);
+        properties.setCacheNameSeparator(":");
+        return properties;
+    }
+
+    @Test
+    void clearByIncrementingGeneration() {
+        ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, generationProperties(1));
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, generationProperties(2));
+        node1.getCache("RULE").put("k", "v1");
+        assertEquals("v1", node1.getCache("RULE").get("k").get());
+
+        node2.getCache("RULE").clear();
+
+        assertEquals(1L, remote.getCache(CacheGeneration.GENERATIONS_CACHE_NAME).get("RULE").get());
+        // 代际计数器不占用该cache name的key
+        assertNull(remote.getCache("RULE").get(CacheGeneration.LEGACY_GENERATION_KEY));
+        assertNull(node2.getCache("RULE").get("k"));
+        // 旧代际的远端数据没有被删除，等待TTL回收
+        assertNotNull(remote.getCache("RULE").get(new GenerationKey(0, "k")));
+        node2.getCache("RULE").put("k", "v2");
+        assertEquals("v2", node2.getCache("RULE").get("k").get());
+        node1.getCache("RULE").clear();
+        assertNull(node1.getCache("RULE").get("k"));
+        assertNull(node2.getCache("RULE").get("k"));
+    }
+
+    @Test
+    void continueFromLegacyGenerationCounter() {
+        ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+        remote.getCache("RULE").put(CacheGeneration.LEGACY_GENERATION_KEY, 5L);
+        remote.getCache("RULE").put(new GenerationKey(0, "k"), "cleared long ago");
+        HeliosCacheManager node = new HeliosCacheManager(remote, generationProperties(1));
+
+        assertNull(node.getCache("RULE").get("k"));
+        node.getCache("RULE").put("k", "v1");
+        assertNotNull(remote.getCache("RULE").get(new GenerationKey(5, "k")));
+
+        node.getCache("RULE").clear();
+
+        assertNull(node.getCache("RULE").get("k"));
+        assertEquals(1L, remote.getCache(CacheGeneration.GENERATIONS_CACHE_NAME).get("RULE").get());
+    }
+
+    @Test
+    void switchToPublishedGenerationWithoutReadingCounter() {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        HeliosCacheProperties properties1 = generationProperties(1);
+        properties1.setGenerationRefreshMillis(60_000);
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, properties1, transport);
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, generationProperties(2), transport);
+        node1.getCache("RULE").put("k", "v1");
+        assertEquals("v1", node1.getCache("RULE").get("k").get());
+
+        node2.getCache("RULE").clear();
+        remote.resetCounters();
+
+        // 刷新间隔远未到期，新的代际来自失效总线
+        assertNull(node1.getCache("RULE").get("k"));
+        assertEquals(0, remote.getOperationCount(Operation.GET_COUNTER));
+        node1.shutdown();
+        node2.shutdown();
+    }
+
+    private static HeliosCacheProperties generationProperties(int nodeId) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setGenerationClearEnabled(true);
+        properties.setGenerationRefreshMillis(0);
+        return properties;
+    }
+
+    @Test
+    void retireIdleCacheNames() throws InterruptedException {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setIdleCacheRetireSeconds(1);
+        properties.setCacheNameSeparator(":");
+        HeliosCacheManager manager = new HeliosCacheManager(new ConcurrentMapCacheManager(), properties);
+        List<RetireReason> reasons = new CopyOnWriteArrayList<>();
+        CountDownLatch retired = new CountDownLatch(1);
+        manager.addLifecycleListener(new CacheLifecycleListener() {
+            @Override
+            public void onCacheRetired(String cacheName, Cache cache, RetireReason reason) {
+                reasons.add(reason);
+                retired.countDown();
+            }
+        });
+        Cache idle = manager.getCache("RULE:TENANT_A");
+
+        assertTrue(retired.await(5, TimeUnit.SECONDS));
+        assertEquals(RetireReason.IDLE, reasons.get(0));
+        assertEquals(0, manager.getCacheCount());
+        // 退役的cache name不再留在子树索引中
+        assertTrue(manager.getCacheTree("RULE").isEmpty());
+        assertNotSame(idle, manager.getCache("RULE:TENANT_A"));
+        assertEquals(Collections.singleton("RULE:TENANT_A"), new HashSet<>(manager.getCacheTree("RULE")));
+        manager.retireCache("RULE:TENANT_A");
+        assertTrue(manager.getCacheTree("RULE").isEmpty());
+        manager.shutdown();
+    }
+
+    @Test
+    void indexCacheNameOnlyAfterCreationAndBypassLocalTierOnceRetired() {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setCacheNameSeparator(":");
+        AtomicInteger failures = new AtomicInteger();
+        HeliosCacheManager manager = new HeliosCacheManager(new ConcurrentMapCacheManager() {
+            @Override
+            public Cache getCache(String name) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("remote unavailable");
+                }
+                return super.getCache(name);
+            }
+        }, properties);
+        failures.set(1);
+
+        assertThrows(IllegalStateException.class, () -> manager.getCache("RULE:TENANT_A"));
+        assertTrue(manager.getCacheTree("RULE").isEmpty());
+
+        MultiStepCacheDecorator held = (MultiStepCacheDecorator) manager.getCache("RULE:TENANT_A");
+        manager.retireCache("RULE:TENANT_A");
+        // 调用方仍持有退役的实例，写入不再进入已脱离管理的本地缓存
+        held.put("k", "v");
+        assertNull(held.getLocalCache().get("k"));
+        assertEquals("v", held.get("k").get());
+        manager.shutdown();
+    }
+
+    @Test
+    void restoreLocalCacheFromSnapshotAfterRestart(@TempDir Path dir) {
+        ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, snapshotProperties(1, dir));
+        node1.getCache("RULE").put("kept", "v1");
+        node1.getCache("RULE").put("changed", "v1");
+        node1.shutdown();
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, snapshotProperties(2, dir));
+        node2.getCache("RULE").evict("changed");
+
+        HeliosCacheManager restarted = new HeliosCacheManager(remote, snapshotProperties(1, dir));
+
+        assertEquals("v1", restarted.getCache("RULE").get("kept", () -> "loaded").toString());
+        // 其他节点删除后远端指示器不再包含本节点，快照中的旧值不能恢复
+        assertEquals("loaded", restarted.getCache("RULE").get("changed", () -> "loaded"));
+    }
+
+    @Test
+    void skipSnapshotEntryWrittenForAnOlderIndicatorVersion(@TempDir Path dir) {
+        ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, snapshotProperties(1, dir));
+        node1.getCache("RULE").put("key", "v1");
+        node1.shutdown();
+        // 重启后本节点再次写入，未写快照就退出，远端指示器仍只对本节点有效
+        HeliosCacheManager crashed = new HeliosCacheManager(remote, snapshotProperties(1, dir));
+        crashed.getCache("RULE").put("key", "v2");
+
+        HeliosCacheManager restarted = new HeliosCacheManager(remote, snapshotProperties(1, dir));
+
+        assertEquals("loaded", restarted.getCache("RULE").get("key", () -> "loaded"));
+        crashed.shutdown();
+        restarted.shutdown();
+    }
+
+    @Test
+    void reallocateNodeIdAfterLeaseTakenOver() throws InterruptedException {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeName("first");
+        properties.setMaxNodes(2);
+        properties.setNodeIdLeaseSeconds(1);
+        properties.setEnableLocalCache(true);
+        HeliosCacheManager manager = new HeliosCacheManager(remote, properties);
+        int nodeId = manager.getNodeId();
+        MultiStepCacheDecorator cache = (MultiStepCacheDecorator) manager.getCache("RULE");
+        cache.put("key", "v1");
+        assertNotNull(cache.getLocalCache().get("key"));
+
+        // 本节点停顿超过租约，节点id被其他节点接管
+        Cache registry = remote.getCache(NodeIdAllocator.NODE_REGISTRY_CACHE_NAME);
+        registry.put(nodeId, NodeIdLease.record("10.0.0.1/other", System.currentTimeMillis() + 300_000));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getNodeId() == nodeId && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertNotEquals(nodeId, manager.getNodeId());
+        assertEquals(NodeIdAllocator.localIdentity("first"), NodeIdLease.identityOf(registry.get(manager.getNodeId()).get()));
+        assertNull(cache.getLocalCache().get("key"));
+        // 远端指示器只对旧id有效，新id需要重新加载
+        assertEquals("loaded", cache.get("key", () -> "loaded"));
+        manager.shutdown();
+    }
+
+    private static HeliosCacheProperties snapshotProperties(int nodeId, Path dir) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setSnapshotDir(dir.toString());
+        return properties;
+    }
+
+    @Test
+    void serveLocallyWhileAloneAndFallBackWhenAnotherNodeJoins() throws InterruptedException {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, topologyProperties(1));
+        awaitMode(node1, true);
+        node1.getCache("RULE").put("k", "v1");
+        remote.resetCounters();
+        assertEquals("v1", node1.getCache("RULE").get("k").get());
+        assertEquals(0, remote.getOperationCount(Operation.GET));
+
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, topologyProperties(2));
+        // 新节点启动返回前，已运行的单节点已经退回集群模式
+        assertFalse(node1.isSingleNode());
+        node2.getCache("RULE").put("k", "v2");
+
+        // 退回集群模式后重新校验远端指示器，不再直接使用单节点模式下的本地副本
+        assertEquals("v2", node1.getCache("RULE").get("k", () -> "v2"));
+        assertFalse(node2.isSingleNode());
+        node1.shutdown();
+        node2.shutdown();
+    }
+
+    @Test
+    void stayInClusterModeUntilClusterVersionIsObserved() throws InterruptedException {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        HeliosCacheProperties upgrading = topologyProperties(1);
+        upgrading.setTopologyClusterVersion(0);
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, upgrading);
+        // 滚动升级期间旧版本节点不发送心跳，没有其他节点的心跳不能说明只有本节点
+        Thread.sleep(10 * upgrading.getTopologyHeartbeatMillis());
+        assertFalse(node1.isSingleNode());
+
+        // 升级完成后其他节点提升了集群版本
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, topologyProperties(2));
+        node2.shutdown();
+        awaitMode(node1, true);
+        node1.shutdown();
+    }
+
+    @Test
+    void packIndicatorsIntoRemoteBuckets() {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        HeliosCacheManager node1 = new HeliosCacheManager(remote, bucketProperties(1));
+        HeliosCacheManager node2 = new HeliosCacheManager(remote, bucketProperties(2));
+        for (int i = 0; i < 100; i++) {
+            node1.getCache("RULE").put("k" + i, "v" + i);
+        }
+        assertEquals(4, ((Map<?, ?>) remote.getCache("RULE").getNativeCache()).size());
+
+        remote.resetCounters();
+        assertEquals("v0", node1.getCache("RULE").get("k0").get());
+        assertEquals(1, remote.getRoundTrips());
+
+        node2.getCache("RULE").evict("k1");
+        assertNull(node1.getCache("RULE").get("k1"));
+        assertEquals("v2", node1.getCache("RULE").get("k2").get());
+        node1.shutdown();
+        node2.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void buildLocalCacheFromCacheSpec() {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(1);
+        CacheSpec weighted = new CacheSpec();
+        weighted.setMaximumWeight(1024 * 1024);
+        weighted.setExpireSecondsAfterWrite(30);
+        weighted.setRefreshSecondsAfterWrite(10);
+        CacheSpec sized = new CacheSpec();
+        sized.setMaximumSize(100);
+        sized.setMaximumWeight(1024 * 1024);
+        Map<String, CacheSpec> specs = new HashMap<>();
+        specs.put("WEIGHTED", weighted);
+        specs.put("SIZED", sized);
+        properties.setCaches(specs);
+        HeliosCacheManager manager = new HeliosCacheManager(new ConcurrentMapCacheManager(), properties);
+
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> weightedCache = nativeLocalCache(manager, "WEIGHTED");
+        assertTrue(weightedCache.policy().eviction().get().isWeighted());
+        assertEquals(1024 * 1024, weightedCache.policy().eviction().get().getMaximum());
+        assertEquals(30, weightedCache.policy().expireAfterWrite().get().getExpiresAfter(TimeUnit.SECONDS));
+        assertEquals(10, weightedCache.policy().refreshAfterWrite().get().getExpiresAfter(TimeUnit.SECONDS));
+        assertTrue(weightedCache instanceof com.github.benmanes.caffeine.cache.LoadingCache);
+        // 权重按值估算的大小计算
+        weightedCache.put("k", new LocalCacheEntry("v", 4096));
+        weightedCache.cleanUp();
+        assertEquals(BudgetedLocalCache.weightOf(new LocalCacheEntry("v", 4096)),
+                weightedCache.policy().eviction().get().weightedSize().getAsLong());
+
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> sizedCache = nativeLocalCache(manager, "SIZED");
+        // maximumSize优先于maximumWeight
+        assertFalse(sizedCache.policy().eviction().get().isWeighted());
+        assertEquals(100, sizedCache.policy().eviction().get().getMaximum());
+        assertFalse(sizedCache.policy().expireAfterWrite().isPresent());
+        assertFalse(sizedCache.policy().refreshAfterWrite().isPresent());
+        manager.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeLocalCache(HeliosCacheManager manager, String name) {
+        Cache localCache = ((MultiStepCacheDecorator) manager.getCache(name)).getLocalCache();
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) localCache.getNativeCache();
+    }
+
+    @Test
+    void refreshAheadReloadsOnceAndServesOldValueMeanwhile() throws Exception {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(1);
+        CacheSpec spec = new CacheSpec();
+        spec.setRefreshAheadMillis(50);
+        properties.setCaches(Collections.singletonMap("RULE", spec));
+        HeliosCacheManager manager = new HeliosCacheManager(new ConcurrentMapCacheManager(), properties);
+        Cache cache = manager.getCache("RULE");
+        AtomicInteger reloads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> reloader = () -> {
+            reloads.incrementAndGet();
+            release.await();
+            return "v2";
+        };
+        assertEquals("v1", cache.get("k", () -> "v1"));
+        // 未到刷新阈值不重新加载
+        assertEquals("v1", cache.get("k", reloader));
+        assertEquals(0, reloads.get());
+
+        Thread.sleep(80);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> reads = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            reads.add(executor.submit(() -> cache.get("k", reloader)));
+        }
+        for (Future<String> read : reads) {
+            assertEquals("v1", read.get(5, TimeUnit.SECONDS));
+        }
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"v2".equals(cache.get("k").get()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("v2", cache.get("k").get());
+        assertEquals(1, reloads.get());
+        executor.shutdown();
+        manager.shutdown();
+    }
+
+    private static HeliosCacheProperties bucketProperties(int nodeId) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setEnableLocalCache(true);
+        CacheSpec spec = new CacheSpec();
+        spec.setIndicatorBuckets(4);
+        properties.setCaches(Collections.singletonMap("RULE", spec));
+        return properties;
+    }
+
+    private static HeliosCacheProperties topologyProperties(int nodeId) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setEnableLocalCache(true);
+        properties.setTopologyMode("auto");
+        properties.setTopologyHeartbeatMillis(20);
+        properties.setTopologyClusterVersion(1);
+        return properties;
+    }
+
+    private static void awaitMode(HeliosCacheManager manager, boolean singleNode) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.isSingleNode() != singleNode && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(singleNode, manager.isSingleNode());
+    }
+}
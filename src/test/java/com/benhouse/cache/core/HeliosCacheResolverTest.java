@@ -0,0 +1,62 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.annotation.CacheNameSuffix;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeliosCacheResolverTest {
+
+    @SuppressWarnings("unused")
+    void byTenant(@CacheNameSuffix("['tenant']") Map<String, String> query, String key) {
+    }
+
+    @SuppressWarnings("unused")
+    void byArg(String key, @CacheNameSuffix String tenant) {
+    }
+
+    @SuppressWarnings("unused")
+    void byTenantAndCompany(@CacheNameSuffix String tenant, String key, @CacheNameSuffix String company) {
+    }
+
+    @Test
+    void joinMultipleSuffixesInParameterOrder() throws NoSuchMethodException {
+        HeliosCacheResolver resolver = new HeliosCacheResolver(new ConcurrentMapCacheManager(), ":");
+        HeliosCacheResolver.ResolutionPlan plan = resolver.getPlan(
+                getClass().getDeclaredMethod("byTenantAndCompany", String.class, String.class, String.class));
+
+        assertEquals("RULE:TENANT_A:COMPANY_B", plan.cacheName("RULE", plan.suffix(new Object[]{"TENANT_A", "k", "COMPANY_B"})));
+    }
+
+    @Test
+    void planIsBuiltOnceAndSuffixedNamesAreReused() throws NoSuchMethodException {
+        HeliosCacheResolver resolver = new HeliosCacheResolver(new ConcurrentMapCacheManager());
+        Method method = getClass().getDeclaredMethod("byTenant", Map.class, String.class);
+        HeliosCacheResolver.ResolutionPlan plan = resolver.getPlan(method);
+        assertSame(plan, resolver.getPlan(method));
+
+        for (int i = 0; i < 200; i++) {
+            String suffix = plan.suffix(new Object[]{Collections.singletonMap("tenant", "A"), "k"});
+            assertEquals("RULE_A", plan.cacheName("RULE_", suffix));
+            assertSame(plan.cacheName("RULE_", suffix), plan.cacheName("RULE_", suffix));
+        }
+        assertEquals("RULE_A", plan.cacheName("RULE_", "A"));
+    }
+
+    @Test
+    void useArgumentValueWithoutSpel() throws NoSuchMethodException {
+        HeliosCacheResolver resolver = new HeliosCacheResolver(new ConcurrentMapCacheManager());
+        HeliosCacheResolver.ResolutionPlan plan = resolver.getPlan(getClass().getDeclaredMethod("byArg", String.class, String.class));
+
+        assertEquals("B", plan.suffix(new Object[]{"k", "B"}));
+        assertThrows(RuntimeException.class, () -> plan.suffix(new Object[]{"k", null}));
+
+        HeliosCacheResolver.ResolutionPlan noSuffix = resolver.getPlan(getClass().getDeclaredMethod("useArgumentValueWithoutSpel"));
+        assertEquals("RULE", noSuffix.cacheName("RULE", noSuffix.suffix(new Object[0])));
+    }
+}
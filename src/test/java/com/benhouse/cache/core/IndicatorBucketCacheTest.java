@@ -0,0 +1,186 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.config.CacheSpec;
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.remote.CompareAndSetCache;
+import com.benhouse.cache.remote.HashCache;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndicatorBucketCacheTest {
+
+    @Test
+    void keepIndicatorsInBucketsAndValuesUnderOriginalKeys() {
+        InMemoryRemoteCacheManager remoteManager = new InMemoryRemoteCacheManager();
+        Cache remote = remoteManager.getCache("RULE");
+        IndicatorBucketCache cache = new IndicatorBucketCache(remote, 2, 0);
+        String indicator = CacheIndicator.refreshedBy(null, 1, 64).toRemote();
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, indicator);
+        }
+        cache.put("value", "v");
+        assertEquals(3, ((Map<?, ?>) remote.getNativeCache()).size());
+
+        remoteManager.resetCounters();
+        assertEquals(indicator, cache.get("k3").get());
+        assertEquals("v", cache.get("value").get());
+        assertNull(cache.get("missing"));
+        assertEquals(3, remoteManager.getRoundTrips());
+
+        // 远端读到完整值时比较写入指示器，成功后原key上的值被删除
+        String next = CacheIndicator.refreshedBy(CacheIndicator.from(indicator), 2, 64).toRemote();
+        assertTrue(cache.compareAndSet("value", "v", next));
+        assertFalse(cache.compareAndSet("value", "v", next));
+        assertEquals(next, cache.get("value").get());
+        assertFalse(((Map<?, ?>) remote.getNativeCache()).containsKey("value"));
+
+        cache.evict("k3");
+        cache.put("k4", "full");
+        List<Cache.ValueWrapper> values = cache.getAll(Arrays.asList("k3", "k4", "k5", new GenerationKey(1, "k5")));
+        assertNull(values.get(0));
+        assertEquals("full", values.get(1).get());
+        assertEquals(indicator, values.get(2).get());
+        assertNull(values.get(3));
+    }
+
+    @Test
+    void compareAndSetChecksBothBucketFieldAndOriginalKey() {
+        InMemoryRemoteCacheManager remoteManager = new InMemoryRemoteCacheManager();
+        Cache remote = remoteManager.getCache("RULE");
+        IndicatorBucketCache cache = new IndicatorBucketCache(remote, 1, 0);
+        String indicator = CacheIndicator.refreshedBy(null, 1, 64).toRemote();
+        cache.put("k", "v1");
+        // 读到v1后其他节点写入了v2，不能再基于v1提升
+        cache.put("k", "v2");
+        assertFalse(cache.compareAndSet("k", "v1", indicator));
+        assertEquals("v2", cache.get("k").get());
+
+        // 原key上有完整值时不能当作不存在写入指示器，反之亦然
+        assertFalse(cache.compareAndSet("k", null, indicator));
+        assertEquals("v2", cache.putIfAbsent("k", indicator).get());
+        cache.put("other", indicator);
+        assertEquals(indicator, cache.putIfAbsent("other", "full").get());
+        assertFalse(((Map<?, ?>) remote.getNativeCache()).containsKey("other"));
+
+        // 写入完整值与写入指示器都只保留一处
+        cache.putAll(Collections.singletonMap("other", "full"));
+        assertEquals("full", cache.get("other").get());
+        assertNull(((HashCache) remote).hashGet("&INDB&0", Collections.singletonList("other")).get(0));
+        cache.putAll(Collections.singletonMap("other", indicator));
+        assertFalse(((Map<?, ?>) remote.getNativeCache()).containsKey("other"));
+    }
+
+    @Test
+    void sweepBucketFieldsNotRefreshedWithinTtl() throws InterruptedException {
+        InMemoryRemoteCacheManager remoteManager = new InMemoryRemoteCacheManager();
+        Cache remote = remoteManager.getCache("RULE");
+        IndicatorBucketCache cache = new IndicatorBucketCache(remote, 1, 50);
+        cache.put("expired", CacheIndicator.refreshedBy(null, 1, 64).toRemote());
+        Thread.sleep(100);
+
+        cache.put("fresh", CacheIndicator.refreshedBy(null, 1, 64).toRemote());
+
+        Map<Object, Object> fields = ((HashCache) remote).hashEntries("&INDB&0");
+        assertEquals(Collections.singleton("fresh"), fields.keySet());
+    }
+
+    @Test
+    void concurrentJoinsOnSharedBucketAreNotLost() throws Exception {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        List<HeliosCacheManager> nodes = new ArrayList<>();
+        for (int nodeId = 1; nodeId <= 4; nodeId++) {
+            nodes.add(new HeliosCacheManager(remote, bucketProperties(nodeId)));
+        }
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            keys.add("k" + i);
+            nodes.get(0).getCache("RULE").put("k" + i, "v" + i);
+        }
+
+        // 其他节点同时加载并追加到同一个桶中，每次追加都是桶字段上的比较写入
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (HeliosCacheManager node : nodes.subList(1, nodes.size())) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (Object key : keys) {
+                    node.getCache("RULE").get(key, () -> "v" + key.toString().substring(1));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Object> indicators = ((HashCache) remote.getCache("RULE")).hashGet("&INDB&0", keys);
+        for (Object indicator : indicators) {
+            for (int nodeId = 1; nodeId <= 4; nodeId++) {
+                assertTrue(CacheIndicator.isValidFor(indicator, nodeId));
+            }
+        }
+        assertEquals(1, ((Map<?, ?>) remote.getCache("RULE").getNativeCache()).size());
+        for (HeliosCacheManager node : nodes) {
+            node.shutdown();
+        }
+    }
+
+    @Test
+    void keepPerKeyIndicatorsWithoutHashCache() {
+        assertThrows(IllegalArgumentException.class, () -> new IndicatorBucketCache(new CompareAndSetMapCache(), 2, 0));
+
+        ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager() {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                return new CompareAndSetMapCache();
+            }
+        };
+        HeliosCacheManager manager = new HeliosCacheManager(remote, bucketProperties(1));
+        manager.getCache("RULE").put("k", "v");
+        assertTrue(CacheIndicator.isIndicator(remote.getCache("RULE").get("k").get()));
+        assertEquals("v", manager.getCache("RULE").get("k").get());
+    }
+
+    private static HeliosCacheProperties bucketProperties(int nodeId) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setEnableLocalCache(true);
+        CacheSpec spec = new CacheSpec();
+        spec.setIndicatorBuckets(1);
+        properties.setCaches(Collections.singletonMap("RULE", spec));
+        return properties;
+    }
+
+    private static class CompareAndSetMapCache extends ConcurrentMapCache implements CompareAndSetCache {
+
+        CompareAndSetMapCache() {
+            super("RULE");
+        }
+
+        @Override
+        public boolean compareAndSet(Object key, Object expected, Object update) {
+            if (expected == null) {
+                return getNativeCache().putIfAbsent(key, update) == null;
+            }
+            return getNativeCache().replace(key, expected, update);
+        }
+    }
+}
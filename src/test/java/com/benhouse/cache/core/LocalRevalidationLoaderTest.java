@@ -0,0 +1,61 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalRevalidationLoaderTest {
+    private static final int NODE_ID = 3;
+    private static final int OTHER_NODE_ID = 12;
+
+    private final Cache remoteCache = new ConcurrentMapCache("RULE");
+    private final AtomicLong ticker = new AtomicLong();
+    private final LoadingCache<Object, Object> localCache = Caffeine.newBuilder()
+            .refreshAfterWrite(1, TimeUnit.MINUTES)
+            .executor(Runnable::run)
+            .ticker(ticker::get)
+            .build(new LocalRevalidationLoader(remoteCache, new HeliosCacheContext(new HeliosCacheProperties(), NODE_ID), null));
+
+    @Test
+    void keepEntryWhileIndicatorIsStillValidForThisNode() {
+        LocalCacheEntry entry = new LocalCacheEntry("value");
+        localCache.put("key", entry);
+        remoteCache.put("key", CacheIndicator.refreshedBy(null, NODE_ID, 256).toRemote());
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        localCache.get("key");
+
+        assertSame(entry, localCache.getIfPresent("key"));
+    }
+
+    @Test
+    void dropEntryOnceAnotherNodeRewroteTheKey() {
+        LocalCacheEntry entry = new LocalCacheEntry("value");
+        localCache.put("key", entry);
+        remoteCache.put("key", CacheIndicator.refreshedBy(null, OTHER_NODE_ID, 256).toRemote());
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        // 刷新期间仍返回旧条目，重新校验后移除
+        assertSame(entry, localCache.get("key"));
+
+        assertNull(localCache.getIfPresent("key"));
+    }
+
+    @Test
+    void dropEntryWhenRemoteKeyIsGone() {
+        localCache.put("key", new LocalCacheEntry("value"));
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        localCache.get("key");
+
+        assertNull(localCache.getIfPresent("key"));
+    }
+}
@@ -2,14 +2,45 @@ package com.benhouse.cache.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.alibaba.fastjson.JSON;
+import com.benhouse.cache.bus.InvalidationBus;
+import com.benhouse.cache.bus.InvalidationEvent;
+import com.benhouse.cache.bus.LoopbackInvalidationTransport;
+import com.benhouse.cache.codec.CompactValueSerializer;
+import com.benhouse.cache.codec.RemoteValueCodec;
+import com.benhouse.cache.config.CacheSpec;
 import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.local.JdkValueSerializer;
+import com.benhouse.cache.local.OffHeapCache;
+import com.benhouse.cache.remote.BatchCache;
+import com.benhouse.cache.remote.CompareAndSetCache;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+import com.benhouse.cache.stats.CacheStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.cache.support.SimpleValueWrapper;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
@@ -21,6 +52,8 @@ class MultiStepCacheDecoratorTest {
     private HeliosCacheProperties heliosCacheProperties;
 
     private MultiStepCacheDecorator multiStepCacheDecorator;
+    private static final int NODE_ID = 3;
+    private static final int OTHER_NODE_ID = 12;
 
 
     @BeforeEach
@@ -28,17 +61,16 @@ class MultiStepCacheDecoratorTest {
         remoteCache = mock(Cache.class);
         localCache = mock(Cache.class);
         heliosCacheProperties = mock(HeliosCacheProperties.class);
-        multiStepCacheDecorator = new MultiStepCacheDecorator(remoteCache, localCache, heliosCacheProperties);
-        when(localCache.get(anyString())).thenReturn(new SimpleValueWrapper("local cache value"));
-        when(localCache.get(anyString(), eq(String.class))).thenReturn("local cache value");
+        when(heliosCacheProperties.getMaxNodes()).thenReturn(256);
+        multiStepCacheDecorator = new MultiStepCacheDecorator(remoteCache, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        when(localCache.get(anyString())).thenReturn(new SimpleValueWrapper(new LocalCacheEntry("local cache value")));
 
     }
 
 
     @Test
     void getValidLocalCache() {
-        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper("&IND&128"));
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn("&IND&128");
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(indicator(NODE_ID)));
 
 
         Cache.ValueWrapper valueWrapper = multiStepCacheDecorator.get("a");
@@ -46,22 +78,17 @@ class MultiStepCacheDecoratorTest {
 
         assertEquals("local cache value", valueWrapper.get());
         assertEquals("local cache value", value);
-        verify(remoteCache, times(1)).get(anyString());
-        verify(remoteCache, times(1)).get(anyString(), eq(String.class));
-        verify(localCache, times(1)).get(anyString());
-        verify(localCache, times(1)).get(anyString(), eq(String.class));
+        verify(remoteCache, times(2)).get(anyString());
+        verify(localCache, times(2)).get(anyString());
     }
 
     @Test
     void getWhenLocalInvalid() {
-        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper("&IND&129"));
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn("&IND&129");
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(indicator(OTHER_NODE_ID)));
 
         Cache.ValueWrapper valueWrapper = multiStepCacheDecorator.get("a");
         String value = multiStepCacheDecorator.get("a", String.class);
-        verify(remoteCache, times(1)).get(anyString(), eq(String.class));
-        verify(remoteCache, times(1)).get(anyString());
-        verify(localCache, times(0)).get(anyString(), eq(String.class));
+        verify(remoteCache, times(2)).get(anyString());
         verify(localCache, times(0)).get(anyString());
 
         assertEquals(null, valueWrapper);
@@ -72,15 +99,13 @@ class MultiStepCacheDecoratorTest {
     @Test
     void getWhenRemoteCacheIsReal() {
         when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper("real remote value"));
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn("real remote value");
 
         Cache.ValueWrapper valueWrapper = multiStepCacheDecorator.get("key");
         String value = multiStepCacheDecorator.get("key", String.class);
 
 
         verify(localCache, times(0)).get(anyString());
-        verify(remoteCache, times(1)).get(anyString());
-        verify(remoteCache, times(1)).get(anyString(), eq(String.class));
+        verify(remoteCache, times(2)).get(anyString());
         assertEquals("real remote value", valueWrapper.get());
         assertEquals("real remote value", value);
     }
@@ -106,25 +131,27 @@ class MultiStepCacheDecoratorTest {
 
         multiStepCacheDecorator.put("key", "value length greater than 10");
 
-        verify(remoteCache, times(1)).get("key", String.class);
-        verify(localCache, times(1)).put("key", "value length greater than 10");
-        verify(remoteCache, times(1)).put("key", "&IND&128;");
+        verify(remoteCache, times(1)).get("key");
+        verify(localCache, times(1)).put(eq("key"), localEntry("value length greater than 10"));
+        verify(remoteCache, times(1)).put(eq("key"), freshIndicator(NODE_ID));
     }
 
     @Test
     void putWhenObjectIsCacheLocallyAndShouldCachUpRemoteCacheIndicator() {
         when(heliosCacheProperties.getMinimumLocalKeySize()).thenReturn(10);
         when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn("&IND&129;");
+        String other = indicator(OTHER_NODE_ID);
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(other));
 
         multiStepCacheDecorator.put("key", "value length greater than 10");
         multiStepCacheDecorator.putIfAbsent("key", "value length greater than 10");
 
-        verify(remoteCache, times(2)).get("key", String.class);
-        verify(localCache, times(1)).put("key", "value length greater than 10");
-        verify(localCache, times(1)).putIfAbsent("key", "value length greater than 10");
+        verify(remoteCache, times(2)).get("key");
+        // 远端指示器仍不包含本节点，本地副本不能视为已存在
+        verify(localCache, times(2)).put(eq("key"), localEntry("value length greater than 10"));
 
-        verify(remoteCache, times(2)).put("key", "&IND&129;128;");
+        String caughtUp = CacheIndicator.from(other).joinedBy(NODE_ID).toRemote();
+        verify(remoteCache, times(2)).put(eq("key"), eq(caughtUp));
 
     }
 
@@ -133,7 +160,6 @@ class MultiStepCacheDecoratorTest {
         when(heliosCacheProperties.getMinimumLocalKeySize()).thenReturn(100);
         when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
         when(remoteCache.get(anyString())).thenReturn(null);
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn("&IND&129;");
 
         multiStepCacheDecorator.put("key", "value length greater than 10");
 
@@ -147,12 +173,12 @@ class MultiStepCacheDecoratorTest {
         when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("LOCAL");
         when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
         when(remoteCache.getName()).thenReturn("LOCAL:BENHOUSE");
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn(null);
+        when(remoteCache.get(anyString())).thenReturn(null);
 
         multiStepCacheDecorator.put("key", "value length greater than 10");
 
-        verify(localCache, times(1)).put("key", "value length greater than 10");
-        verify(remoteCache, times(1)).put("key", "&IND&128;");
+        verify(localCache, times(1)).put(eq("key"), localEntry("value length greater than 10"));
+        verify(remoteCache, times(1)).put(eq("key"), freshIndicator(NODE_ID));
 
     }
 
@@ -161,7 +187,7 @@ class MultiStepCacheDecoratorTest {
         when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("LOCAL");
         when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
         when(remoteCache.getName()).thenReturn("OOLOCAL:BENHOUSE");
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn(null);
+        when(remoteCache.get(anyString())).thenReturn(null);
 
         multiStepCacheDecorator.put("key", "value length greater than 10");
 
@@ -175,12 +201,629 @@ class MultiStepCacheDecoratorTest {
         when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("LOCAL");
         when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
         when(remoteCache.getName()).thenReturn("LOCAL:BENHOUSE");
-        when(remoteCache.get(anyString(), eq(String.class))).thenReturn("xxx");
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper("xxx"));
 
         multiStepCacheDecorator.put("key", "value length greater than 10");
 
-        verify(localCache, times(1)).put("key", "value length greater than 10");
-        verify(remoteCache, times(1)).put("key", "&IND&xxx128;");
+        verify(localCache, times(1)).put(eq("key"), localEntry("value length greater than 10"));
+        verify(remoteCache, times(1)).put(eq("key"), freshIndicator(NODE_ID));
+    }
+
+    @Test
+    void getWhenNodeIdIsSubstringOfAnotherNode() {
+        // 旧格式下 "12" 会被误判为包含在 "128" 中
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(indicator(OTHER_NODE_ID * 10 + NODE_ID)));
+
+        assertNull(multiStepCacheDecorator.get("a"));
+        verify(localCache, times(0)).get(anyString());
+    }
+
+    @Test
+    void getWhenRemoteIndicatorIsLegacyFormat() {
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper("&IND&3;"));
+
+        assertNull(multiStepCacheDecorator.get("a"));
+        verify(localCache, times(0)).get(anyString());
+    }
+
+    @Test
+    void indicatorSizeDoesNotGrowWithValidNodes() {
+        CacheIndicator indicator = CacheIndicator.refreshedBy(null, 0, 256);
+        int size = indicator.toRemote().length();
+        for (int i = 1; i < 256; i++) {
+            indicator = indicator.joinedBy(i);
+        }
+        assertEquals(size, indicator.toRemote().length());
+        long version = CacheIndicator.refreshedBy(null, 0, 256).getVersion();
+        assertTrue(indicator.getVersion() <= version && indicator.getVersion() > 0);
+        assertTrue(CacheIndicator.isValidFor(indicator.toRemote(), 255));
+        assertTrue(CacheIndicator.refreshedBy(indicator, 7, 256).getVersion() > indicator.getVersion());
+        assertFalse(CacheIndicator.refreshedBy(indicator, 7, 256).isValidFor(255));
+    }
+
+    @Test
+    void getFromLocalWithoutRemoteWhenInvalidationBusHealthy() {
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        MultiStepCacheDecorator decorator = decoratorWithBus(transport);
+
+        assertEquals("local cache value", decorator.get("a").get());
+        verify(remoteCache, times(0)).get(any());
+
+        transport.setConnected(false);
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(indicator(OTHER_NODE_ID)));
+        assertNull(decorator.get("a"));
+        verify(remoteCache, times(1)).get("a");
+
+        transport.setConnected(true);
+        verify(localCache, times(1)).clear();
+    }
+
+    @Test
+    void evictLocalWhenOtherNodePublishes() {
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        decoratorWithBus(transport);
+        when(remoteCache.getName()).thenReturn("cache");
+
+        transport.publish(new InvalidationEvent(InvalidationEvent.Type.PUT, "cache", "a", OTHER_NODE_ID));
+        transport.publish(new InvalidationEvent(InvalidationEvent.Type.PUT, "cache", "b", NODE_ID));
+
+        verify(localCache, times(1)).evict("a");
+        verify(localCache, times(0)).evict("b");
+    }
+
+    private MultiStepCacheDecorator decoratorWithBus(LoopbackInvalidationTransport transport) {
+        HeliosCacheContext context = new HeliosCacheContext(heliosCacheProperties, NODE_ID);
+        context.setInvalidationBus(new InvalidationBus(transport, NODE_ID, 1000));
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remoteCache, localCache, new CacheSpec(), context);
+        context.getInvalidationBus().subscribe("cache", decorator);
+        return decorator;
+    }
+
+    @Test
+    void getWithinLeaseSkipsRemoteIndicator() {
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setLeaseMillis(60_000);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remoteCache, localCache, cacheSpec, new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(indicator(NODE_ID)));
+
+        // 首次读取没有租约，需要校验远端指示器
+        assertEquals("local cache value", decorator.get("a").get());
+        assertEquals("local cache value", decorator.get("a").get());
+        assertEquals("local cache value", decorator.get("a", String.class));
+
+        verify(remoteCache, times(1)).get("a");
+        assertEquals(1, decorator.getLeaseExpirations());
+        assertEquals(1, decorator.getLeaseRevalidations());
+    }
+
+    @Test
+    void getWhenLeaseExpiredRevalidates() {
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setLeaseMillis(1);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remoteCache, localCache, cacheSpec, new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        LocalCacheEntry entry = new LocalCacheEntry("local cache value");
+        entry.renewLease(-1);
+        when(localCache.get("a")).thenReturn(new SimpleValueWrapper(entry));
+        when(remoteCache.get(anyString())).thenReturn(new SimpleValueWrapper(indicator(OTHER_NODE_ID)));
+
+        assertNull(decorator.get("a"));
+        verify(remoteCache, times(1)).get("a");
+        assertEquals(1, decorator.getLeaseExpirations());
+        assertEquals(0, decorator.getLeaseRevalidations());
+    }
+
+    @Test
+    void concurrentLoadsShareOneLoaderAndNeverWriteValueRemotely() throws Exception {
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(localCache.get(anyString())).thenReturn(null);
+        when(remoteCache.get(anyString())).thenReturn(null);
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return multiStepCacheDecorator.get("key", () -> {
+                    loaderCalls.incrementAndGet();
+                    Thread.sleep(300);
+                    return "loaded value";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertEquals("loaded value", result.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, loaderCalls.get());
+        verify(localCache, times(1)).put(eq("key"), localEntry("loaded value"));
+        verify(remoteCache, times(1)).put(eq("key"), freshIndicator(NODE_ID));
+        verify(remoteCache, times(0)).put("key", "loaded value");
+    }
+
+    @Test
+    void loaderFailureIsWrapped() {
+        when(remoteCache.get(anyString())).thenReturn(null);
+
+        assertThrows(Cache.ValueRetrievalException.class, () -> multiStepCacheDecorator.get("key", () -> {
+            throw new IllegalStateException("db down");
+        }));
+        verify(remoteCache, times(0)).put(any(), any());
+    }
+
+    @Test
+    void recursiveLoadOfSameKeyFailsInsteadOfWaitingForItself() {
+        when(remoteCache.get(anyString())).thenReturn(null);
+
+        Cache.ValueRetrievalException e = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(Cache.ValueRetrievalException.class,
+                () -> multiStepCacheDecorator.get("key", () -> multiStepCacheDecorator.get("key", () -> "inner"))));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        // 失败的加载不会留下等待中的结果
+        assertEquals("value", multiStepCacheDecorator.get("key", () -> "value"));
+    }
+
+    @Test
+    void getAllFetchesIndicatorsInOneBatchAndLoadsMissesTogether() {
+        Cache batchRemoteCache = mock(Cache.class, withSettings().extraInterfaces(BatchCache.class));
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(batchRemoteCache, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        when(((BatchCache) batchRemoteCache).getAll(Arrays.asList("a", "b", "c"))).thenReturn(Arrays.asList(
+                new SimpleValueWrapper(indicator(NODE_ID)),
+                new SimpleValueWrapper("remote value"),
+                new SimpleValueWrapper(indicator(OTHER_NODE_ID))));
+        List<Collection<String>> loadedKeys = new ArrayList<>();
+
+        Map<String, Object> values = decorator.getAll(Arrays.asList("a", "b", "c"), misses -> {
+            loadedKeys.add(misses);
+            return Collections.singletonMap("c", "loaded value");
+        });
+
+        assertEquals("local cache value", values.get("a"));
+        assertEquals("remote value", values.get("b"));
+        assertEquals("loaded value", values.get("c"));
+        assertEquals(Collections.singletonList(Collections.singletonList("c")), loadedKeys);
+        verify(batchRemoteCache, times(0)).get(any());
+        verify((BatchCache) batchRemoteCache, times(1)).putAll(Collections.singletonMap("c", "loaded value"));
+    }
+
+    @Test
+    void putRetriesIndicatorCompareAndSetInsteadOfOverwriting() {
+        Cache casRemoteCache = mock(Cache.class, withSettings().extraInterfaces(CompareAndSetCache.class));
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(casRemoteCache, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        String otherNode = indicator(OTHER_NODE_ID);
+        when(casRemoteCache.get("key")).thenReturn(null, new SimpleValueWrapper(otherNode));
+        when(((CompareAndSetCache) casRemoteCache).compareAndSet(eq("key"), isNull(), any())).thenReturn(false);
+        when(((CompareAndSetCache) casRemoteCache).compareAndSet(eq("key"), eq(otherNode), any())).thenReturn(true);
+
+        decorator.put("key", "value");
+
+        // 第二次基于其他节点写入的指示器追加本节点，而不是覆盖
+        verify((CompareAndSetCache) casRemoteCache).compareAndSet(eq("key"), eq(otherNode),
+                eq(CacheIndicator.from(otherNode).joinedBy(NODE_ID).toRemote()));
+        verify(casRemoteCache, times(0)).put(any(), any());
+    }
+
+    @Test
+    void giveUpLocalCopyWhenIndicatorCompareAndSetKeepsFailing() {
+        Cache casRemoteCache = mock(Cache.class, withSettings().extraInterfaces(CompareAndSetCache.class));
+        Cache local = new ConcurrentMapCache("local");
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(casRemoteCache, local, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(casRemoteCache.get("key")).thenReturn(new SimpleValueWrapper(indicator(OTHER_NODE_ID)));
+        when(((CompareAndSetCache) casRemoteCache).compareAndSet(any(), any(), any())).thenReturn(false);
+
+        decorator.put("key", "value");
+
+        // 不基于旧指示器覆盖，删除远端指示器，本地不保留副本
+        verify(casRemoteCache, times(0)).put(any(), any());
+        verify(casRemoteCache).evict("key");
+        assertNull(local.get("key"));
+    }
+
+    @Test
+    void coalesceIndicatorWritesWithinFlushWindow() {
+        Cache remote = spy(new ConcurrentMapCache("remote"));
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(heliosCacheProperties.getIndicatorFlushMillis()).thenReturn(60_000L);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("local"), new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+
+        decorator.put("key", "v1");
+        decorator.put("key", "v2");
+
+        assertEquals("v2", decorator.get("key").get());
+        verify(remote, times(0)).put(any(), any());
+        verify(remote, times(0)).get(any());
+
+        decorator.flushIndicators();
+
+        verify(remote, times(1)).put(eq("key"), freshIndicator(NODE_ID));
+        assertEquals("v2", decorator.get("key").get());
+    }
+
+    @Test
+    void putIfAbsentOverwritesLocalCopyInvalidatedByOtherNode() {
+        Cache remote = new ConcurrentMapCache("remote");
+        Cache local = new ConcurrentMapCache("local");
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, local, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        decorator.put("key", "v1");
+        // 其他节点写入了新值，本节点的本地副本失效但仍在本地缓存中
+        remote.put("key", CacheIndicator.refreshedBy(CacheIndicator.from(remote.get("key").get()), OTHER_NODE_ID, 256).toRemote());
+
+        assertNull(decorator.putIfAbsent("key", "v2"));
+        assertEquals("v2", decorator.get("key").get());
+        assertEquals("v2", decorator.putIfAbsent("key", "v3").get());
+
+        // 合并写入指示器时同样不能把旧副本当作已存在
+        when(heliosCacheProperties.getIndicatorFlushMillis()).thenReturn(60_000L);
+        MultiStepCacheDecorator coalescing = new MultiStepCacheDecorator(remote, local, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        remote.put("key", CacheIndicator.refreshedBy(CacheIndicator.from(remote.get("key").get()), OTHER_NODE_ID, 256).toRemote());
+
+        assertNull(coalescing.putIfAbsent("key", "v4"));
+        assertEquals("v4", coalescing.get("key").get());
+        assertTrue(CacheIndicator.from(remote.get("key").get()).isValidFor(NODE_ID));
+    }
+
+    @Test
+    void valueRejectedByLocalTierReplacesIndicatorWithRemoteValue() {
+        Cache remote = new ConcurrentMapCache("remote");
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        OffHeapCache local = new OffHeapCache("local", new JdkValueSerializer(), 4 * 1024, 1024);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, local, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        String large = new String(new char[2048]).replace('\0', 'x');
+
+        decorator.put("key", "small");
+        decorator.put("key", large);
+
+        // 超过slab大小的值没有本地副本，远端不能仍为本节点置位
+        assertFalse(CacheIndicator.isIndicator(remote.get("key").get()));
+        assertEquals(large, decorator.get("key").get());
+        assertEquals(0, local.getEntryCount());
+    }
+
+    @Test
+    void getAllServesPendingWritesAndRecordsAbsentValues() {
+        Cache remote = spy(new ConcurrentMapCache("remote"));
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(heliosCacheProperties.getIndicatorFlushMillis()).thenReturn(60_000L);
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setNegativeCacheMillis(60_000);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("local"), cacheSpec, new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+
+        decorator.put("pending", "v1");
+        assertEquals(Collections.singletonMap("pending", "v1"), decorator.getAll(Collections.singletonList("pending")));
+        verify(remote, times(0)).get(any());
+
+        decorator.putAll(Collections.singletonMap("null", null));
+        Map<String, String> loaded = decorator.getAll(Arrays.asList("null", "missing"), misses -> Collections.emptyMap());
+        assertTrue(loaded.containsKey("null"));
+        assertNull(loaded.get("null"));
+        // 批量加载没有返回的key与单个key加载为null时一样记录为不存在
+        assertTrue(CacheIndicator.isAbsent(remote.get("null").get(), System.currentTimeMillis()));
+        assertTrue(CacheIndicator.isAbsent(remote.get("missing").get(), System.currentTimeMillis()));
+        assertNull(decorator.get("missing", () -> "unexpected"));
+    }
+
+    @Test
+    void getAsyncCompletesTrustedLocalHitOnCallerThread() throws Exception {
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        MultiStepCacheDecorator decorator = decoratorWithBus(transport);
+
+        assertTrue(decorator.getAsync("a").isDone());
+        assertEquals("local cache value", decorator.getAsync("a").get().get());
+        verify(remoteCache, times(0)).get(any());
+
+        transport.setConnected(false);
+        when(remoteCache.get("a")).thenReturn(new SimpleValueWrapper("remote value"));
+        assertEquals("remote value", decorator.getAsync("a").get().get());
+    }
+
+    @Test
+    void getAsyncTrustedLocalHitIsCountedAndRefreshesAhead() throws Exception {
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setLeaseMillis(60_000);
+        cacheSpec.setRefreshAheadMillis(1);
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        HeliosCacheContext context = new HeliosCacheContext(heliosCacheProperties, NODE_ID);
+        context.setAsyncExecutor(Runnable::run);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(new ConcurrentMapCache("remote"), new ConcurrentMapCache("local"), cacheSpec, context);
+        decorator.put("key", "v1");
+        Thread.sleep(5);
+
+        CompletableFuture<String> hit = decorator.getAsync("key", () -> "v2");
+
+        assertEquals("v1", hit.get());
+        assertEquals(1, decorator.getStats().getLocalHits());
+        // 与同步读取一样，命中写入较早的本地副本时在后台重新加载
+        assertEquals("v2", decorator.get("key").get());
+    }
+
+    @Test
+    void serveStaleLocalValueWhileOneReloadRuns() throws Exception {
+        Cache remote = new ConcurrentMapCache("remote");
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setStaleWhileRevalidateMillis(60_000);
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("local"), cacheSpec, new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        decorator.put("key", "v1");
+        // 其他节点写入了新值
+        remote.put("key", CacheIndicator.refreshedBy(CacheIndicator.from(remote.get("key").get()), OTHER_NODE_ID, 256).toRemote());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", decorator.get("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "v2";
+        }));
+        assertEquals("v1", decorator.get("key", () -> "unexpected"));
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"v2".equals(decorator.get("key", () -> "unexpected")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("v2", decorator.get("key", () -> "unexpected"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void reloadFinishedDuringRemoteReadIsNotRepeated() {
+        AtomicReference<Runnable> onRemoteRead = new AtomicReference<>();
+        Cache remote = new ConcurrentMapCache("remote") {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper value = super.get(key);
+                Runnable hook = onRemoteRead.getAndSet(null);
+                if (hook != null) {
+                    hook.run();
+                }
+                return value;
+            }
+        };
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setStaleWhileRevalidateMillis(60_000);
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        HeliosCacheContext context = new HeliosCacheContext(heliosCacheProperties, NODE_ID);
+        context.setAsyncExecutor(Runnable::run);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("local"), cacheSpec, context);
+        decorator.put("key", "v1");
+        remote.put("key", CacheIndicator.refreshedBy(CacheIndicator.from(remote.get("key").get()), OTHER_NODE_ID, 256).toRemote());
+        // 读到旧指示器之后，本节点的另一次加载完成
+        onRemoteRead.set(() -> decorator.put("key", "v2"));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v2", decorator.get("key", () -> {
+            loads.incrementAndGet();
+            return "unexpected";
+        }));
+        assertEquals(0, loads.get());
+        assertEquals("v2", decorator.get("key", () -> "unexpected"));
+    }
+
+    @Test
+    void absentValueIsAnsweredWithoutLoaderUntilNegativeTtl() throws Exception {
+        Cache remote = new ConcurrentMapCache("remote");
+        CacheSpec cacheSpec = new CacheSpec();
+        cacheSpec.setNegativeCacheMillis(200);
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, localCache, cacheSpec, new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        MultiStepCacheDecorator otherNode = new MultiStepCacheDecorator(remote, localCache, cacheSpec, new HeliosCacheContext(heliosCacheProperties, OTHER_NODE_ID));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(decorator.get("token", () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        Cache.ValueWrapper absent = otherNode.get("token");
+        assertNotNull(absent);
+        assertNull(absent.get());
+        assertNull(otherNode.get("token", () -> {
+            loads.incrementAndGet();
+            return "unexpected";
+        }));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(250);
+        assertNull(otherNode.get("token"));
+    }
+
+    @Test
+    void putAfterAbsentIsFullRefresh() {
+        String absent = CacheIndicator.absent(CacheIndicator.from(indicator(OTHER_NODE_ID)), Long.MAX_VALUE);
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(remoteCache.get("key")).thenReturn(new SimpleValueWrapper(absent));
+
+        multiStepCacheDecorator.put("key", "value");
+
+        verify(remoteCache).put(eq("key"), argThat(remote -> CacheIndicator.isIndicator(remote)
+                && CacheIndicator.version(remote) > CacheIndicator.version(absent)
+                && remote.equals(withVersion(indicator(NODE_ID), CacheIndicator.version(remote)))));
+    }
+
+    @Test
+    void adaptiveAdmissionPromotesKeysReadRepeatedlyFromRemote() {
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(heliosCacheProperties.getLocalAdmission()).thenReturn("adaptive");
+        when(heliosCacheProperties.getAdmissionTrafficBytes()).thenReturn(4096L);
+        Cache casRemote = mock(Cache.class, withSettings().extraInterfaces(CompareAndSetCache.class));
+        Map<Object, Object> remoteValues = new ConcurrentHashMap<>();
+        remoteValues.put("hot", "small value");
+        remoteValues.put("cold", "small value");
+        when(casRemote.get(any())).thenAnswer(invocation -> new SimpleValueWrapper(remoteValues.get(invocation.getArgument(0))));
+        when(((CompareAndSetCache) casRemote).compareAndSet(any(), any(), any()))
+                .thenAnswer(invocation -> remoteValues.replace(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(casRemote, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        for (int i = 0; i < 60; i++) {
+            decorator.get("hot");
+        }
+        assertEquals("small value", decorator.get("cold").get());
+
+        // 只在估计的读取流量达到阈值时提升一次，之后读到本节点有效的指示器；远端仍保留完整值
+        verify((CompareAndSetCache) casRemote, times(1)).compareAndSet(eq("hot"), eq("small value"), carryingIndicator(NODE_ID, "small value"));
+        verify(localCache, times(1)).put(eq("hot"), localEntry("small value"));
+        verify((CompareAndSetCache) casRemote, never()).compareAndSet(eq("cold"), any(), any());
+        verify(localCache, never()).put(eq("cold"), any());
+    }
+
+    @Test
+    void promotionKeepsRemoteValueForOtherNodes() {
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        when(heliosCacheProperties.getLocalAdmission()).thenReturn("adaptive");
+        when(heliosCacheProperties.getAdmissionTrafficBytes()).thenReturn(Long.MAX_VALUE);
+        Cache remote = new InMemoryRemoteCacheManager().getCache("RULE");
+        remote.put("hot", "remote value");
+        HeliosCacheContext context = new HeliosCacheContext(heliosCacheProperties, NODE_ID);
+        MultiStepCacheDecorator node = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("RULE"), new CacheSpec(), context);
+        MultiStepCacheDecorator otherNode = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("RULE"), new CacheSpec(),
+                new HeliosCacheContext(heliosCacheProperties, OTHER_NODE_ID));
+        node.get("hot");
+        when(heliosCacheProperties.getAdmissionTrafficBytes()).thenReturn(0L);
+
+        assertEquals("remote value", node.get("hot").get());
+        Object promoted = remote.get("hot").get();
+        assertTrue(CacheIndicator.isValidFor(promoted, NODE_ID));
+        // 其他节点仍直接使用远端携带的值，无需加载
+        assertEquals("remote value", otherNode.get("hot", () -> "loaded"));
+        assertFalse(CacheIndicator.isValidFor(promoted, OTHER_NODE_ID));
+        assertEquals("remote value", node.get("hot").get());
+
+        // 其他节点再次读取后同样提升，只加入自己的位
+        otherNode.get("hot");
+        Object joined = remote.get("hot").get();
+        assertTrue(CacheIndicator.isValidFor(joined, NODE_ID));
+        assertTrue(CacheIndicator.isValidFor(joined, OTHER_NODE_ID));
+        assertEquals(CacheIndicator.version(promoted), CacheIndicator.version(joined));
+    }
+
+    @Test
+    void statsCountEachIndicatorOutcome() {
+        when(remoteCache.get("valid")).thenReturn(new SimpleValueWrapper(indicator(NODE_ID)));
+        when(remoteCache.get("invalid")).thenReturn(new SimpleValueWrapper(indicator(OTHER_NODE_ID)));
+        when(remoteCache.get("remote")).thenReturn(new SimpleValueWrapper("remote value"));
+
+        multiStepCacheDecorator.get("valid");
+        multiStepCacheDecorator.get("invalid");
+        multiStepCacheDecorator.get("remote");
+        multiStepCacheDecorator.get("missing");
+
+        CacheStats stats = multiStepCacheDecorator.getStats();
+        assertEquals(1, stats.getLocalHits());
+        assertEquals(1, stats.getRemoteHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getRemoteInvalidations());
+        assertEquals(4, stats.getRemoteReads());
+    }
+
+    @Test
+    void remoteValuesAreEncodedAndOldValuesStillReadable() {
+        when(heliosCacheProperties.getRemoteValueCodec()).thenReturn("compact");
+        when(heliosCacheProperties.getRemoteCompressThresholdBytes()).thenReturn(64);
+        ConcurrentMapCache remote = new ConcurrentMapCache("remote");
+        MultiStepCacheDecorator decorator = new MultiStepCacheDecorator(remote, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        String large = String.join(",", Collections.nCopies(100, "TENANT_A"));
+        remote.put("legacy", "written before codec");
+
+        decorator.put("key", large);
+
+        assertTrue(RemoteValueCodec.isEncoded(remote.get("key").get()));
+        assertTrue(((String) remote.get("key").get()).length() < large.length() / 4);
+        assertEquals(large, decorator.get("key").get());
+        assertEquals("written before codec", decorator.get("legacy").get());
+    }
+
+    @Test
+    void encodedValuesAreDecodedAfterCodecIsDisabledAndUnserializableValuesAreWrittenAsIs() {
+        when(heliosCacheProperties.getRemoteValueCodec()).thenReturn("compact");
+        ConcurrentMapCache remote = new ConcurrentMapCache("remote");
+        MultiStepCacheDecorator encoding = new MultiStepCacheDecorator(remote, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        Object unserializable = new Object();
+
+        encoding.put("key", "encoded value");
+        encoding.put("object", unserializable);
+
+        assertSame(unserializable, remote.get("object").get());
+        when(heliosCacheProperties.getRemoteValueCodec()).thenReturn("none");
+        MultiStepCacheDecorator plain = new MultiStepCacheDecorator(remote, localCache, new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, OTHER_NODE_ID));
+        assertEquals("encoded value", plain.get("key").get());
+        assertSame(unserializable, plain.get("object").get());
+    }
+
+    @Test
+    void indicatorsAndEncodedValuesSurviveJsonRemoteSerializer() {
+        when(heliosCacheProperties.getRemoteValueCodec()).thenReturn("compact");
+        when(heliosCacheProperties.getLocalCachePrefix()).thenReturn("");
+        when(heliosCacheProperties.isEnableLocalCache()).thenReturn(true);
+        // 与GenericJackson2Json、FastJson等一样，byte[]读回后变为Base64字符串
+        Cache remote = new ConcurrentMapCache("remote") {
+            @Override
+            protected Object toStoreValue(Object userValue) {
+                return JSON.toJSONString(userValue);
+            }
+
+            @Override
+            protected Object fromStoreValue(Object storeValue) {
+                return JSON.parse((String) storeValue);
+            }
+        };
+        MultiStepCacheDecorator writer = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("local"), new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, NODE_ID));
+        MultiStepCacheDecorator reader = new MultiStepCacheDecorator(remote, new ConcurrentMapCache("local"), new CacheSpec(), new HeliosCacheContext(heliosCacheProperties, OTHER_NODE_ID));
+        writer.put("local", "cached locally");
+        CacheSpec remoteOnly = new CacheSpec();
+        remoteOnly.setEnableLocalCache(false);
+        new MultiStepCacheDecorator(remote, localCache, remoteOnly, new HeliosCacheContext(heliosCacheProperties, NODE_ID)).put("remote", "encoded");
+
+        assertTrue(CacheIndicator.isIndicator(remote.get("local").get()));
+        // 其他节点识别出指示器而不是把它当作值返回
+        assertNull(reader.get("local"));
+        assertEquals("cached locally", writer.get("local").get());
+        assertEquals("encoded", reader.get("remote").get());
+    }
+
+    private static Object localEntry(Object value) {
+        return argThat(entry -> entry instanceof LocalCacheEntry && value.equals(((LocalCacheEntry) entry).get()));
+    }
+
+    /**
+     * 没有前一个版本时新写入的指示器，版本号取决于写入时间，只校验有效节点
+     */
+    private static String freshIndicator(int nodeId) {
+        return argThat(remote -> CacheIndicator.isIndicator(remote)
+                && remote.equals(withVersion(indicator(nodeId), CacheIndicator.version(remote))));
+    }
+
+    private static String carryingIndicator(int nodeId, Object value) {
+        RemoteValueCodec codec = new RemoteValueCodec(new CompactValueSerializer(new JdkValueSerializer()), 0);
+        return argThat(remote -> {
+            CacheIndicator indicator = CacheIndicator.from(remote);
+            return indicator != null && indicator.isValidFor(nodeId) && indicator.getValue() != null
+                    && value.equals(codec.decode(indicator.getValue()));
+        });
+    }
+
+    private static String withVersion(String indicator, long version) {
+        byte[] bytes = Base64.getDecoder().decode(indicator.substring(CacheIndicator.REMOTE_PREFIX.length()));
+        for (int i = 0; i < 8; i++) {
+            bytes[6 + i] = (byte) (version >>> (56 - 8 * i));
+        }
+        return CacheIndicator.REMOTE_PREFIX + Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static String indicator(int nodeId) {
+        return CacheIndicator.refreshedBy(null, nodeId, 256).toRemote();
     }
 
     @Test
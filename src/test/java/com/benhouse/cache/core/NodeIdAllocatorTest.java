@@ -0,0 +1,73 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeIdAllocatorTest {
+
+    @Test
+    void releasedNodeIdCanBeTakenByAnotherNode() {
+        CacheManager remote = new InMemoryRemoteCacheManager();
+        NodeIdLease first = NodeIdAllocator.allocate(remote, properties("first"));
+
+        assertThrows(IllegalStateException.class, () -> NodeIdAllocator.allocate(remote, properties("second")));
+        first.release();
+
+        assertEquals(0, NodeIdAllocator.allocate(remote, properties("second")).getNodeId());
+    }
+
+    @Test
+    void takeOverNodeIdWhoseLeaseExpired() {
+        CacheManager remote = new ConcurrentMapCacheManager();
+        Cache registry = remote.getCache(NodeIdAllocator.NODE_REGISTRY_CACHE_NAME);
+        registry.put(0, NodeIdLease.record("10.0.0.1/crashed", System.currentTimeMillis() - 60_000));
+
+        NodeIdLease lease = NodeIdAllocator.allocate(remote, properties("second"));
+
+        assertEquals(0, lease.getNodeId());
+        assertEquals(NodeIdAllocator.localIdentity("second"), NodeIdLease.identityOf(registry.get(0).get()));
+    }
+
+    @Test
+    void keepExpiredLeaseWithinClockSkewMargin() {
+        CacheManager remote = new ConcurrentMapCacheManager();
+        Cache registry = remote.getCache(NodeIdAllocator.NODE_REGISTRY_CACHE_NAME);
+        // 持有者的时钟可能比本节点慢，刚到期的租约仍可能在使用
+        registry.put(0, NodeIdLease.record("10.0.0.1/slow-clock", System.currentTimeMillis() - 1));
+
+        assertThrows(IllegalStateException.class, () -> NodeIdAllocator.allocate(remote, properties("second")));
+    }
+
+    @Test
+    void renewExtendsLeaseButNeverOverwritesNewOwner() {
+        CacheManager remote = new InMemoryRemoteCacheManager();
+        Cache registry = remote.getCache(NodeIdAllocator.NODE_REGISTRY_CACHE_NAME);
+        NodeIdLease lease = NodeIdAllocator.allocate(remote, properties("first"));
+        registry.put(0, NodeIdLease.record(NodeIdAllocator.localIdentity("first"), System.currentTimeMillis() + 1000));
+
+        assertTrue(lease.renew());
+        assertFalse(NodeIdLease.isExpired(registry.get(0).get(), System.currentTimeMillis() + 60_000));
+        assertTrue(lease.isValid(System.currentTimeMillis()));
+
+        String newOwner = NodeIdLease.record("10.0.0.1/other", System.currentTimeMillis() + 300_000);
+        registry.put(0, newOwner);
+        assertFalse(lease.renew());
+        assertFalse(lease.isValid(System.currentTimeMillis()));
+        lease.release();
+
+        assertEquals(newOwner, registry.get(0).get());
+    }
+
+    private static HeliosCacheProperties properties(String nodeName) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeName(nodeName);
+        properties.setMaxNodes(1);
+        return properties;
+    }
+}
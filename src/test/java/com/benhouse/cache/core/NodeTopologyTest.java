@@ -0,0 +1,63 @@
+package com.benhouse.cache.core;
+
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager.Operation;
+import com.benhouse.cache.remote.RemoteCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeTopologyTest {
+
+    @Test
+    void detectOtherNodesWithOneRemoteOperationPerBeat() {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        RemoteCounter heartbeats = (RemoteCounter) remote.getCache(NodeTopology.HEARTBEAT_CACHE_NAME);
+        AtomicInteger clusterModeSwitches = new AtomicInteger();
+        NodeTopology node1 = new NodeTopology(heartbeats, 1, 60_000, clusterModeSwitches::incrementAndGet);
+        NodeTopology node2 = new NodeTopology(heartbeats, 2, 60_000, () -> { });
+
+        for (int i = 0; i < 4; i++) {
+            node1.beat();
+        }
+        // 集群版本未确认时可能还有不发送心跳的旧版本节点
+        assertFalse(node1.isSingleNode());
+
+        NodeTopology.confirmClusterVersion(heartbeats);
+        remote.resetCounters();
+        for (int i = 0; i < 4; i++) {
+            node1.beat();
+        }
+        assertTrue(node1.isSingleNode());
+        assertEquals(4, remote.getOperationCount(Operation.INCREMENT_COUNTER));
+        // 进入单节点模式时读取一次集群版本
+        assertEquals(5, remote.getRoundTrips());
+
+        node2.beat();
+        node1.beat();
+
+        assertFalse(node1.isSingleNode());
+        assertEquals(1, clusterModeSwitches.get());
+    }
+
+    @Test
+    void stopTrustingSingleNodeModeWhenBeatsStall() throws InterruptedException {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager();
+        RemoteCounter heartbeats = (RemoteCounter) remote.getCache(NodeTopology.HEARTBEAT_CACHE_NAME);
+        NodeTopology.confirmClusterVersion(heartbeats);
+        NodeTopology node = new NodeTopology(heartbeats, 1, 20, () -> { });
+        for (int i = 0; i < 4; i++) {
+            node.beat();
+        }
+        assertTrue(node.isSingleNode());
+
+        // 心跳线程滞后时，其他节点可能已经加入
+        Thread.sleep(60);
+
+        assertFalse(node.isSingleNode());
+        node.beat();
+        assertTrue(node.isSingleNode());
+    }
+}
@@ -0,0 +1,36 @@
+package com.benhouse.cache.local;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.core.HeliosCacheManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalMemoryBudgetTest {
+
+    @Test
+    void retireColdSuffixedCachesWhenBudgetExceeded() throws InterruptedException {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setLocalMemoryBudgetBytes(10_000);
+        HeliosCacheManager manager = new HeliosCacheManager(new ConcurrentMapCacheManager(), properties);
+        LocalMemoryBudget budget = manager.getLocalMemoryBudget();
+
+        Cache cold = manager.getCache("RULE_TENANT_A");
+        cold.put("k", new String(new char[4_000]));
+        Thread.sleep(1100);
+        Cache hot = manager.getCache("RULE_TENANT_B");
+        hot.put("k", new String(new char[4_000]));
+        assertEquals(2 * (4_000 + BudgetedLocalCache.ENTRY_OVERHEAD), budget.getFootprint());
+
+        manager.getCache("RULE_TENANT_C").put("k", new String(new char[4_000]));
+
+        assertFalse(budget.getFootprintByCache().containsKey("RULE_TENANT_A"));
+        assertTrue(budget.getFootprint() <= 10_000);
+        assertNotSame(cold, manager.getCache("RULE_TENANT_A"));
+        assertSame(hot, manager.getCache("RULE_TENANT_B"));
+        // 退役的cache本地副本已清空，读取时远端指示器仍然有效但本地没有值
+        assertNull(manager.getCache("RULE_TENANT_A").get("k"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.benhouse.cache.local;
+
+import com.benhouse.cache.core.LocalCacheEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCacheTest {
+
+    @Test
+    void storeValueOffHeapAndShareEntryMetadata() {
+        OffHeapCache cache = new OffHeapCache("RULE", new JdkValueSerializer(), 1024 * 1024);
+        LocalCacheEntry entry = new LocalCacheEntry("value", 5, 2);
+        cache.put("k", entry);
+
+        LocalCacheEntry hit = (LocalCacheEntry) cache.get("k").get();
+        assertEquals("value", hit.get());
+        assertEquals(2, hit.getGeneration());
+        assertNotSame(hit, cache.get("k").get());
+
+        hit.renewLease(TimeUnit.MINUTES.toNanos(1));
+        assertTrue(((LocalCacheEntry) cache.get("k").get()).isLeaseValid(System.nanoTime()));
+    }
+
+    @Test
+    void evictOldestSlabWhenCapacityExceeded() {
+        OffHeapCache cache = new OffHeapCache("RULE", new JdkValueSerializer(), 4 * 1024, 1024);
+        String value = new String(new char[400]);
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, value + i);
+        }
+
+        assertNull(cache.get(0));
+        assertEquals(value + 19, cache.get(19).get());
+        assertTrue(cache.getEntryCount() < 20);
+        // 超过单个slab大小的值不缓存
+        assertThrows(IllegalArgumentException.class, () -> cache.put("large", new String(new char[2048])));
+        assertNull(cache.get("large"));
+
+        cache.clear();
+        assertNull(cache.get(19));
+    }
+
+    @Test
+    void dropOldValueWhenNewValueCanNotBeSerialized() {
+        ValueSerializer jdk = new JdkValueSerializer();
+        ValueSerializer serializer = new ValueSerializer() {
+            @Override
+            public byte[] serialize(Object value) {
+                if ("broken".equals(value)) {
+                    throw new IllegalArgumentException("not serializable");
+                }
+                return jdk.serialize(value);
+            }
+
+            @Override
+            public Object deserialize(ByteBuffer buffer) {
+                return jdk.deserialize(buffer);
+            }
+        };
+        OffHeapCache cache = new OffHeapCache("RULE", serializer, 1024 * 1024);
+        cache.put("k", new LocalCacheEntry("old"));
+
+        assertThrows(IllegalArgumentException.class, () -> cache.put("k", new LocalCacheEntry("broken")));
+        assertThrows(IllegalArgumentException.class, () -> cache.putIfAbsent("absent", new LocalCacheEntry("broken")));
+
+        // 指示器已对本节点有效时不能再命中旧值
+        assertNull(cache.get("k"));
+        assertNull(cache.get("absent"));
+    }
+
+    @Test
+    void treatAnyDeserializationFailureOfRecycledSlabAsMiss() {
+        ValueSerializer jdk = new JdkValueSerializer();
+        OffHeapCache[] holder = new OffHeapCache[1];
+        ValueSerializer serializer = new ValueSerializer() {
+            @Override
+            public byte[] serialize(Object value) {
+                return jdk.serialize(value);
+            }
+
+            @Override
+            public Object deserialize(ByteBuffer buffer) {
+                // 读取期间slab被复用，读到的字节不再是原来的值
+                String filler = new String(new char[400]);
+                for (int i = 0; i < 20; i++) {
+                    holder[0].put("filler" + i, filler);
+                }
+                throw new StackOverflowError();
+            }
+        };
+        holder[0] = new OffHeapCache("RULE", serializer, 4 * 1024, 1024);
+        holder[0].put("k", "value");
+
+        assertNull(holder[0].get("k"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.benhouse.cache.remote;
+
+import com.benhouse.cache.config.HeliosCacheProperties;
+import com.benhouse.cache.core.HeliosCacheManager;
+import com.benhouse.cache.remote.InMemoryRemoteCacheManager.Operation;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRemoteCacheManagerTest {
+
+    @Test
+    void countRemoteRoundTripsOfSimulatedNodes() {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager(1);
+        Cache node1 = new HeliosCacheManager(remote, properties(1)).getCache("RULE");
+        Cache node2 = new HeliosCacheManager(remote, properties(2)).getCache("RULE");
+
+        node1.put("k", "v1");
+        assertEquals(1, remote.getOperationCount(Operation.GET));
+        assertEquals(1, remote.getOperationCount(Operation.COMPARE_AND_SET));
+        assertEquals(0, remote.getOperationCount(Operation.PUT));
+
+        remote.resetCounters();
+        assertEquals("v1", node1.get("k").get());
+        assertEquals("v2", node2.get("k", () -> "v2"));
+        // 本地命中一次往返；其他节点未命中时读指示器、加载后再读写一次指示器
+        assertEquals(3, remote.getOperationCount(Operation.GET));
+        assertEquals(4, remote.getRoundTrips());
+    }
+
+    @Test
+    void injectLatencyAndFailures() {
+        InMemoryRemoteCacheManager remote = new InMemoryRemoteCacheManager(1);
+        Cache cache = remote.getCache("RULE");
+        remote.setLatency(2, TimeUnit.MILLISECONDS);
+        remote.setJitter(1, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        cache.put("k", "v");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(2));
+
+        remote.setLatency(0, TimeUnit.MILLISECONDS);
+        remote.setFailureRate(1);
+        assertThrows(InMemoryRemoteCacheManager.SimulatedFailureException.class, () -> cache.get("k"));
+        assertEquals(1, remote.getFailureCount());
+        remote.setFailureRate(0);
+        assertEquals("v", cache.get("k").get());
+    }
+
+    private static HeliosCacheProperties properties(int nodeId) {
+        HeliosCacheProperties properties = new HeliosCacheProperties();
+        properties.setNodeId(nodeId);
+        properties.setEnableLocalCache(true);
+        return properties;
+    }
+}
@@ -0,0 +1,65 @@
+package com.benhouse.cache.size;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeEstimatorTest {
+
+    static class Order {
+        private long id;
+        private String title;
+        private int[] lines;
+        private Order parent;
+
+        Order(long id, String title, int[] lines) {
+            this.id = id;
+            this.title = title;
+            this.lines = lines;
+        }
+    }
+
+    @Test
+    void fastPathCommonTypes() {
+        SizeEstimator estimator = SizeEstimator.of("fast");
+        assertEquals(0, estimator.estimate(null));
+        assertEquals(28, estimator.estimate("value length greater than 10"));
+        assertEquals(1024, estimator.estimate(new byte[1024]));
+        assertEquals(8, estimator.estimate(42L));
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add("0123456789");
+        }
+        assertEquals(10_000, estimator.estimate(list));
+    }
+
+    @Test
+    void reflectiveDeepFollowsReferencesAndHandlesCycles() {
+        Order order = new Order(1, "0123456789", new int[100]);
+        order.parent = order;
+        long shallow = new ReflectiveSizeEstimator(false).estimate(order);
+        long deep = new ReflectiveSizeEstimator(true).estimate(order);
+
+        assertEquals(8 + 4 * 3, shallow);
+        assertEquals(shallow + 10 + 400, deep);
+    }
+
+    @Test
+    void samplingReusesClassAverage() {
+        AtomicInteger calls = new AtomicInteger();
+        SizeEstimator counting = value -> {
+            calls.incrementAndGet();
+            return 100;
+        };
+        SizeEstimator estimator = new SamplingSizeEstimator(counting, 2, 10);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(100, estimator.estimate(new Order(i, "", null)));
+        }
+        // 前2个精确估算，之后每10个抽样一次
+        assertEquals(3, calls.get());
+    }
+}
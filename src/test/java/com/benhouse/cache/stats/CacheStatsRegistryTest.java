@@ -0,0 +1,67 @@
+package com.benhouse.cache.stats;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheStatsRegistryTest {
+
+    @Test
+    void aggregateSuffixedCacheNamesAndExposeThroughJmx() throws Exception {
+        CacheStatsRegistry registry = new CacheStatsRegistry(":", true);
+        registry.counter("RULE:TENANT_A").recordLocalHit();
+        registry.counter("RULE:TENANT_B").recordMiss();
+        registry.counter("RULE").recordRemoteHit();
+
+        CacheStats stats = registry.snapshot("RULE:TENANT_C");
+        assertEquals(1, stats.getLocalHits());
+        assertEquals(1, stats.getRemoteHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(2.0 / 3, stats.getHitRate(), 1e-9);
+        assertEquals(1, registry.snapshot().size());
+
+        ObjectName objectName = new ObjectName("com.benhouse.cache:type=CacheStats,name=\"RULE\"");
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "LocalHits"));
+        registry.unregisterAll();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+
+    @Test
+    void aggregateByKnownBaseNameAndReleaseRetiredNames() throws Exception {
+        // 默认分隔符为空，只能使用解析@CacheNameSuffix时已知的基础名
+        CacheStatsRegistry registry = new CacheStatsRegistry("", true);
+        registry.counter("TOKENtenantA", "TOKEN").recordLocalHit();
+        registry.counter("TOKENtenantB", "TOKEN").recordMiss();
+
+        assertEquals(1, registry.snapshot().size());
+        assertEquals(1, registry.snapshot("TOKENtenantA").getLocalHits());
+        assertEquals(1, registry.snapshot("TOKENtenantA").getMisses());
+        ObjectName objectName = new ObjectName("com.benhouse.cache:type=CacheStats,name=\"TOKEN\"");
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+
+        registry.release("TOKENtenantA");
+        assertEquals(1, registry.snapshot().size());
+        registry.release("TOKENtenantB");
+
+        assertTrue(registry.snapshot().isEmpty());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+
+    @Test
+    void histogramPercentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1023, histogram.percentile(0.5));
+        assertEquals(1023, histogram.percentile(0.99));
+        assertEquals((1 << 20) - 1, histogram.percentile(1));
+        assertEquals(0, new LatencyHistogram().percentile(0.5));
+    }
+}